@@ -0,0 +1,46 @@
+package benchmark;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatFactory;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 依次以1, 2, 4, ..., N个线程运行全部基准，结果合并写入一个JSON文件，便于不同版本之间对比
+ * <p>
+ * 用法：BenchmarkMain [结果文件, 默认jmh-result.json] [基准正则, 默认全部] [最大线程数N, 默认CPU核数]
+ */
+public class BenchmarkMain {
+    public static void main(String[] args) throws RunnerException {
+        String output = args.length > 0 ? args[0] : "jmh-result.json";
+        String include = args.length > 1 ? args[1] : "benchmark\\..*Benchmark";
+        int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        List<RunResult> results = new ArrayList<>();
+        for (int threads : threadCounts(maxThreads)) {
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threads)
+                    .build();
+            results.addAll(new Runner(options).run());
+        }
+        ResultFormatFactory.getInstance(ResultFormatType.JSON, output).writeOut(results);
+        System.out.println("results: " + output);
+    }
+
+    /**
+     * 线程数1, 2, 4, ...直到maxThreads，maxThreads本身总是包含在内
+     */
+    private static List<Integer> threadCounts(int maxThreads) {
+        List<Integer> counts = new ArrayList<>();
+        for (int t = 1; t < maxThreads; t *= 2)
+            counts.add(t);
+        counts.add(maxThreads);
+        return counts;
+    }
+}
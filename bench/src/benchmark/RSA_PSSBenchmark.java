@@ -0,0 +1,104 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RSA-PSS编码、MGF、签名、验证基准
+ * <p>
+ * RSA密钥在setUp中直接生成，sign使用私钥d，signCrt使用同一对p, q的CRT私钥。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RSA_PSSBenchmark {
+    private static final MethodHandle ENCODE = Schemes.method("RSA_PSS", "encode",
+            byte[].class, BigInteger.class, int.class);
+    private static final MethodHandle MGF = Schemes.method("RSA_PSS", "MGF", byte[].class, byte[].class, int.class);
+    private static final MethodHandle SIGN = Schemes.method("RSA_PSS", "sign", byte[].class,
+            byte[].class, BigInteger.class, BigInteger.class);
+    private static final MethodHandle NEW_KEY = Schemes.constructor("RSA_PrivateKey",
+            BigInteger.class, BigInteger.class, BigInteger.class);
+    private static final MethodHandle SIGN_CRT = Schemes.method("RSA_PSS", "sign", byte[].class,
+            byte[].class, Schemes.type("RSA_PrivateKey")).asType(
+            MethodType.methodType(byte[].class, byte[].class, Object.class));
+    private static final MethodHandle DECODE = Schemes.method("RSA_PSS", "decode", byte[].class,
+            byte[].class, BigInteger.class, BigInteger.class);
+    private static final MethodHandle VERIFY = Schemes.method("RSA_PSS", "verify", boolean.class,
+            BigInteger.class, byte[].class, int.class);
+
+    /**
+     * RSA模数n的位数
+     */
+    @Param({"1024", "2048", "3072"})
+    public int bits;
+
+    private BigInteger n;
+    private BigInteger e;
+    private BigInteger d;
+    /**
+     * 带CRT参数的私钥RSA_PrivateKey
+     */
+    private Object key;
+    private int emBits;
+    private BigInteger m;
+    private byte[] em;
+    private byte[] h;
+    private byte[] signature;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        SecureRandom random = new SecureRandom();
+        e = BigInteger.valueOf(65537);
+        BigInteger p, q, phi;
+        do {
+            p = BigInteger.probablePrime(bits / 2, random);
+            q = BigInteger.probablePrime(bits - bits / 2, random);
+            n = p.multiply(q);
+            phi = p.subtract(BigInteger.ONE).multiply(q.subtract(BigInteger.ONE));
+        } while (n.bitLength() != bits || !phi.gcd(e).equals(BigInteger.ONE));
+        d = e.modInverse(phi);
+        key = NEW_KEY.invokeExact(p, q, e);
+        emBits = bits - 1;
+        m = new BigInteger(256, random);
+        em = (byte[]) ENCODE.invokeExact(m, emBits);
+        // 与encode中dbMask=MGF(h, emLen - H_LEN - 1)的输入一致
+        h = new byte[20];
+        random.nextBytes(h);
+        signature = (byte[]) SIGN.invokeExact(em, d, n);
+    }
+
+    @Benchmark
+    public byte[] encode() throws Throwable {
+        return (byte[]) ENCODE.invokeExact(m, emBits);
+    }
+
+    @Benchmark
+    public byte[] mgf() throws Throwable {
+        return (byte[]) MGF.invokeExact(h, (emBits + 7) / 8 - 20 - 1);
+    }
+
+    @Benchmark
+    public byte[] sign() throws Throwable {
+        return (byte[]) SIGN.invokeExact(em, d, n);
+    }
+
+    @Benchmark
+    public byte[] signCrt() throws Throwable {
+        return (byte[]) SIGN_CRT.invokeExact(em, key);
+    }
+
+    @Benchmark
+    public boolean verify() throws Throwable {
+        byte[] em2 = (byte[]) DECODE.invokeExact(signature, e, n);
+        return (boolean) VERIFY.invokeExact(m, em2, emBits);
+    }
+}
@@ -0,0 +1,111 @@
+package benchmark;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.function.Supplier;
+
+/**
+ * 被测签名方案的方法句柄
+ * <p>
+ * JMH要求基准类不在默认包中，而四个签名方案都位于默认包，无法直接import，
+ * 因此通过MethodHandle调用（包括私有的generateKey、encode、decode）。
+ * 句柄保存在static final字段中，JIT会将其常量折叠，调用开销可以忽略。
+ */
+final class Schemes {
+    private Schemes() {
+    }
+
+    /**
+     * 查找默认包中的类
+     */
+    static Class<?> type(String className) {
+        try {
+            return Class.forName(className);
+        } catch (ClassNotFoundException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * 查找构造方法，返回类型擦除为Object
+     *
+     * @param className 类名
+     * @param params    参数类型
+     * @return 方法句柄
+     */
+    static MethodHandle constructor(String className, Class<?>... params) {
+        try {
+            Class<?> c = type(className);
+            MethodHandle h = MethodHandles.lookup().findConstructor(c, MethodType.methodType(void.class, params));
+            return h.asType(h.type().changeReturnType(Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * 查找静态方法，参数和返回类型中默认包的类以类名字符串给出，在句柄中擦除为Object
+     *
+     * @param className 类名
+     * @param name      方法名
+     * @param types     返回类型和参数类型，Class或类名
+     * @return 方法句柄
+     */
+    static MethodHandle erased(String className, String name, Object... types) {
+        Class<?>[] params = new Class<?>[types.length - 1];
+        Class<?>[] erasedParams = new Class<?>[types.length - 1];
+        for (int i = 1; i < types.length; i++) {
+            params[i - 1] = resolve(types[i]);
+            erasedParams[i - 1] = erase(types[i]);
+        }
+        return method(className, name, resolve(types[0]), params)
+                .asType(MethodType.methodType(erase(types[0]), erasedParams));
+    }
+
+    private static Class<?> erase(Object type) {
+        return type instanceof Class ? (Class<?>) type : Object.class;
+    }
+
+    private static Class<?> resolve(Object type) {
+        return type instanceof Class ? (Class<?>) type : type(type.toString());
+    }
+
+    /**
+     * 创建随机数池，generator为返回NoncePool.Nonce的无参句柄
+     */
+    static AutoCloseable noncePool(MethodHandle generator, int depth) {
+        try {
+            Supplier<Object> supplier = () -> {
+                try {
+                    return generator.invoke();
+                } catch (Throwable t) {
+                    throw new IllegalStateException(t);
+                }
+            };
+            Class<?> pool = type("NoncePool");
+            return (AutoCloseable) pool.getConstructor(Supplier.class, int.class).newInstance(supplier, depth);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 查找静态方法
+     *
+     * @param className  类名
+     * @param name       方法名
+     * @param returnType 返回类型
+     * @param params     参数类型
+     * @return 方法句柄
+     */
+    static MethodHandle method(String className, String name, Class<?> returnType, Class<?>... params) {
+        try {
+            Class<?> c = type(className);
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(c, MethodHandles.lookup());
+            return lookup.findStatic(c, name, MethodType.methodType(returnType, params));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+}
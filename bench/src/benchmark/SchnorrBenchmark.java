@@ -0,0 +1,91 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schnorr密钥生成、签名、验证基准
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SchnorrBenchmark {
+    private static final MethodHandle GENERATE_KEY = Schemes.method("Schnorr", "generateKey",
+            BigInteger[].class, String.class);
+    private static final MethodHandle SIGN = Schemes.method("Schnorr", "sign", BigInteger[].class,
+            BigInteger.class, BigInteger.class, BigInteger.class, BigInteger.class, BigInteger.class);
+    private static final MethodHandle NONCE = Schemes.erased("Schnorr", "nonce", "NoncePool$Nonce",
+            BigInteger.class, BigInteger.class, BigInteger.class);
+    private static final MethodHandle SIGN_POOLED = Schemes.erased("Schnorr", "sign", BigInteger[].class,
+            "Message", BigInteger.class, BigInteger.class, "NoncePool");
+    private static final MethodHandle MESSAGE = Schemes.erased("Message", "of", "Message", BigInteger.class);
+    private static final MethodHandle VERIFY = Schemes.method("Schnorr", "verify", boolean.class,
+            BigInteger.class, BigInteger[].class, BigInteger.class, BigInteger.class, BigInteger.class, BigInteger.class);
+
+    /**
+     * 域参数名，见DomainParameters
+     */
+    @Param({"dsa-1024-160", "dsa-2048-224", "dsa-3072-256"})
+    public String group;
+
+    /**
+     * 密钥α, p, q, s, v
+     */
+    private BigInteger[] key;
+    private BigInteger m;
+    private BigInteger[] signature;
+    /**
+     * 随机数池NoncePool
+     */
+    private AutoCloseable pool;
+    private Object message;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        key = (BigInteger[]) GENERATE_KEY.invokeExact(group);
+        m = new BigInteger(256, new SecureRandom());
+        signature = (BigInteger[]) SIGN.invokeExact(m, key[0], key[1], key[2], key[3]);
+        pool = Schemes.noncePool(MethodHandles.insertArguments(NONCE, 0, key[0], key[1], key[2]), 1024);
+        message = (Object) MESSAGE.invokeExact(m);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        pool.close();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 5)
+    public BigInteger[] generateKey() throws Throwable {
+        return (BigInteger[]) GENERATE_KEY.invokeExact(group);
+    }
+
+    @Benchmark
+    public BigInteger[] sign() throws Throwable {
+        return (BigInteger[]) SIGN.invokeExact(m, key[0], key[1], key[2], key[3]);
+    }
+
+    /**
+     * 随机数由后台线程预先计算，池空时现算
+     */
+    @Benchmark
+    public BigInteger[] signPooled() throws Throwable {
+        return (BigInteger[]) SIGN_POOLED.invokeExact(message, key[2], key[3], (Object) pool);
+    }
+
+    @Benchmark
+    public boolean verify() throws Throwable {
+        return (boolean) VERIFY.invokeExact(m, signature, key[0], key[1], key[2], key[4]);
+    }
+}
@@ -0,0 +1,90 @@
+import java.math.BigInteger;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Barrett约减
+ * <p>
+ * 对固定模数p预先计算μ=⌊2^(2k) / p⌋，k为p的位数，之后对小于p^2的数取模只需要两次乘法和移位，
+ * 不需要BigInteger.mod中的除法。
+ */
+public class Barrett {
+    /**
+     * 最多缓存的模数个数，可以用系统属性barrett.cache修改
+     */
+    private static final int MAX_CACHED = Integer.getInteger("barrett.cache", 16);
+    /**
+     * 按模数缓存的约减参数，μ的计算需要一次2k位除以k位的除法
+     */
+    private static final ConcurrentHashMap<BigInteger, Barrett> CACHE = new ConcurrentHashMap<>();
+
+    private final BigInteger p;
+    private final BigInteger mu;
+    private final int k;
+
+    /**
+     * @param p 模数，大于1
+     */
+    public Barrett(BigInteger p) {
+        if (p.compareTo(BigInteger.ONE) <= 0)
+            throw new IllegalArgumentException();
+        this.p = p;
+        this.k = p.bitLength();
+        this.mu = BigInteger.ONE.shiftLeft(2 * k).divide(p);
+    }
+
+    /**
+     * 取缓存的约减参数，没有时构造
+     *
+     * @param p 模数，大于1
+     * @return p的Barrett约减
+     */
+    public static Barrett of(BigInteger p) {
+        Barrett barrett = CACHE.get(p);
+        if (barrett != null)
+            return barrett;
+        barrett = new Barrett(p);
+        if (CACHE.size() >= MAX_CACHED) {
+            Iterator<BigInteger> it = CACHE.keySet().iterator();
+            if (it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+        CACHE.put(p, barrett);
+        return barrett;
+    }
+
+    /**
+     * @return 模数p
+     */
+    public BigInteger modulus() {
+        return p;
+    }
+
+    /**
+     * 模乘
+     *
+     * @param a 0<=a<p
+     * @param b 0<=b<p
+     * @return a*b % p
+     */
+    public BigInteger multiply(BigInteger a, BigInteger b) {
+        return reduce(a.multiply(b));
+    }
+
+    /**
+     * 取模
+     *
+     * @param t 0<=t<p^2
+     * @return t % p
+     */
+    public BigInteger reduce(BigInteger t) {
+        // q=⌊⌊t / 2^(k-1)⌋ * μ / 2^(k+1)⌋，比⌊t / p⌋最多小2
+        BigInteger q = t.shiftRight(k - 1).multiply(mu).shiftRight(k + 1);
+        BigInteger r = t.subtract(q.multiply(p));
+        while (r.compareTo(p) >= 0)
+            r = r.subtract(p);
+        return r;
+    }
+}
@@ -0,0 +1,449 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 批量签名/验证
+ * <pre>
+ * java Bulk keygen scheme key [group|bits]
+ * java Bulk sign scheme key input output [-t threads] [-f lines|length] [-b] [-T chunk]
+ * java Bulk verify scheme key input signatures output [-t threads] [-f lines|length] [-b] [-T chunk]
+ * </pre>
+ * scheme为dsa、schnorr、elgamal或rsa。key为"名字: 值"格式的密钥文件，名字与各方案main输出的相同。
+ * <p>
+ * input可以是：
+ * <ul>
+ * <li>按行分隔的文件，每行是一条消息（不含换行符），-f lines，默认</li>
+ * <li>按长度分隔的文件，每条消息前是4字节大端长度，-f length</li>
+ * <li>目录，按文件名排序，每个文件是一条消息</li>
+ * </ul>
+ * sign的输出每行是一个签名，各分量以逗号分隔，可以直接作为verify的signatures；verify的输出每行为true或false。
+ * 使用-b时签名为{@link Encoding}的定长二进制形式，首尾相接，没有分隔符。
+ * <p>
+ * 使用-T时每条消息按chunk字节分块做{@link TreeHash}，签名的是树根。签名文件以树哈希参数开头：
+ * 文本形式为一行"tree chunk"，二进制形式为{@link TreeHash#header}。verify按签名文件开头自动识别，不需要-T。
+ * <p>
+ * 输出与输入的顺序相同。处理速度输出到标准错误。
+ */
+public class Bulk {
+    /**
+     * 每个线程最多的未完成任务数
+     */
+    private static final int IN_FLIGHT = 64;
+    /**
+     * 报告进度的间隔，纳秒
+     */
+    private static final long REPORT_INTERVAL = 5_000_000_000L;
+    private static final byte[] TRUE = "true\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "false\n".getBytes(StandardCharsets.US_ASCII);
+    /**
+     * 各方案密钥文件中的名字，顺序与generateKey的返回值相同
+     */
+    private static final Map<String, String[]> NAMES = Map.of(
+            "dsa", new String[]{"p", "q", "g", "x", "y"},
+            "schnorr", new String[]{"α", "p", "q", "s", "v"},
+            "elgamal", new String[]{"q", "α", "X", "Y"},
+            "rsa", new String[]{"n", "e", "d", "p", "q"});
+
+    private final String scheme;
+    private final Map<String, BigInteger> key;
+    /**
+     * 签名用的RSA私钥，只有公钥时为null
+     */
+    private final RSA_PrivateKey rsa;
+
+    private Bulk(String scheme, Map<String, BigInteger> key) {
+        this.scheme = scheme;
+        this.key = key;
+        this.rsa = scheme.equals("rsa") && key.containsKey("p")
+                ? new RSA_PrivateKey(get("p"), get("q"), get("e")) : null;
+    }
+
+    /**
+     * 签名一条消息
+     */
+    private BigInteger[] sign(Message m) throws IOException {
+        switch (scheme) {
+            case "dsa":
+                return DSA.sign(m, get("p"), get("q"), get("g"), get("x"));
+            case "schnorr":
+                return Schnorr.sign(m, get("α"), get("p"), get("q"), get("s"));
+            case "elgamal":
+                return ElGamal.sign(m, get("q"), get("α"), get("X"));
+            default:
+                if (rsa == null)
+                    throw new IllegalArgumentException("key has no p, q");
+                byte[] em = RSA_PSS.encode(m, rsa.n.bitLength() - 1);
+                return new BigInteger[]{new BigInteger(1, RSA_PSS.sign(em, rsa))};
+        }
+    }
+
+    /**
+     * 验证一条消息
+     *
+     * @param s 签名，格式错误时为null
+     */
+    private boolean verify(Message m, BigInteger[] s) throws IOException {
+        if (s == null || s.length != (scheme.equals("rsa") ? 1 : 2))
+            return false;
+        switch (scheme) {
+            case "dsa":
+                return DSA.verify(m, s, get("p"), get("q"), get("g"), get("y"));
+            case "schnorr":
+                return Schnorr.verify(m, s, get("α"), get("p"), get("q"), get("v"));
+            case "elgamal":
+                return ElGamal.verify(m, s, get("q"), get("α"), get("Y"));
+            default:
+                BigInteger n = get("n");
+                if (s[0].signum() < 0 || s[0].compareTo(n) >= 0)
+                    return false;
+                // em1=s^e % n，去掉前导0
+                byte[] em1 = Encoding.toBytes(s[0].modPow(get("e"), n));
+                return PSSCodec.get().verify(m, em1, 0, em1.length, n.bitLength() - 1);
+        }
+    }
+
+    /**
+     * 按{@link Encoding}的顺序排列的密钥，缺少的分量为null
+     */
+    private BigInteger[] keyArray() {
+        String[] names = NAMES.get(scheme);
+        BigInteger[] values = new BigInteger[names.length];
+        for (int i = 0; i < names.length; i++)
+            values[i] = key.get(names[i]);
+        return values;
+    }
+
+    private BigInteger get(String name) {
+        BigInteger v = key.get(name);
+        if (v == null)
+            throw new IllegalArgumentException("key has no " + name);
+        return v;
+    }
+
+    /**
+     * 生成密钥
+     *
+     * @param param 域参数名，RSA为模数位数
+     * @return 按main输出顺序排列的密钥
+     */
+    private static Map<String, BigInteger> generate(String scheme, String param) {
+        BigInteger[] k;
+        switch (scheme) {
+            case "dsa":
+                k = DSA.generateKey(param == null ? "dsa-2048-256" : param);
+                break;
+            case "schnorr":
+                k = param == null ? Schnorr.generateKey() : Schnorr.generateKey(param);
+                break;
+            case "elgamal":
+                k = ElGamal.generateKey(param == null ? "ffdhe2048" : param);
+                break;
+            case "rsa":
+                RSA_PrivateKey rsa = RSA_PrivateKey.generateKey(param == null ? 2048 : Integer.parseInt(param));
+                k = new BigInteger[]{rsa.n, rsa.e, rsa.d, rsa.p, rsa.q};
+                break;
+            default:
+                throw new IllegalArgumentException("unknown scheme: " + scheme);
+        }
+        Map<String, BigInteger> key = new LinkedHashMap<>();
+        String[] names = NAMES.get(scheme);
+        for (int i = 0; i < names.length; i++)
+            key.put(names[i], k[i]);
+        return key;
+    }
+
+    private static Map<String, BigInteger> readKey(Path path) throws IOException {
+        Map<String, BigInteger> key = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            int i = line.indexOf(':');
+            if (i > 0)
+                key.put(line.substring(0, i).trim(), new BigInteger(line.substring(i + 1).trim()));
+        }
+        return key;
+    }
+
+    private static void writeKey(Path path, Map<String, BigInteger> key) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, BigInteger> e : key.entrySet())
+            lines.add(e.getKey() + ": " + e.getValue());
+        Files.write(path, lines, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 按顺序读出输入中的消息
+     *
+     * @param chunk 树哈希的块大小，0时不使用树哈希
+     */
+    private static Iterator<Message> messages(Path input, boolean length, int chunk) throws IOException {
+        if (Files.isDirectory(input)) {
+            List<Path> files;
+            try (Stream<Path> s = Files.list(input)) {
+                files = s.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            }
+            return files.stream().map(p -> chunk > 0 ? TreeHash.of(p, chunk) : Message.of(p)).iterator();
+        }
+        InputStream in = new BufferedInputStream(Files.newInputStream(input), Message.BUFFER_SIZE);
+        return new Iterator<Message>() {
+            private byte[] next = read();
+
+            private byte[] read() {
+                try {
+                    return length ? readLength() : readLine();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            private byte[] readLength() throws IOException {
+                DataInputStream data = new DataInputStream(in);
+                int n;
+                try {
+                    n = data.readInt();
+                } catch (EOFException e) {
+                    in.close();
+                    return null;
+                }
+                byte[] b = new byte[n];
+                data.readFully(b);
+                return b;
+            }
+
+            private byte[] readLine() throws IOException {
+                ByteArrayOutputStream line = new ByteArrayOutputStream();
+                int c;
+                while ((c = in.read()) != -1 && c != '\n')
+                    line.write(c);
+                if (c == -1 && line.size() == 0) {
+                    in.close();
+                    return null;
+                }
+                byte[] b = line.toByteArray();
+                // 去掉\r\n中的\r
+                if (b.length > 0 && b[b.length - 1] == '\r')
+                    return Arrays.copyOf(b, b.length - 1);
+                return b;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Message next() {
+                Message m = chunk > 0 ? TreeHash.of(ByteBuffer.wrap(next), chunk) : Message.of(next);
+                next = read();
+                return m;
+            }
+        };
+    }
+
+    /**
+     * 并行处理全部消息，按输入顺序写出结果
+     *
+     * @param signatures verify时的签名，sign时为null
+     * @param binary     签名为{@link Encoding}的定长二进制形式，否则为每行一个、分量以逗号分隔的十进制形式
+     * @return 处理的条数和不合法的条数
+     */
+    private long[] run(Iterator<Message> messages, InputStream signatures, boolean binary, OutputStream out,
+                       int threads) throws IOException, InterruptedException {
+        BigInteger[] keyArray = keyArray();
+        ByteBuffer record = ByteBuffer.allocate(Encoding.signatureLength(scheme, keyArray));
+        BufferedReader lines = signatures == null || binary ? null
+                : new BufferedReader(new InputStreamReader(signatures, StandardCharsets.US_ASCII));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        ArrayDeque<Future<Object>> pending = new ArrayDeque<>();
+        long count = 0, invalid = 0;
+        long start = System.nanoTime(), report = start + REPORT_INTERVAL;
+        try {
+            while (messages.hasNext() || !pending.isEmpty()) {
+                while (messages.hasNext() && pending.size() < threads * IN_FLIGHT) {
+                    Message m = messages.next();
+                    if (signatures == null) {
+                        pending.add(executor.submit(() -> sign(m)));
+                    } else {
+                        BigInteger[] s = binary ? readSignature(signatures, record, keyArray) : parse(lines.readLine());
+                        pending.add(executor.submit(() -> verify(m, s)));
+                    }
+                }
+                Object result = pending.remove().get();
+                if (result instanceof Boolean) {
+                    if (!(Boolean) result)
+                        invalid++;
+                    out.write((Boolean) result ? TRUE : FALSE);
+                } else if (binary) {
+                    record.clear();
+                    Encoding.putSignature(record, scheme, keyArray, (BigInteger[]) result);
+                    out.write(record.array(), 0, record.position());
+                } else {
+                    out.write((Stream.of((BigInteger[]) result).map(BigInteger::toString).collect(Collectors.joining(","))
+                            + "\n").getBytes(StandardCharsets.US_ASCII));
+                }
+                count++;
+                long now = System.nanoTime();
+                if (now >= report) {
+                    System.err.printf("%d done, %.1f ops/s%n", count, count * 1e9 / (now - start));
+                    report = now + REPORT_INTERVAL;
+                }
+            }
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf("%d %s in %.2f s, %.1f ops/s%n", count, signatures == null ? "signed" : "verified",
+                seconds, count / seconds);
+        return new long[]{count, invalid};
+    }
+
+    /**
+     * 读出一个定长签名
+     */
+    private BigInteger[] readSignature(InputStream in, ByteBuffer record, BigInteger[] keyArray)
+            throws IOException {
+        if (in.readNBytes(record.array(), 0, record.capacity()) < record.capacity())
+            throw new IOException("fewer signatures than messages");
+        record.clear();
+        return Encoding.getSignature(record, scheme, keyArray);
+    }
+
+    /**
+     * 签名文件开头的树哈希参数
+     */
+    private static byte[] treeHeader(int chunk, boolean binary) {
+        return binary ? TreeHash.header(chunk) : ("tree " + chunk + "\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * 读出签名文件开头的树哈希参数，没有时不消耗输入
+     *
+     * @return 块大小，没有时为0
+     */
+    private static int readTreeHeader(InputStream in, boolean binary) throws IOException {
+        int n = treeHeader(Message.MAP_SIZE, binary).length;
+        in.mark(n);
+        byte[] b = in.readNBytes(n);
+        if (binary) {
+            int chunk = TreeHash.chunkSize(b);
+            if (chunk > 0)
+                return chunk;
+        } else {
+            String line = new String(b, StandardCharsets.US_ASCII);
+            int end = line.indexOf('\n');
+            if (line.startsWith("tree ") && end > 0) {
+                in.reset();
+                in.skip(end + 1);
+                return Integer.parseInt(line.substring(5, end).trim());
+            }
+        }
+        in.reset();
+        return 0;
+    }
+
+    /**
+     * 解析以逗号分隔的十进制签名，格式错误时返回null
+     */
+    private static BigInteger[] parse(String line) throws IOException {
+        if (line == null)
+            throw new IOException("fewer signatures than messages");
+        try {
+            return Stream.of(line.split(",")).map(BigInteger::new).toArray(BigInteger[]::new);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void usage() {
+        System.err.println("usage: Bulk keygen scheme key [group|bits]\n"
+                + "       Bulk sign scheme key input output [-t threads] [-f lines|length] [-b] [-T chunk]\n"
+                + "       Bulk verify scheme key input signatures output [-t threads] [-f lines|length] [-b]"
+                + " [-T chunk]");
+        System.exit(2);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 3)
+            usage();
+        String op = args[0];
+        String scheme = args[1];
+        Path keyPath = Paths.get(args[2]);
+        if (op.equals("keygen")) {
+            writeKey(keyPath, generate(scheme, args.length > 3 ? args[3] : null));
+            return;
+        }
+        int files = op.equals("sign") ? 2 : op.equals("verify") ? 3 : -1;
+        if (files < 0 || args.length < 3 + files || !List.of("dsa", "schnorr", "elgamal", "rsa").contains(scheme))
+            usage();
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean length = false;
+        boolean binary = false;
+        int chunk = 0;
+        for (int i = 3 + files; i < args.length; i++) {
+            if (args[i].equals("-t") && i + 1 < args.length)
+                threads = Integer.parseInt(args[++i]);
+            else if (args[i].equals("-f") && i + 1 < args.length)
+                length = args[++i].equals("length");
+            else if (args[i].equals("-b"))
+                binary = true;
+            else if (args[i].equals("-T") && i + 1 < args.length)
+                chunk = Integer.parseInt(args[++i]);
+            else
+                usage();
+        }
+        if (chunk != 0 && (chunk < TreeHash.MIN_CHUNK || chunk > Message.MAP_SIZE))
+            usage();
+        Bulk bulk = new Bulk(scheme, readKey(keyPath));
+        InputStream signatures = files == 3
+                ? new BufferedInputStream(Files.newInputStream(Paths.get(args[4])), Message.BUFFER_SIZE) : null;
+        long[] result;
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(Paths.get(args[2 + files])),
+                Message.BUFFER_SIZE)) {
+            if (signatures == null && chunk > 0) {
+                out.write(treeHeader(chunk, binary));
+            } else if (signatures != null) {
+                int recorded = readTreeHeader(signatures, binary);
+                if (recorded > 0)
+                    chunk = recorded;
+            }
+            Iterator<Message> messages = messages(Paths.get(args[3]), length, chunk);
+            result = bulk.run(messages, signatures, binary, out, threads);
+        } finally {
+            if (signatures != null)
+                signatures.close();
+        }
+        if (signatures != null) {
+            System.err.println(result[1] + " of " + result[0] + " signatures invalid");
+            if (result[1] > 0)
+                System.exit(1);
+        }
+    }
+}
@@ -1,46 +1,41 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigInteger;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
 import java.util.Scanner;
 
 public class DSA {
     /**
-     * 生成密钥
+     * 生成密钥，标准长度使用内置参数，其他长度第一次使用时生成
      *
      * @param l p的位数
      * @param n q的位数
      * @return 全局公钥p, q, g，私钥x，公钥y
      */
     private static BigInteger[] generateKey(int l, int n) {
-        SecureRandom qRandom = new SecureRandom();
-        // q为n为素数
-        BigInteger q = BigInteger.probablePrime(n, qRandom);
-        while (q.bitLength() != n)
-            q = BigInteger.probablePrime(n, qRandom);
-        SecureRandom factorRandom = new SecureRandom();
-        BigInteger factor = new BigInteger(l - n, factorRandom);
-        // p-1=q*factor
-        BigInteger p = q.multiply(factor).add(BigInteger.ONE);
-        // p为l位素数
-        while (p.bitLength() != l || !p.isProbablePrime(7)) {
-            factor = new BigInteger(l - n, factorRandom);
-            p = q.multiply(factor).add(BigInteger.ONE);
-        }
-        SecureRandom hRandom = new SecureRandom();
-        BigInteger h = new BigInteger(l, hRandom);
-        // 1<h<(p-1), h^factor % p > 1
-        while (h.compareTo(BigInteger.ONE) <= 0 || h.compareTo(p.subtract(BigInteger.ONE)) >= 0
-                || h.modPow(factor, p).compareTo(BigInteger.ONE) <= 0)
-            h = new BigInteger(l, hRandom);
-        BigInteger g = h.modPow(factor, p);
-        SecureRandom xRandom = new SecureRandom();
-        BigInteger x = new BigInteger(n, xRandom);
+        return generateKey(DomainParameters.dsa(l, n));
+    }
+
+    /**
+     * 使用注册的域参数生成密钥，只选取私钥
+     *
+     * @param group 参数名，见{@link DomainParameters}
+     * @return 全局公钥p, q, g，私钥x，公钥y
+     */
+    public static BigInteger[] generateKey(String group) {
+        return generateKey(DomainParameters.get(group));
+    }
+
+    private static BigInteger[] generateKey(BigInteger[] group) {
+        BigInteger p = group[0];
+        BigInteger q = group[1];
+        BigInteger g = group[2];
+        int n = q.bitLength();
         // 0<x<q
-        while (x.equals(BigInteger.ZERO) || x.compareTo(q) >= 0)
-            x = new BigInteger(n, xRandom);
+        BigInteger x = NonceSource.uniform(BigInteger.ONE, q);
         // y=g^x % p
-        BigInteger y = g.modPow(x, p);
+        BigInteger y = FixedBase.of(g, p, n).pow(x);
         return new BigInteger[]{p, q, g, x, y};
     }
 
@@ -51,13 +46,30 @@ public class DSA {
      * @return 与每条消息相关的秘密值
      */
     private static BigInteger nextK(BigInteger q) {
-        SecureRandom kRandom = new SecureRandom();
-        BigInteger k = new BigInteger(q.bitLength(), kRandom);
         // 0<k<q
-        while (k.equals(BigInteger.ONE) || k.compareTo(q) >= 0)
-            k = new BigInteger(q.bitLength(), kRandom);
-        k = new BigInteger("123");
-        return k;
+        return NonceSource.uniform(BigInteger.ONE, q);
+    }
+
+    /**
+     * 产生签名用的随机数，与消息无关，可以预先计算
+     *
+     * @param p 全局公钥p
+     * @param q 全局公钥q
+     * @param g 全局公钥g
+     * @return k, r=g^k % p % q, k^(-1) % q
+     */
+    public static NoncePool.Nonce nonce(BigInteger p, BigInteger q, BigInteger g) {
+        long t = Metrics.start();
+        while (true) {
+            BigInteger k = nextK(q);
+            // r=g^k % p % q
+            BigInteger r = FixedBase.of(g, p, q.bitLength()).pow(k).mod(q);
+            if (r.signum() != 0) {
+                NoncePool.Nonce nonce = new NoncePool.Nonce(k, r, k.modInverse(q));
+                Metrics.stop(Metrics.Stage.NONCE, t);
+                return nonce;
+            }
+        }
     }
 
     /**
@@ -71,24 +83,113 @@ public class DSA {
      * @return 签名r, s
      */
     public static BigInteger[] sign(BigInteger m, BigInteger p, BigInteger q, BigInteger g, BigInteger x) {
-        BigInteger[] signature = new BigInteger[2];
-        // 产生k
-        BigInteger k = nextK(q);
-        // r=g^k % p % q
-        BigInteger r = g.modPow(k, p).mod(q);
         try {
-            MessageDigest messageDigest = MessageDigest.getInstance("SHA");
-            messageDigest.update(toByteArray(m));
-            BigInteger hashM = new BigInteger(1, messageDigest.digest());
+            return sign(Message.of(m), p, q, g, x);
+        } catch (IOException e) {
+            // 内存中的消息不会抛出IOException
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 签名，消息按块读取
+     *
+     * @param m 消息
+     * @param p 全局公钥p
+     * @param q 全局公钥q
+     * @param g 全局公钥g
+     * @param x 私钥x
+     * @return 签名r, s
+     */
+    public static BigInteger[] sign(Message m, BigInteger p, BigInteger q, BigInteger g, BigInteger x)
+            throws IOException {
+        if (NonceSource.DETERMINISTIC)
+            return signDeterministic(m, p, q, g, x);
+        return sign(m, q, x, nonce(p, q, g));
+    }
+
+    /**
+     * 签名，k按RFC 6979由私钥和消息摘要确定
+     *
+     * @param m 消息
+     * @param p 全局公钥p
+     * @param q 全局公钥q
+     * @param g 全局公钥g
+     * @param x 私钥x
+     * @return 签名r, s
+     */
+    public static BigInteger[] signDeterministic(Message m, BigInteger p, BigInteger q, BigInteger g, BigInteger x)
+            throws IOException {
+        return signDeterministic(digest(m), p, q, g, x);
+    }
+
+    /**
+     * 确定性签名，消息摘要h=H(m)已经计算
+     */
+    static BigInteger[] signDeterministic(byte[] h, BigInteger p, BigInteger q, BigInteger g, BigInteger x) {
+        BigInteger hashM = new BigInteger(1, h);
+        NonceSource.Deterministic kGenerator = new NonceSource.Deterministic(x, q, h);
+        while (true) {
+            long t = Metrics.start();
+            BigInteger k = kGenerator.next();
+            // r=g^k % p % q
+            BigInteger r = FixedBase.of(g, p, q.bitLength()).pow(k).mod(q);
+            Metrics.stop(Metrics.Stage.NONCE, t);
+            if (r.signum() == 0)
+                continue;
             // s=k^(-1) * (H(m)+xr) % q
             BigInteger s = k.modInverse(q).multiply(hashM.add(x.multiply(r))).mod(q);
-            signature[0] = r;
-            signature[1] = s;
-            return signature;
+            if (s.signum() != 0)
+                return new BigInteger[]{r, s};
+        }
+    }
+
+    /**
+     * 使用预计算的随机数签名
+     *
+     * @param m    消息
+     * @param q    全局公钥q
+     * @param x    私钥x
+     * @param pool 由{@link #nonce}产生随机数的池，域参数与私钥x一致
+     * @return 签名r, s
+     */
+    public static BigInteger[] sign(Message m, BigInteger q, BigInteger x, NoncePool pool) throws IOException {
+        return sign(m, q, x, pool.take());
+    }
+
+    /**
+     * 签名，随机数已经产生
+     */
+    private static BigInteger[] sign(Message m, BigInteger q, BigInteger x, NoncePool.Nonce nonce)
+            throws IOException {
+        return signDigest(new BigInteger(1, digest(m)), q, x, nonce);
+    }
+
+    /**
+     * 签名，消息摘要H(m)和随机数已经产生
+     */
+    static BigInteger[] signDigest(BigInteger hashM, BigInteger q, BigInteger x, NoncePool.Nonce nonce) {
+        BigInteger r = nonce.commitment;
+        // s=k^(-1) * (H(m)+xr) % q
+        BigInteger s = nonce.kInv.multiply(hashM.add(x.multiply(r))).mod(q);
+        return new BigInteger[]{r, s};
+    }
+
+    /**
+     * 消息的SHA-1摘要
+     */
+    static byte[] digest(Message m) throws IOException {
+        long t = Metrics.start();
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("SHA");
         } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
+            throw new IllegalStateException(e);
         }
-        return signature;
+        m.update(messageDigest);
+        byte[] h = messageDigest.digest();
+        Metrics.stop(Metrics.Stage.HASH, t);
+        return h;
     }
 
     /**
@@ -103,37 +204,60 @@ public class DSA {
      * @return 签名是否合法
      */
     public static boolean verify(BigInteger m, BigInteger[] s, BigInteger p, BigInteger q, BigInteger g, BigInteger y) {
-        // w=s^(-1) mod q
-        BigInteger w = s[1].modInverse(q);
         try {
-            MessageDigest messageDigest = MessageDigest.getInstance("SHA");
-            messageDigest.update(toByteArray(m));
-            BigInteger hashM = new BigInteger(1, messageDigest.digest());
-            // u1=H(m)*w % q
-            BigInteger u1 = hashM.multiply(w).mod(q);
-            // u2=rw % q
-            BigInteger u2 = s[0].multiply(w).mod(q);
-            // v=g^u1 * y^u2 % p % q
-            BigInteger v = g.modPow(u1, p).multiply(y.modPow(u2, p)).mod(p).mod(q);
-            // 如果v=r则签名合法
-            return v.equals(s[0]);
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
+            return verify(Message.of(m), s, p, q, g, y);
+        } catch (IOException e) {
+            // 内存中的消息不会抛出IOException
+            throw new UncheckedIOException(e);
         }
-        return false;
     }
 
     /**
-     * BigInteger转byte[]，去掉符号位0
+     * 验证签名，消息按块读取
+     *
+     * @param m 消息
+     * @param s 签名r,s
+     * @param p 全局公钥p
+     * @param q 全局公钥q
+     * @param g 全局公钥g
+     * @param y 公钥y
+     * @return 签名是否合法
+     */
+    public static boolean verify(Message m, BigInteger[] s, BigInteger p, BigInteger q, BigInteger g, BigInteger y)
+            throws IOException {
+        return verifyDigest(new BigInteger(1, digest(m)), s, p, q, g, y);
+    }
+
+    /**
+     * 验证签名，消息摘要H(m)已经计算
+     */
+    static boolean verifyDigest(BigInteger hashM, BigInteger[] s, BigInteger p, BigInteger q, BigInteger g,
+                                BigInteger y) {
+        if (!inRange(s, q))
+            return false;
+        // w=s^(-1) mod q
+        BigInteger w = s[1].modInverse(q);
+        // u1=H(m)*w % q
+        BigInteger u1 = hashM.multiply(w).mod(q);
+        // u2=rw % q
+        BigInteger u2 = s[0].multiply(w).mod(q);
+        // v=g^u1 * y^u2 % p % q
+        long t = Metrics.start();
+        BigInteger v = MultiExp.pow(FixedBase.of(g, p, q.bitLength()), u1, y, u2).mod(q);
+        Metrics.stop(Metrics.Stage.MODPOW, t);
+        // 如果v=r则签名合法
+        t = Metrics.start();
+        boolean valid = v.equals(s[0]);
+        Metrics.stop(Metrics.Stage.COMPARE, t);
+        return valid;
+    }
+
+    /**
+     * 签名r, s的范围：0&lt;r&lt;q，0&lt;s&lt;q，否则s不可逆或者签名不合法
      */
-    private static byte[] toByteArray(BigInteger n) {
-        byte[] b = n.toByteArray();
-        if (b[0] == 0) {
-            byte[] result = new byte[b.length - 1];
-            System.arraycopy(b, 1, result, 0, result.length);
-            return result;
-        } else
-            return b;
+    static boolean inRange(BigInteger[] s, BigInteger q) {
+        return s != null && s.length == 2 && s[0] != null && s[1] != null
+                && s[0].signum() > 0 && s[0].compareTo(q) < 0 && s[1].signum() > 0 && s[1].compareTo(q) < 0;
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,530 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 域参数注册表
+ * <p>
+ * 每组参数为p, q, g：q是p-1的素因子，g的阶为q。DSA、Schnorr、ElGamal的密钥都可以复用同一组参数，
+ * 生成密钥时只需要选取私钥。
+ * <p>
+ * 内置参数在第一次使用时才解析：
+ * <ul>
+ * <li>dsa-L-N：FIPS 186规定的(L, N)长度的DSA参数，与JDK预计算的DSA参数相同</li>
+ * <li>modpN：RFC 3526的MODP群，p为安全素数，q=(p-1)/2，g=2</li>
+ * <li>ffdheN：RFC 7919的FFDHE群，p为安全素数，q=(p-1)/2，g=2</li>
+ * </ul>
+ * 自定义参数注册时验证一次，可以用{@link #save(Path)}写入紧凑的二进制文件，{@link #load(Path)}用内存映射读入，
+ * 读入的参数在第一次使用时验证。
+ */
+public class DomainParameters {
+    /**
+     * 文件头"DPAR"
+     */
+    private static final int MAGIC = 0x44504152;
+    private static final int VERSION = 1;
+    /**
+     * 验证自定义参数的certainty
+     */
+    private static final int CERTAINTY = 100;
+
+    /**
+     * 尚未解析或验证的参数
+     */
+    private static final Map<String, Supplier<BigInteger[]>> SOURCES = new ConcurrentHashMap<>();
+    /**
+     * 已解析并验证的参数
+     */
+    private static final Map<String, BigInteger[]> GROUPS = new ConcurrentHashMap<>();
+    /**
+     * 自定义参数的名字，保存时只写这些
+     */
+    private static final Set<String> CUSTOM = ConcurrentHashMap.newKeySet();
+
+    static {
+        builtin("dsa-1024-160",
+                "FD7F53811D75122952DF4A9C2EECE4E7F611B7523CEF4400C31E3F80B6512669"
+                + "455D402251FB593D8D58FABFC5F5BA30F6CB9B556CD7813B801D346FF26660B7"
+                + "6B9950A5A49F9FE8047B1022C24FBBA9D7FEB7C61BF83B57E7C6A8A6150F04FB"
+                + "83F6D3C51EC3023554135A169132F675F3AE2B61D72AEFF22203199DD14801C7",
+                "9760508F15230BCCB292B982A2EB840BF0581CF5",
+                "F7E1A085D69B3DDECBBCAB5C36B857B97994AFBBFA3AEA82F9574C0B3D078267"
+                + "5159578EBAD4594FE67107108180B449167123E84C281613B7CF09328CC8A6E1"
+                + "3C167A8B547C8D28E0A3AE1E2BB3A675916EA37F0BFA213562F1FB627A01243B"
+                + "CCA4F1BEA8519089A883DFE15AE59F06928B665E807B552564014C3BFECF492A");
+        builtin("dsa-2048-224",
+                "8F7935D9B9AAE9BFABED887ACF4951B6F32EC59E3BAF3718E8EAC4961F3EFD36"
+                + "06E74351A9C4183339B809E7C2AE1C539BA7475B85D011ADB8B4798775498469"
+                + "5CAC0E8F14B3360828A22FFA27110A3D62A993453409A0FE696C4658F84BDD20"
+                + "819C3709A01057B195ADCD00233DBA5484B6291F9D648EF883448677979CEC04"
+                + "B434A6AC2E75E9985DE23DB0292FC1118C9FFA9D8181E7338DB792B730D7B9E3"
+                + "49592F68099872153915EA3D6B8B4653C633458F803B32A4C2E0F27290256E4E"
+                + "3F8A3B0838A1C450E4E18C1A29A37DDF5EA143DE4B66FF04903ED5CF1623E158"
+                + "D487C608E97F211CD81DCA23CB6E380765F822E342BE484C05763939601CD667",
+                "BAF696A68578F7DFDEE7FA67C977C785EF32B233BAE580C0BCD5695D",
+                "16A65C58204850704E7502A39757040D34DA3A3478C154D4E4A5C02D242EE04F"
+                + "96E61E4BD0904ABDAC8F37EEB1E09F3182D23C9043CB642F88004160EDF9CA09"
+                + "B32076A79C32A627F2473E91879BA2C4E744BD2081544CB55B802C368D1FA83E"
+                + "D489E94E0FA0688E32428A5C78C478C68D0527B71C9A3ABB0B0BE12C44689639"
+                + "E7D3CE74DB101A65AA2B87F64C6826DB3EC72F4B5599834BB4EDB02F7C90E9A4"
+                + "96D3A55D535BEBFC45D4F619F63F3DEDBB873925C2F224E07731296DA887EC1E"
+                + "4748F87EFB5FDEB75484316B2232DEE553DDAF02112B0D1F02DA30973224FE27"
+                + "AEDA8B9D4B2922D9BA8BE39ED9E103A63C52810BC688B7E2ED4316E1EF17DBDE");
+        builtin("dsa-2048-256",
+                "95475CF5D93E596C3FCD1D902ADD02F427F5F3C7210313BB45FB4D5BB2E5FE1C"
+                + "BD678CD4BBDD84C9836BE1F31C0777725AEB6C2FC38B85F48076FA76BCD8146C"
+                + "C89A6FB2F706DD719898C2083DC8D896F84062E2C9C94D137B054A8D8096ADB8"
+                + "D51952398EECA852A0AF12DF83E475AA65D4EC0C38A9560D5661186FF98B9FC9"
+                + "EB60EEE8B030376B236BC73BE3ACDBD74FD61C1D2475FA3077B8F080467881FF"
+                + "7E1CA56FEE066D79506ADE51EDBB5443A563927DBC4BA520086746175C888592"
+                + "5EBC64C6147906773496990CB714EC667304E261FAEE33B3CBDF008E0C3FA906"
+                + "50D97D3909C9275BF4AC86FFCB3D03E6DFC8ADA5934242DD6D3BCCA2A406CB0B",
+                "F8183668BA5FC5BB06B5981E6D8B795D30B8978D43CA0EC572E37E09939A9773",
+                "42DEBB9DA5B3D88CC956E08787EC3F3A09BBA5F48B889A74AAF53174AA0FBE7E"
+                + "3C5B8FCD7A53BEF563B0E98560328960A9517F4014D3325FC7962BF1E049370D"
+                + "76D1314A76137E792F3F0DB859D095E4A5B932024F079ECF2EF09C797452B077"
+                + "0E1350782ED57DDF794979DCEF23CB96F183061965C4EBC93C9C71C56B925955"
+                + "A75F94CCCF1449AC43D586D0BEEE43251B0B2287349D68DE0D144403F13E802F"
+                + "4146D882E057AF19B6F6275C6676C8FA0E3CA2713A3257FD1B27D0639F695E34"
+                + "7D8D1CF9AC819A26CA9B04CB0EB9B7B035988D15BBAC65212A55239CFC7E58FA"
+                + "E38D7250AB9991FFBC97134025FE8CE04C4399AD96569BE91A546F4978693C7A");
+        builtin("dsa-3072-256",
+                "EA9CDA9F5FBDA66DD830494609405687AB7CF38538E058D1E2F68DEA95364866"
+                + "E1C05BEACDED24227EDEE28CAD80BCECAD39913BE3B713267B3B96C8D9F0F6A0"
+                + "3B5DFC9222D5CFE4AFCC9982F33784F760C3B759AEBE3BBE9098A6B84C96F1FD"
+                + "E44CE11C084C2A082C7A76A0EF142928B4F328406AB9BEB24F84577DD0F46CE8"
+                + "6FD8F08488269998BF4742D6425F7A0EC75D8660C5DD6F4E3B3D3BEE81B2C21A"
+                + "FE8C9E8B84B87192E2CC20F961D2BCD8133AFCF3675AB80681CB374C78F33E29"
+                + "D1011083D89F9C5728B94676FCCB1B57BC60288C15D85AE838AE1941C5A20AE2"
+                + "B2049B3583FE30DA455DDB3E6AD9B9955CD9BB5681431622BEB0F92DA533FCAB"
+                + "496CEBC447AA1BB5A8039522F2DA98FF416289323A64DF626AB6881870927DCE"
+                + "E387F13B5C9D24D6CBA1D82ED375A082506EE87BC7AE30067F4A94E2EE363D99"
+                + "2C40F2725B5DB4B3525EBDE22BBBFD0FA124A588B0F5A4ACB3A86951AFF09F8C"
+                + "8198FB5B53DA0C931CEDC598B4F835B779D04D99026C7BA08C4B27F118AC1E3D",
+                "C4EEAC2BBAB79BD831946D717A56A6E687547AA8E9C5494A5A4B2F4CA13D6C11",
+                "42E5FA7844F8FA9D8998D830D004E7B15B1D276BCBE5F12C35EC90C1A25F5832"
+                + "018A6724BD9CDBE803B675509BED167F3D7CF8599FC865C6D5A0F79158C1BC91"
+                + "8F00A944D0AD0F38F520FB91D85D82674D0D5F874FAA5FCDFE56CD178C1AFDC7"
+                + "CE8795727B7DEE966ED0B3C5CEDCEF8ACA628BEFEBF2D105C7AFF8EB0DA9C961"
+                + "0737DD64DCE1237B82C1B2BC8608D55FFDA98D7189444E65883315669C05716B"
+                + "DE36C78B130AA3DF2E4D609914C7C8DC470F4E300187C775F81E7B1A9C0DCE40"
+                + "5D6EAB2CBB9D9C4EF44412BA573DD403C4ED7BC2364772F56A30C48DE78F5003"
+                + "F9371C55262D2C8AC2246ADE3B02FDCFCF5CBFDE74FBCBFE6E0E0FDF3160764F"
+                + "84D311C179A40AF679A8F47AB13C8F706893245EB11EDCCE451FA2AB98001998"
+                + "7F125D8DC96622D419BA0D71F16C6024DCE9D364C3B26D8EC1A3C828F6C9D14B"
+                + "1D0333B95DB77BFDBE3C6BCE5337A1A5A7ACE10111219448447197E2A344CC42"
+                + "3BE768BB89E27BE6CBD22085614A5A3360BE23B1BFBB6E6E6471363D32C85D31");
+        builtin("modp1536",
+                "FFFFFFFFFFFFFFFFC90FDAA22168C234C4C6628B80DC1CD129024E088A67CC74"
+                + "020BBEA63B139B22514A08798E3404DDEF9519B3CD3A431B302B0A6DF25F1437"
+                + "4FE1356D6D51C245E485B576625E7EC6F44C42E9A637ED6B0BFF5CB6F406B7ED"
+                + "EE386BFB5A899FA5AE9F24117C4B1FE649286651ECE45B3DC2007CB8A163BF05"
+                + "98DA48361C55D39A69163FA8FD24CF5F83655D23DCA3AD961C62F356208552BB"
+                + "9ED529077096966D670C354E4ABC9804F1746C08CA237327FFFFFFFFFFFFFFFF",
+                null, "2");
+        builtin("modp2048",
+                "FFFFFFFFFFFFFFFFC90FDAA22168C234C4C6628B80DC1CD129024E088A67CC74"
+                + "020BBEA63B139B22514A08798E3404DDEF9519B3CD3A431B302B0A6DF25F1437"
+                + "4FE1356D6D51C245E485B576625E7EC6F44C42E9A637ED6B0BFF5CB6F406B7ED"
+                + "EE386BFB5A899FA5AE9F24117C4B1FE649286651ECE45B3DC2007CB8A163BF05"
+                + "98DA48361C55D39A69163FA8FD24CF5F83655D23DCA3AD961C62F356208552BB"
+                + "9ED529077096966D670C354E4ABC9804F1746C08CA18217C32905E462E36CE3B"
+                + "E39E772C180E86039B2783A2EC07A28FB5C55DF06F4C52C9DE2BCBF695581718"
+                + "3995497CEA956AE515D2261898FA051015728E5A8AACAA68FFFFFFFFFFFFFFFF",
+                null, "2");
+        builtin("modp3072",
+                "FFFFFFFFFFFFFFFFC90FDAA22168C234C4C6628B80DC1CD129024E088A67CC74"
+                + "020BBEA63B139B22514A08798E3404DDEF9519B3CD3A431B302B0A6DF25F1437"
+                + "4FE1356D6D51C245E485B576625E7EC6F44C42E9A637ED6B0BFF5CB6F406B7ED"
+                + "EE386BFB5A899FA5AE9F24117C4B1FE649286651ECE45B3DC2007CB8A163BF05"
+                + "98DA48361C55D39A69163FA8FD24CF5F83655D23DCA3AD961C62F356208552BB"
+                + "9ED529077096966D670C354E4ABC9804F1746C08CA18217C32905E462E36CE3B"
+                + "E39E772C180E86039B2783A2EC07A28FB5C55DF06F4C52C9DE2BCBF695581718"
+                + "3995497CEA956AE515D2261898FA051015728E5A8AAAC42DAD33170D04507A33"
+                + "A85521ABDF1CBA64ECFB850458DBEF0A8AEA71575D060C7DB3970F85A6E1E4C7"
+                + "ABF5AE8CDB0933D71E8C94E04A25619DCEE3D2261AD2EE6BF12FFA06D98A0864"
+                + "D87602733EC86A64521F2B18177B200CBBE117577A615D6C770988C0BAD946E2"
+                + "08E24FA074E5AB3143DB5BFCE0FD108E4B82D120A93AD2CAFFFFFFFFFFFFFFFF",
+                null, "2");
+        builtin("modp4096",
+                "FFFFFFFFFFFFFFFFC90FDAA22168C234C4C6628B80DC1CD129024E088A67CC74"
+                + "020BBEA63B139B22514A08798E3404DDEF9519B3CD3A431B302B0A6DF25F1437"
+                + "4FE1356D6D51C245E485B576625E7EC6F44C42E9A637ED6B0BFF5CB6F406B7ED"
+                + "EE386BFB5A899FA5AE9F24117C4B1FE649286651ECE45B3DC2007CB8A163BF05"
+                + "98DA48361C55D39A69163FA8FD24CF5F83655D23DCA3AD961C62F356208552BB"
+                + "9ED529077096966D670C354E4ABC9804F1746C08CA18217C32905E462E36CE3B"
+                + "E39E772C180E86039B2783A2EC07A28FB5C55DF06F4C52C9DE2BCBF695581718"
+                + "3995497CEA956AE515D2261898FA051015728E5A8AAAC42DAD33170D04507A33"
+                + "A85521ABDF1CBA64ECFB850458DBEF0A8AEA71575D060C7DB3970F85A6E1E4C7"
+                + "ABF5AE8CDB0933D71E8C94E04A25619DCEE3D2261AD2EE6BF12FFA06D98A0864"
+                + "D87602733EC86A64521F2B18177B200CBBE117577A615D6C770988C0BAD946E2"
+                + "08E24FA074E5AB3143DB5BFCE0FD108E4B82D120A92108011A723C12A787E6D7"
+                + "88719A10BDBA5B2699C327186AF4E23C1A946834B6150BDA2583E9CA2AD44CE8"
+                + "DBBBC2DB04DE8EF92E8EFC141FBECAA6287C59474E6BC05D99B2964FA090C3A2"
+                + "233BA186515BE7ED1F612970CEE2D7AFB81BDD762170481CD0069127D5B05AA9"
+                + "93B4EA988D8FDDC186FFB7DC90A6C08F4DF435C934063199FFFFFFFFFFFFFFFF",
+                null, "2");
+        builtin("modp6144",
+                "FFFFFFFFFFFFFFFFC90FDAA22168C234C4C6628B80DC1CD129024E088A67CC74"
+                + "020BBEA63B139B22514A08798E3404DDEF9519B3CD3A431B302B0A6DF25F1437"
+                + "4FE1356D6D51C245E485B576625E7EC6F44C42E9A637ED6B0BFF5CB6F406B7ED"
+                + "EE386BFB5A899FA5AE9F24117C4B1FE649286651ECE45B3DC2007CB8A163BF05"
+                + "98DA48361C55D39A69163FA8FD24CF5F83655D23DCA3AD961C62F356208552BB"
+                + "9ED529077096966D670C354E4ABC9804F1746C08CA18217C32905E462E36CE3B"
+                + "E39E772C180E86039B2783A2EC07A28FB5C55DF06F4C52C9DE2BCBF695581718"
+                + "3995497CEA956AE515D2261898FA051015728E5A8AAAC42DAD33170D04507A33"
+                + "A85521ABDF1CBA64ECFB850458DBEF0A8AEA71575D060C7DB3970F85A6E1E4C7"
+                + "ABF5AE8CDB0933D71E8C94E04A25619DCEE3D2261AD2EE6BF12FFA06D98A0864"
+                + "D87602733EC86A64521F2B18177B200CBBE117577A615D6C770988C0BAD946E2"
+                + "08E24FA074E5AB3143DB5BFCE0FD108E4B82D120A92108011A723C12A787E6D7"
+                + "88719A10BDBA5B2699C327186AF4E23C1A946834B6150BDA2583E9CA2AD44CE8"
+                + "DBBBC2DB04DE8EF92E8EFC141FBECAA6287C59474E6BC05D99B2964FA090C3A2"
+                + "233BA186515BE7ED1F612970CEE2D7AFB81BDD762170481CD0069127D5B05AA9"
+                + "93B4EA988D8FDDC186FFB7DC90A6C08F4DF435C93402849236C3FAB4D27C7026"
+                + "C1D4DCB2602646DEC9751E763DBA37BDF8FF9406AD9E530EE5DB382F413001AE"
+                + "B06A53ED9027D831179727B0865A8918DA3EDBEBCF9B14ED44CE6CBACED4BB1B"
+                + "DB7F1447E6CC254B332051512BD7AF426FB8F401378CD2BF5983CA01C64B92EC"
+                + "F032EA15D1721D03F482D7CE6E74FEF6D55E702F46980C82B5A84031900B1C9E"
+                + "59E7C97FBEC7E8F323A97A7E36CC88BE0F1D45B7FF585AC54BD407B22B4154AA"
+                + "CC8F6D7EBF48E1D814CC5ED20F8037E0A79715EEF29BE32806A1D58BB7C5DA76"
+                + "F550AA3D8A1FBFF0EB19CCB1A313D55CDA56C9EC2EF29632387FE8D76E3C0468"
+                + "043E8F663F4860EE12BF2D5B0B7474D6E694F91E6DCC4024FFFFFFFFFFFFFFFF",
+                null, "2");
+        builtin("modp8192",
+                "FFFFFFFFFFFFFFFFC90FDAA22168C234C4C6628B80DC1CD129024E088A67CC74"
+                + "020BBEA63B139B22514A08798E3404DDEF9519B3CD3A431B302B0A6DF25F1437"
+                + "4FE1356D6D51C245E485B576625E7EC6F44C42E9A637ED6B0BFF5CB6F406B7ED"
+                + "EE386BFB5A899FA5AE9F24117C4B1FE649286651ECE45B3DC2007CB8A163BF05"
+                + "98DA48361C55D39A69163FA8FD24CF5F83655D23DCA3AD961C62F356208552BB"
+                + "9ED529077096966D670C354E4ABC9804F1746C08CA18217C32905E462E36CE3B"
+                + "E39E772C180E86039B2783A2EC07A28FB5C55DF06F4C52C9DE2BCBF695581718"
+                + "3995497CEA956AE515D2261898FA051015728E5A8AAAC42DAD33170D04507A33"
+                + "A85521ABDF1CBA64ECFB850458DBEF0A8AEA71575D060C7DB3970F85A6E1E4C7"
+                + "ABF5AE8CDB0933D71E8C94E04A25619DCEE3D2261AD2EE6BF12FFA06D98A0864"
+                + "D87602733EC86A64521F2B18177B200CBBE117577A615D6C770988C0BAD946E2"
+                + "08E24FA074E5AB3143DB5BFCE0FD108E4B82D120A92108011A723C12A787E6D7"
+                + "88719A10BDBA5B2699C327186AF4E23C1A946834B6150BDA2583E9CA2AD44CE8"
+                + "DBBBC2DB04DE8EF92E8EFC141FBECAA6287C59474E6BC05D99B2964FA090C3A2"
+                + "233BA186515BE7ED1F612970CEE2D7AFB81BDD762170481CD0069127D5B05AA9"
+                + "93B4EA988D8FDDC186FFB7DC90A6C08F4DF435C93402849236C3FAB4D27C7026"
+                + "C1D4DCB2602646DEC9751E763DBA37BDF8FF9406AD9E530EE5DB382F413001AE"
+                + "B06A53ED9027D831179727B0865A8918DA3EDBEBCF9B14ED44CE6CBACED4BB1B"
+                + "DB7F1447E6CC254B332051512BD7AF426FB8F401378CD2BF5983CA01C64B92EC"
+                + "F032EA15D1721D03F482D7CE6E74FEF6D55E702F46980C82B5A84031900B1C9E"
+                + "59E7C97FBEC7E8F323A97A7E36CC88BE0F1D45B7FF585AC54BD407B22B4154AA"
+                + "CC8F6D7EBF48E1D814CC5ED20F8037E0A79715EEF29BE32806A1D58BB7C5DA76"
+                + "F550AA3D8A1FBFF0EB19CCB1A313D55CDA56C9EC2EF29632387FE8D76E3C0468"
+                + "043E8F663F4860EE12BF2D5B0B7474D6E694F91E6DBE115974A3926F12FEE5E4"
+                + "38777CB6A932DF8CD8BEC4D073B931BA3BC832B68D9DD300741FA7BF8AFC47ED"
+                + "2576F6936BA424663AAB639C5AE4F5683423B4742BF1C978238F16CBE39D652D"
+                + "E3FDB8BEFC848AD922222E04A4037C0713EB57A81A23F0C73473FC646CEA306B"
+                + "4BCBC8862F8385DDFA9D4B7FA2C087E879683303ED5BDD3A062B3CF5B3A278A6"
+                + "6D2A13F83F44F82DDF310EE074AB6A364597E899A0255DC164F31CC50846851D"
+                + "F9AB48195DED7EA1B1D510BD7EE74D73FAF36BC31ECFA268359046F4EB879F92"
+                + "4009438B481C6CD7889A002ED5EE382BC9190DA6FC026E479558E4475677E9AA"
+                + "9E3050E2765694DFC81F56E880B96E7160C980DD98EDD3DFFFFFFFFFFFFFFFFF",
+                null, "2");
+        builtin("ffdhe2048",
+                "FFFFFFFFFFFFFFFFADF85458A2BB4A9AAFDC5620273D3CF1D8B9C583CE2D3695"
+                + "A9E13641146433FBCC939DCE249B3EF97D2FE363630C75D8F681B202AEC4617A"
+                + "D3DF1ED5D5FD65612433F51F5F066ED0856365553DED1AF3B557135E7F57C935"
+                + "984F0C70E0E68B77E2A689DAF3EFE8721DF158A136ADE73530ACCA4F483A797A"
+                + "BC0AB182B324FB61D108A94BB2C8E3FBB96ADAB760D7F4681D4F42A3DE394DF4"
+                + "AE56EDE76372BB190B07A7C8EE0A6D709E02FCE1CDF7E2ECC03404CD28342F61"
+                + "9172FE9CE98583FF8E4F1232EEF28183C3FE3B1B4C6FAD733BB5FCBC2EC22005"
+                + "C58EF1837D1683B2C6F34A26C1B2EFFA886B423861285C97FFFFFFFFFFFFFFFF",
+                null, "2");
+        builtin("ffdhe3072",
+                "FFFFFFFFFFFFFFFFADF85458A2BB4A9AAFDC5620273D3CF1D8B9C583CE2D3695"
+                + "A9E13641146433FBCC939DCE249B3EF97D2FE363630C75D8F681B202AEC4617A"
+                + "D3DF1ED5D5FD65612433F51F5F066ED0856365553DED1AF3B557135E7F57C935"
+                + "984F0C70E0E68B77E2A689DAF3EFE8721DF158A136ADE73530ACCA4F483A797A"
+                + "BC0AB182B324FB61D108A94BB2C8E3FBB96ADAB760D7F4681D4F42A3DE394DF4"
+                + "AE56EDE76372BB190B07A7C8EE0A6D709E02FCE1CDF7E2ECC03404CD28342F61"
+                + "9172FE9CE98583FF8E4F1232EEF28183C3FE3B1B4C6FAD733BB5FCBC2EC22005"
+                + "C58EF1837D1683B2C6F34A26C1B2EFFA886B4238611FCFDCDE355B3B6519035B"
+                + "BC34F4DEF99C023861B46FC9D6E6C9077AD91D2691F7F7EE598CB0FAC186D91C"
+                + "AEFE130985139270B4130C93BC437944F4FD4452E2D74DD364F2E21E71F54BFF"
+                + "5CAE82AB9C9DF69EE86D2BC522363A0DABC521979B0DEADA1DBF9A42D5C4484E"
+                + "0ABCD06BFA53DDEF3C1B20EE3FD59D7C25E41D2B66C62E37FFFFFFFFFFFFFFFF",
+                null, "2");
+        builtin("ffdhe4096",
+                "FFFFFFFFFFFFFFFFADF85458A2BB4A9AAFDC5620273D3CF1D8B9C583CE2D3695"
+                + "A9E13641146433FBCC939DCE249B3EF97D2FE363630C75D8F681B202AEC4617A"
+                + "D3DF1ED5D5FD65612433F51F5F066ED0856365553DED1AF3B557135E7F57C935"
+                + "984F0C70E0E68B77E2A689DAF3EFE8721DF158A136ADE73530ACCA4F483A797A"
+                + "BC0AB182B324FB61D108A94BB2C8E3FBB96ADAB760D7F4681D4F42A3DE394DF4"
+                + "AE56EDE76372BB190B07A7C8EE0A6D709E02FCE1CDF7E2ECC03404CD28342F61"
+                + "9172FE9CE98583FF8E4F1232EEF28183C3FE3B1B4C6FAD733BB5FCBC2EC22005"
+                + "C58EF1837D1683B2C6F34A26C1B2EFFA886B4238611FCFDCDE355B3B6519035B"
+                + "BC34F4DEF99C023861B46FC9D6E6C9077AD91D2691F7F7EE598CB0FAC186D91C"
+                + "AEFE130985139270B4130C93BC437944F4FD4452E2D74DD364F2E21E71F54BFF"
+                + "5CAE82AB9C9DF69EE86D2BC522363A0DABC521979B0DEADA1DBF9A42D5C4484E"
+                + "0ABCD06BFA53DDEF3C1B20EE3FD59D7C25E41D2B669E1EF16E6F52C3164DF4FB"
+                + "7930E9E4E58857B6AC7D5F42D69F6D187763CF1D5503400487F55BA57E31CC7A"
+                + "7135C886EFB4318AED6A1E012D9E6832A907600A918130C46DC778F971AD0038"
+                + "092999A333CB8B7A1A1DB93D7140003C2A4ECEA9F98D0ACC0A8291CDCEC97DCF"
+                + "8EC9B55A7F88A46B4DB5A851F44182E1C68A007E5E655F6AFFFFFFFFFFFFFFFF",
+                null, "2");
+        builtin("ffdhe6144",
+                "FFFFFFFFFFFFFFFFADF85458A2BB4A9AAFDC5620273D3CF1D8B9C583CE2D3695"
+                + "A9E13641146433FBCC939DCE249B3EF97D2FE363630C75D8F681B202AEC4617A"
+                + "D3DF1ED5D5FD65612433F51F5F066ED0856365553DED1AF3B557135E7F57C935"
+                + "984F0C70E0E68B77E2A689DAF3EFE8721DF158A136ADE73530ACCA4F483A797A"
+                + "BC0AB182B324FB61D108A94BB2C8E3FBB96ADAB760D7F4681D4F42A3DE394DF4"
+                + "AE56EDE76372BB190B07A7C8EE0A6D709E02FCE1CDF7E2ECC03404CD28342F61"
+                + "9172FE9CE98583FF8E4F1232EEF28183C3FE3B1B4C6FAD733BB5FCBC2EC22005"
+                + "C58EF1837D1683B2C6F34A26C1B2EFFA886B4238611FCFDCDE355B3B6519035B"
+                + "BC34F4DEF99C023861B46FC9D6E6C9077AD91D2691F7F7EE598CB0FAC186D91C"
+                + "AEFE130985139270B4130C93BC437944F4FD4452E2D74DD364F2E21E71F54BFF"
+                + "5CAE82AB9C9DF69EE86D2BC522363A0DABC521979B0DEADA1DBF9A42D5C4484E"
+                + "0ABCD06BFA53DDEF3C1B20EE3FD59D7C25E41D2B669E1EF16E6F52C3164DF4FB"
+                + "7930E9E4E58857B6AC7D5F42D69F6D187763CF1D5503400487F55BA57E31CC7A"
+                + "7135C886EFB4318AED6A1E012D9E6832A907600A918130C46DC778F971AD0038"
+                + "092999A333CB8B7A1A1DB93D7140003C2A4ECEA9F98D0ACC0A8291CDCEC97DCF"
+                + "8EC9B55A7F88A46B4DB5A851F44182E1C68A007E5E0DD9020BFD64B645036C7A"
+                + "4E677D2C38532A3A23BA4442CAF53EA63BB454329B7624C8917BDD64B1C0FD4C"
+                + "B38E8C334C701C3ACDAD0657FCCFEC719B1F5C3E4E46041F388147FB4CFDB477"
+                + "A52471F7A9A96910B855322EDB6340D8A00EF092350511E30ABEC1FFF9E3A26E"
+                + "7FB29F8C183023C3587E38DA0077D9B4763E4E4B94B2BBC194C6651E77CAF992"
+                + "EEAAC0232A281BF6B3A739C1226116820AE8DB5847A67CBEF9C9091B462D538C"
+                + "D72B03746AE77F5E62292C311562A846505DC82DB854338AE49F5235C95B9117"
+                + "8CCF2DD5CACEF403EC9D1810C6272B045B3B71F9DC6B80D63FDD4A8E9ADB1E69"
+                + "62A69526D43161C1A41D570D7938DAD4A40E329CD0E40E65FFFFFFFFFFFFFFFF",
+                null, "2");
+        builtin("ffdhe8192",
+                "FFFFFFFFFFFFFFFFADF85458A2BB4A9AAFDC5620273D3CF1D8B9C583CE2D3695"
+                + "A9E13641146433FBCC939DCE249B3EF97D2FE363630C75D8F681B202AEC4617A"
+                + "D3DF1ED5D5FD65612433F51F5F066ED0856365553DED1AF3B557135E7F57C935"
+                + "984F0C70E0E68B77E2A689DAF3EFE8721DF158A136ADE73530ACCA4F483A797A"
+                + "BC0AB182B324FB61D108A94BB2C8E3FBB96ADAB760D7F4681D4F42A3DE394DF4"
+                + "AE56EDE76372BB190B07A7C8EE0A6D709E02FCE1CDF7E2ECC03404CD28342F61"
+                + "9172FE9CE98583FF8E4F1232EEF28183C3FE3B1B4C6FAD733BB5FCBC2EC22005"
+                + "C58EF1837D1683B2C6F34A26C1B2EFFA886B4238611FCFDCDE355B3B6519035B"
+                + "BC34F4DEF99C023861B46FC9D6E6C9077AD91D2691F7F7EE598CB0FAC186D91C"
+                + "AEFE130985139270B4130C93BC437944F4FD4452E2D74DD364F2E21E71F54BFF"
+                + "5CAE82AB9C9DF69EE86D2BC522363A0DABC521979B0DEADA1DBF9A42D5C4484E"
+                + "0ABCD06BFA53DDEF3C1B20EE3FD59D7C25E41D2B669E1EF16E6F52C3164DF4FB"
+                + "7930E9E4E58857B6AC7D5F42D69F6D187763CF1D5503400487F55BA57E31CC7A"
+                + "7135C886EFB4318AED6A1E012D9E6832A907600A918130C46DC778F971AD0038"
+                + "092999A333CB8B7A1A1DB93D7140003C2A4ECEA9F98D0ACC0A8291CDCEC97DCF"
+                + "8EC9B55A7F88A46B4DB5A851F44182E1C68A007E5E0DD9020BFD64B645036C7A"
+                + "4E677D2C38532A3A23BA4442CAF53EA63BB454329B7624C8917BDD64B1C0FD4C"
+                + "B38E8C334C701C3ACDAD0657FCCFEC719B1F5C3E4E46041F388147FB4CFDB477"
+                + "A52471F7A9A96910B855322EDB6340D8A00EF092350511E30ABEC1FFF9E3A26E"
+                + "7FB29F8C183023C3587E38DA0077D9B4763E4E4B94B2BBC194C6651E77CAF992"
+                + "EEAAC0232A281BF6B3A739C1226116820AE8DB5847A67CBEF9C9091B462D538C"
+                + "D72B03746AE77F5E62292C311562A846505DC82DB854338AE49F5235C95B9117"
+                + "8CCF2DD5CACEF403EC9D1810C6272B045B3B71F9DC6B80D63FDD4A8E9ADB1E69"
+                + "62A69526D43161C1A41D570D7938DAD4A40E329CCFF46AAA36AD004CF600C838"
+                + "1E425A31D951AE64FDB23FCEC9509D43687FEB69EDD1CC5E0B8CC3BDF64B10EF"
+                + "86B63142A3AB8829555B2F747C932665CB2C0F1CC01BD70229388839D2AF05E4"
+                + "54504AC78B7582822846C0BA35C35F5C59160CC046FD8251541FC68C9C86B022"
+                + "BB7099876A460E7451A8A93109703FEE1C217E6C3826E52C51AA691E0E423CFC"
+                + "99E9E31650C1217B624816CDAD9A95F9D5B8019488D9C0A0A1FE3075A577E231"
+                + "83F81D4A3F2FA4571EFC8CE0BA8A4FE8B6855DFE72B0A66EDED2FBABFBE58A30"
+                + "FAFABE1C5D71A87E2F741EF8C1FE86FEA6BBFDE530677F0D97D11D49F7A8443D"
+                + "0822E506A9F4614E011E2A94838FF88CD68C8BB7C5C6424CFFFFFFFFFFFFFFFF",
+                null, "2");
+    }
+
+    private DomainParameters() {
+    }
+
+    /**
+     * 取得一组参数
+     *
+     * @param name 参数名
+     * @return p, q, g
+     */
+    public static BigInteger[] get(String name) {
+        BigInteger[] group = GROUPS.get(name);
+        if (group == null) {
+            Supplier<BigInteger[]> source = SOURCES.get(name);
+            if (source == null)
+                throw new IllegalArgumentException("unknown group: " + name);
+            group = GROUPS.computeIfAbsent(name, k -> source.get());
+        }
+        return group.clone();
+    }
+
+    /**
+     * 在已解析的参数中查找p, g对应的q，供不带q的验证接口使用
+     *
+     * @param p 模数p
+     * @param g 生成元g
+     * @return q，没有对应的参数时为null
+     */
+    static BigInteger order(BigInteger p, BigInteger g) {
+        for (BigInteger[] group : GROUPS.values())
+            if (group[0].equals(p) && group[2].equals(g))
+                return group[1];
+        return null;
+    }
+
+    /**
+     * @return 全部参数名
+     */
+    public static Set<String> names() {
+        return new TreeSet<>(SOURCES.keySet());
+    }
+
+    /**
+     * 取得(l, n)长度的DSA参数，没有时生成一组并注册为dsa-l-n
+     *
+     * @param l p的位数
+     * @param n q的位数
+     * @return p, q, g
+     */
+    public static BigInteger[] dsa(int l, int n) {
+        String name = "dsa-" + l + "-" + n;
+        if (!SOURCES.containsKey(name)) {
+            synchronized (DomainParameters.class) {
+                if (!SOURCES.containsKey(name))
+                    register(name, new ParameterGenerator().dsa(l, n));
+            }
+        }
+        return get(name);
+    }
+
+    /**
+     * 验证并注册自定义参数
+     *
+     * @param name  参数名
+     * @param group p, q, g
+     */
+    public static void register(String name, BigInteger[] group) {
+        if (SOURCES.containsKey(name) && !CUSTOM.contains(name))
+            throw new IllegalArgumentException("built-in group: " + name);
+        BigInteger[] copy = {group[0], group[1], group[2]};
+        validate(copy[0], copy[1], copy[2]);
+        SOURCES.put(name, () -> copy);
+        GROUPS.put(name, copy);
+        CUSTOM.add(name);
+    }
+
+    /**
+     * 验证参数：p, q为素数，q整除p-1，1<g<p且g^q % p=1
+     *
+     * @throws IllegalArgumentException 参数不合法
+     */
+    public static void validate(BigInteger p, BigInteger q, BigInteger g) {
+        if (q.signum() <= 0 || p.compareTo(q) <= 0
+                || g.compareTo(BigInteger.ONE) <= 0 || g.compareTo(p) >= 0)
+            throw new IllegalArgumentException("invalid group");
+        if (p.subtract(BigInteger.ONE).mod(q).signum() != 0)
+            throw new IllegalArgumentException("q does not divide p-1");
+        if (!g.modPow(q, p).equals(BigInteger.ONE))
+            throw new IllegalArgumentException("g does not have order q");
+        if (!q.isProbablePrime(CERTAINTY) || !p.isProbablePrime(CERTAINTY))
+            throw new IllegalArgumentException("p or q is not prime");
+    }
+
+    /**
+     * 把自定义参数写入文件
+     * <p>
+     * 格式：MAGIC, VERSION, 个数，每组为名字的长度(short)和UTF-8字节，p, q, g各为长度(int)和大端字节。
+     * 先写临时文件再替换，写到一半失败不会破坏原文件。
+     *
+     * @param path 文件
+     * @return 写入的组数
+     */
+    public static int save(Path path) throws IOException {
+        Set<String> names = new TreeSet<>(CUSTOM);
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (OutputStream os = Files.newOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(names.size());
+            for (String name : names) {
+                byte[] b = name.getBytes(StandardCharsets.UTF_8);
+                out.writeShort(b.length);
+                out.write(b);
+                for (BigInteger v : get(name)) {
+                    byte[] m = v.toByteArray();
+                    out.writeInt(m.length);
+                    out.write(m);
+                }
+            }
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return names.size();
+    }
+
+    /**
+     * 用内存映射读入{@link #save(Path)}写的文件，参数在第一次使用时验证
+     * <p>
+     * 先读完整个文件并检查名字，全部通过后才注册，格式错误或与内置参数重名时注册表不变。
+     *
+     * @param path 文件
+     * @return 读入的组数
+     * @throws IOException 文件格式错误
+     */
+    public static int load(Path path) throws IOException {
+        Map<String, BigInteger[]> loaded = new LinkedHashMap<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            try {
+                if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+                    throw new IOException("not a domain parameter file: " + path);
+                int count = buffer.getInt();
+                for (int i = 0; i < count; i++) {
+                    byte[] b = new byte[buffer.getShort() & 0xffff];
+                    buffer.get(b);
+                    String name = new String(b, StandardCharsets.UTF_8);
+                    BigInteger[] group = {read(buffer), read(buffer), read(buffer)};
+                    if (SOURCES.containsKey(name) && !CUSTOM.contains(name))
+                        throw new IOException("built-in group: " + name);
+                    loaded.put(name, group);
+                }
+            } catch (RuntimeException e) {
+                throw new IOException("corrupt domain parameter file: " + path, e);
+            }
+        }
+        for (Map.Entry<String, BigInteger[]> entry : loaded.entrySet()) {
+            String name = entry.getKey();
+            BigInteger p = entry.getValue()[0], q = entry.getValue()[1], g = entry.getValue()[2];
+            GROUPS.remove(name);
+            SOURCES.put(name, () -> {
+                validate(p, q, g);
+                return new BigInteger[]{p, q, g};
+            });
+            CUSTOM.add(name);
+        }
+        return loaded.size();
+    }
+
+    private static BigInteger read(ByteBuffer buffer) {
+        byte[] b = new byte[buffer.getInt()];
+        buffer.get(b);
+        return new BigInteger(b);
+    }
+
+    /**
+     * 注册内置参数，q为null时p为安全素数，q=(p-1)/2
+     */
+    private static void builtin(String name, String p, String q, String g) {
+        SOURCES.put(name, () -> {
+            BigInteger p1 = new BigInteger(p, 16);
+            BigInteger q1 = q == null ? p1.shiftRight(1) : new BigInteger(q, 16);
+            return new BigInteger[]{p1, q1, new BigInteger(g, 16)};
+        });
+    }
+}
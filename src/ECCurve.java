@@ -0,0 +1,833 @@
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * 素域上的短Weierstrass椭圆曲线y^2=x^3+ax+b，目前有P-256和secp256k1
+ * <p>
+ * 域元素是8个32位limb，limb存放在long中，两个limb的乘积加上进位不会超过64位，不需要求128位乘积的高半部分。
+ * 乘法先算出512位的积（平方只算一半的交叉项），再按p的形状约减，只用加减法和移位，见{@link Field}：
+ * P-256的p=2^256-2^224+2^192+2^96-1用FIPS 186的Solinas约减，secp256k1的p=2^256-2^32-977把高半部分乘以2^32+977加回。
+ * 求逆用费马小定理x^(p-2)，按p-2的形状用固定的加法链，约255次平方和十几次乘法，不经过BigInteger。
+ * 点用Jacobian坐标(X, Y, Z)表示仿射点(X/Z^2, Y/Z^3)，加法和倍点都不需要求逆，
+ * 标量乘的最后才求一次逆转回仿射坐标。P-256的a=-3、secp256k1的a=0在倍点时分别少算一次乘法。
+ * <p>
+ * 生成元G的标量乘用梳状表（Lim-Lee comb）：把256位标量排成{@link #COMB_WIDTH}行、每行d位，
+ * 预先算好每一列所有可能的组合，之后只需要d次倍点和d次加法。其他点的标量乘用宽度为{@link #WNAF_WIDTH}的wNAF。
+ * 这两种方法的运算次数都与标量有关，不是常数时间的。
+ * <p>
+ * 仿射点在接口上表示为BigInteger[]{x, y}，无穷远点为null。{@link #main}运行已知答案测试。
+ */
+public class ECCurve {
+    /**
+     * 梳状表的行数，表中有2^COMB_WIDTH个点
+     */
+    public static final int COMB_WIDTH = 8;
+    /**
+     * 可变底数标量乘的wNAF宽度
+     */
+    public static final int WNAF_WIDTH = 5;
+    /**
+     * limb个数
+     */
+    private static final int N = 8;
+    private static final long MASK = 0xffffffffL;
+
+    /**
+     * NIST P-256，即secp256r1
+     */
+    public static final ECCurve P256 = new ECCurve("P-256", new P256Field(),
+            "ffffffff00000001000000000000000000000000ffffffffffffffffffffffff",
+            "ffffffff00000001000000000000000000000000fffffffffffffffffffffffc",
+            "5ac635d8aa3a93e7b3ebbd55769886bc651d06b0cc53b0f63bce3c3e27d2604b",
+            "ffffffff00000000ffffffffffffffffbce6faada7179e84f3b9cac2fc632551",
+            "6b17d1f2e12c4247f8bce6e563a440f277037d812deb33a0f4a13945d898c296",
+            "4fe342e2fe1a7f9b8ee7eb4a7c0f9e162bce33576b315ececbb6406837bf51f5");
+    /**
+     * SEC 2的secp256k1
+     */
+    public static final ECCurve SECP256K1 = new ECCurve("secp256k1", new K256Field(),
+            "fffffffffffffffffffffffffffffffffffffffffffffffffffffffefffffc2f",
+            "0",
+            "7",
+            "fffffffffffffffffffffffffffffffebaaedce6af48a03bbfd25e8cd0364141",
+            "79be667ef9dcbbac55a06295ce870b07029bfcdb2dce28d959f2815b16f81798",
+            "483ada7726a3c4655da4fbfc0e1108a8fd17b448a68554199c47d08ffb10d4b8");
+
+    /**
+     * 曲线名
+     */
+    public final String name;
+    /**
+     * 域的素数模数
+     */
+    public final BigInteger p;
+    public final BigInteger a;
+    public final BigInteger b;
+    /**
+     * G的阶
+     */
+    public final BigInteger n;
+    /**
+     * 生成元G
+     */
+    public final BigInteger[] g;
+
+    /**
+     * 按p特化的约减和求逆
+     */
+    private final Field field;
+    /**
+     * limb形式的a, b, 1
+     */
+    private final long[] aL, bL, oneL;
+    private final boolean aMinus3, aZero;
+    /**
+     * 梳状表的列数
+     */
+    private final int d;
+    /**
+     * comb[j]为第j种组合对应的仿射点{x, y}，limb形式，comb[0]为无穷远点不使用
+     */
+    private final long[][][] comb;
+
+    private ECCurve(String name, Field field, String p, String a, String b, String n, String gx, String gy) {
+        this.name = name;
+        this.p = new BigInteger(p, 16);
+        this.a = new BigInteger(a, 16);
+        this.b = new BigInteger(b, 16);
+        this.n = new BigInteger(n, 16);
+        this.g = new BigInteger[]{new BigInteger(gx, 16), new BigInteger(gy, 16)};
+        this.field = field;
+        if (!toBigInteger(field.m).equals(this.p))
+            throw new IllegalArgumentException(name + ": field does not match p");
+        this.aL = toField(this.a);
+        this.bL = toField(this.b);
+        this.oneL = toField(BigInteger.ONE);
+        this.aMinus3 = this.a.equals(this.p.subtract(BigInteger.valueOf(3)));
+        this.aZero = this.a.signum() == 0;
+        this.d = (this.n.bitLength() + COMB_WIDTH - 1) / COMB_WIDTH;
+        this.comb = buildComb();
+    }
+
+    /**
+     * 按名字取曲线
+     *
+     * @param name P-256、secp256r1或secp256k1
+     */
+    public static ECCurve of(String name) {
+        switch (name) {
+            case "P-256":
+            case "secp256r1":
+                return P256;
+            case "secp256k1":
+                return SECP256K1;
+            default:
+                throw new IllegalArgumentException("unknown curve: " + name);
+        }
+    }
+
+    /**
+     * @return 点的字节长度，即p的字节长度
+     */
+    public int fieldLength() {
+        return (p.bitLength() + 7) >>> 3;
+    }
+
+    /**
+     * @return 随机标量，1<=k<n
+     */
+    public BigInteger randomScalar(SecureRandom random) {
+        return NonceSource.uniform(BigInteger.ONE, n, random);
+    }
+
+    /**
+     * 仿射点是否在曲线上，无穷远点不算
+     */
+    public boolean isOnCurve(BigInteger[] point) {
+        if (point == null || point.length != 2)
+            return false;
+        BigInteger x = point[0], y = point[1];
+        if (x == null || y == null || x.signum() < 0 || x.compareTo(p) >= 0 || y.signum() < 0 || y.compareTo(p) >= 0)
+            return false;
+        // y^2=x^3+ax+b
+        BigInteger rhs = x.multiply(x).add(a).multiply(x).add(b).mod(p);
+        return y.multiply(y).mod(p).equals(rhs);
+    }
+
+    /**
+     * SEC 1压缩编码：02或03（y的奇偶），之后是定长的x
+     */
+    public byte[] encode(BigInteger[] point) {
+        int len = fieldLength();
+        byte[] out = new byte[1 + len];
+        out[0] = (byte) (point[1].testBit(0) ? 3 : 2);
+        byte[] x = Encoding.toBytes(point[0], len);
+        System.arraycopy(x, 0, out, 1, len);
+        return out;
+    }
+
+    /**
+     * 生成元的标量乘，梳状表
+     *
+     * @return kG，无穷远点为null
+     */
+    public BigInteger[] multiplyG(BigInteger k) {
+        Ops ops = new Ops();
+        return ops.toAffine(ops.comb(k.mod(n)));
+    }
+
+    /**
+     * 可变底数的标量乘，wNAF
+     *
+     * @param point 曲线上的仿射点
+     * @param k     标量
+     * @return kP，无穷远点为null
+     */
+    public BigInteger[] multiply(BigInteger[] point, BigInteger k) {
+        Ops ops = new Ops();
+        return ops.toAffine(ops.wnaf(ops.fromAffine(point), k.mod(n)));
+    }
+
+    /**
+     * 验证用的u1*G+u2*Q，两个标量乘的结果在Jacobian坐标下相加，只求一次逆
+     *
+     * @return u1*G+u2*Q，无穷远点为null
+     */
+    public BigInteger[] multiplyAdd(BigInteger u1, BigInteger[] q, BigInteger u2) {
+        Ops ops = new Ops();
+        long[][] r = ops.add(ops.comb(u1.mod(n)), ops.wnaf(ops.fromAffine(q), u2.mod(n)));
+        return ops.toAffine(r);
+    }
+
+    /**
+     * @return v % p的limb
+     */
+    private long[] toField(BigInteger v) {
+        return toLimbs(v.mod(p));
+    }
+
+    /**
+     * 0<=v<2^256转为小端limb
+     */
+    private static long[] toLimbs(BigInteger v) {
+        long[] limbs = new long[N];
+        for (int i = 0; i < N; i++)
+            limbs[i] = v.shiftRight(32 * i).longValue() & MASK;
+        return limbs;
+    }
+
+    private static BigInteger toBigInteger(long[] limbs) {
+        BigInteger v = BigInteger.ZERO;
+        for (int i = N - 1; i >= 0; i--)
+            v = v.shiftLeft(32).or(BigInteger.valueOf(limbs[i]));
+        return v;
+    }
+
+    /**
+     * 构造梳状表，comb[j]=sum(j的第i位 * 2^(i*d) * G)
+     */
+    private long[][][] buildComb() {
+        Ops ops = new Ops();
+        int size = 1 << COMB_WIDTH;
+        long[][][] jacobian = new long[size][][];
+        // base[i]=2^(i*d) * G
+        long[][] base = ops.fromAffine(g);
+        jacobian[0] = ops.infinity();
+        for (int i = 0; i < COMB_WIDTH; i++) {
+            int bit = 1 << i;
+            for (int j = 0; j < bit; j++)
+                jacobian[bit | j] = ops.add(jacobian[j], base);
+            for (int k = 0; k < d; k++)
+                base = ops.dbl(base);
+        }
+        long[][][] table = new long[size][][];
+        for (int j = 1; j < size; j++)
+            table[j] = ops.normalize(jacobian[j]);
+        return table;
+    }
+
+    /**
+     * 一次标量乘用到的域运算和点运算，带自己的工作区，不是线程安全的
+     * <p>
+     * Jacobian点为long[][]{X, Y, Z}，Z=0为无穷远点；仿射点为long[][]{x, y}；坐标都是[0, p)内的limb。
+     */
+    private final class Ops {
+        /**
+         * 512位的积
+         */
+        private final long[] t = new long[2 * N];
+
+        /**
+         * x*y % p
+         */
+        long[] mul(long[] x, long[] y) {
+            long[] t = this.t;
+            Arrays.fill(t, 0);
+            for (int i = 0; i < N; i++) {
+                // t+=x[i]*y*2^(32i)
+                long xi = x[i];
+                long c = 0;
+                for (int j = 0; j < N; j++) {
+                    long s = t[i + j] + xi * y[j] + c;
+                    t[i + j] = s & MASK;
+                    c = s >>> 32;
+                }
+                t[i + N] = c;
+            }
+            return field.reduce(t);
+        }
+
+        /**
+         * x^2 % p，交叉项x[i]*x[j]（i&lt;j）只算一次再乘以2
+         */
+        long[] sqr(long[] x) {
+            long[] t = this.t;
+            Arrays.fill(t, 0);
+            for (int i = 0; i < N - 1; i++) {
+                long xi = x[i];
+                long c = 0;
+                for (int j = i + 1; j < N; j++) {
+                    long s = t[i + j] + xi * x[j] + c;
+                    t[i + j] = s & MASK;
+                    c = s >>> 32;
+                }
+                t[i + N] = c;
+            }
+            long c = 0;
+            for (int i = 0; i < N; i++) {
+                long d = x[i] * x[i];
+                long lo = (t[2 * i] << 1) + (d & MASK) + c;
+                t[2 * i] = lo & MASK;
+                long hi = (t[2 * i + 1] << 1) + (d >>> 32) + (lo >>> 32);
+                t[2 * i + 1] = hi & MASK;
+                c = hi >>> 32;
+            }
+            return field.reduce(t);
+        }
+
+        /**
+         * 连续平方n次
+         */
+        long[] sqr(long[] x, int n) {
+            for (int i = 0; i < n; i++)
+                x = sqr(x);
+            return x;
+        }
+
+        long[] add(long[] x, long[] y) {
+            long[] out = new long[N];
+            long c = 0;
+            for (int i = 0; i < N; i++) {
+                long s = x[i] + y[i] + c;
+                out[i] = s & MASK;
+                c = s >>> 32;
+            }
+            if (c != 0 || compare(out, field.m) >= 0)
+                subInPlace(out, field.m);
+            return out;
+        }
+
+        long[] sub(long[] x, long[] y) {
+            long[] out = x.clone();
+            if (subInPlace(out, y) != 0)
+                // 借位时加上p
+                addInPlace(out, field.m);
+            return out;
+        }
+
+        long[] neg(long[] x) {
+            return isZero(x) ? x : sub(new long[N], x);
+        }
+
+        /**
+         * 求逆x^(p-2)
+         */
+        long[] inv(long[] x) {
+            return field.inv(this, x);
+        }
+
+        long[][] infinity() {
+            return new long[][]{new long[N], new long[N], new long[N]};
+        }
+
+        long[][] fromAffine(BigInteger[] point) {
+            return new long[][]{toField(point[0]), toField(point[1]), oneL.clone()};
+        }
+
+        /**
+         * Jacobian点转为limb形式的仿射点{x, y}
+         */
+        long[][] normalize(long[][] r) {
+            long[] zInv = inv(r[2]);
+            long[] zInv2 = sqr(zInv);
+            return new long[][]{mul(r[0], zInv2), mul(r[1], mul(zInv2, zInv))};
+        }
+
+        BigInteger[] toAffine(long[][] r) {
+            if (isZero(r[2]))
+                return null;
+            long[][] xy = normalize(r);
+            return new BigInteger[]{toBigInteger(xy[0]), toBigInteger(xy[1])};
+        }
+
+        /**
+         * 倍点
+         */
+        long[][] dbl(long[][] r) {
+            long[] x = r[0], y = r[1], z = r[2];
+            if (isZero(z) || isZero(y))
+                return infinity();
+            long[] yy = sqr(y);
+            // s=4*X*Y^2
+            long[] s = mul(x, yy);
+            s = add(s, s);
+            s = add(s, s);
+            // m=3*X^2+a*Z^4
+            long[] mm;
+            if (aMinus3) {
+                // 3*(X-Z^2)*(X+Z^2)
+                long[] zz = sqr(z);
+                mm = mul(sub(x, zz), add(x, zz));
+                mm = add(add(mm, mm), mm);
+            } else {
+                long[] xx = sqr(x);
+                mm = add(add(xx, xx), xx);
+                if (!aZero)
+                    mm = add(mm, mul(aL, sqr(sqr(z))));
+            }
+            // X3=m^2-2s
+            long[] x3 = sub(sub(sqr(mm), s), s);
+            // Y3=m*(s-X3)-8*Y^4
+            long[] y4 = sqr(yy);
+            long[] y4x8 = add(y4, y4);
+            y4x8 = add(y4x8, y4x8);
+            y4x8 = add(y4x8, y4x8);
+            long[] y3 = sub(mul(mm, sub(s, x3)), y4x8);
+            // Z3=2*Y*Z
+            long[] z3 = mul(y, z);
+            z3 = add(z3, z3);
+            return new long[][]{x3, y3, z3};
+        }
+
+        /**
+         * Jacobian点相加
+         */
+        long[][] add(long[][] p1, long[][] p2) {
+            if (isZero(p1[2]))
+                return p2;
+            if (isZero(p2[2]))
+                return p1;
+            long[] z1z1 = sqr(p1[2]);
+            long[] z2z2 = sqr(p2[2]);
+            long[] u1 = mul(p1[0], z2z2);
+            long[] u2 = mul(p2[0], z1z1);
+            long[] s1 = mul(p1[1], mul(p2[2], z2z2));
+            long[] s2 = mul(p2[1], mul(p1[2], z1z1));
+            return finishAdd(p1, p2, u1, u2, s1, s2, mul(p1[2], p2[2]));
+        }
+
+        /**
+         * Jacobian点加仿射点{x, y}
+         */
+        long[][] addAffine(long[][] p1, long[][] q) {
+            if (isZero(p1[2]))
+                return new long[][]{q[0], q[1], oneL};
+            long[] z1z1 = sqr(p1[2]);
+            long[] u2 = mul(q[0], z1z1);
+            long[] s2 = mul(q[1], mul(p1[2], z1z1));
+            return finishAdd(p1, new long[][]{q[0], q[1], oneL}, p1[0], u2, p1[1], s2, p1[2]);
+        }
+
+        /**
+         * 加法的公共部分，z12=Z1*Z2
+         */
+        private long[][] finishAdd(long[][] p1, long[][] p2, long[] u1, long[] u2, long[] s1, long[] s2,
+                                   long[] z12) {
+            long[] h = sub(u2, u1);
+            long[] r = sub(s2, s1);
+            if (isZero(h))
+                return isZero(r) ? dbl(p1) : infinity();
+            long[] hh = sqr(h);
+            long[] hhh = mul(h, hh);
+            long[] v = mul(u1, hh);
+            // X3=r^2-H^3-2V
+            long[] x3 = sub(sub(sub(sqr(r), hhh), v), v);
+            // Y3=r*(V-X3)-S1*H^3
+            long[] y3 = sub(mul(r, sub(v, x3)), mul(s1, hhh));
+            // Z3=Z1*Z2*H
+            return new long[][]{x3, y3, mul(z12, h)};
+        }
+
+        /**
+         * 梳状表标量乘，0<=k<n
+         */
+        long[][] comb(BigInteger k) {
+            long[][] r = infinity();
+            for (int i = d - 1; i >= 0; i--) {
+                r = dbl(r);
+                int j = 0;
+                for (int row = COMB_WIDTH - 1; row >= 0; row--)
+                    j = j << 1 | (k.testBit(row * d + i) ? 1 : 0);
+                if (j != 0)
+                    r = addAffine(r, comb[j]);
+            }
+            return r;
+        }
+
+        /**
+         * wNAF标量乘
+         */
+        long[][] wnaf(long[][] point, BigInteger k) {
+            int[] digits = ECCurve.wnaf(k, WNAF_WIDTH);
+            // 奇数倍表odd[i]=(2i+1)P
+            long[][][] odd = new long[1 << (WNAF_WIDTH - 2)][][];
+            odd[0] = point;
+            long[][] twice = dbl(point);
+            for (int i = 1; i < odd.length; i++)
+                odd[i] = add(odd[i - 1], twice);
+            long[][] r = infinity();
+            for (int i = digits.length - 1; i >= 0; i--) {
+                r = dbl(r);
+                int digit = digits[i];
+                if (digit > 0) {
+                    r = add(r, odd[digit >>> 1]);
+                } else if (digit < 0) {
+                    long[][] q = odd[-digit >>> 1];
+                    r = add(r, new long[][]{q[0], neg(q[1]), q[2]});
+                }
+            }
+            return r;
+        }
+
+    }
+
+    /**
+     * x-=y，返回借位
+     */
+    private static long subInPlace(long[] x, long[] y) {
+        long borrow = 0;
+        for (int i = 0; i < N; i++) {
+            long s = x[i] - y[i] - borrow;
+            x[i] = s & MASK;
+            borrow = s >>> 63;
+        }
+        return borrow;
+    }
+
+    /**
+     * x+=y，返回进位
+     */
+    private static long addInPlace(long[] x, long[] y) {
+        long c = 0;
+        for (int i = 0; i < N; i++) {
+            long s = x[i] + y[i] + c;
+            x[i] = s & MASK;
+            c = s >>> 32;
+        }
+        return c;
+    }
+
+    /**
+     * 按p的形状特化的模p约减和求逆
+     */
+    private abstract static class Field {
+        /**
+         * p的limb
+         */
+        final long[] m;
+
+        Field(String p) {
+            this.m = toLimbs(new BigInteger(p, 16));
+        }
+
+        /**
+         * 约减512位的积
+         *
+         * @param t 16个32位limb，0&lt;=t&lt;p^2
+         * @return t % p
+         */
+        abstract long[] reduce(long[] t);
+
+        /**
+         * 求逆x^(p-2)，x不为0
+         */
+        abstract long[] inv(ECCurve.Ops ops, long[] x);
+    }
+
+    /**
+     * P-256，p=2^256-2^224+2^192+2^96-1
+     */
+    private static final class P256Field extends Field {
+        P256Field() {
+            super("ffffffff00000001000000000000000000000000ffffffffffffffffffffffff");
+        }
+
+        /**
+         * FIPS 186-4 D.2.3：t=s1+2s2+2s3+s4+s5-s6-s7-s8-s9，按字展开
+         */
+        @Override
+        long[] reduce(long[] t) {
+            long c0 = t[0], c1 = t[1], c2 = t[2], c3 = t[3], c4 = t[4], c5 = t[5], c6 = t[6], c7 = t[7];
+            long c8 = t[8], c9 = t[9], c10 = t[10], c11 = t[11];
+            long c12 = t[12], c13 = t[13], c14 = t[14], c15 = t[15];
+            long[] w = new long[N];
+            w[0] = c0 + c8 + c9 - c11 - c12 - c13 - c14;
+            w[1] = c1 + c9 + c10 - c12 - c13 - c14 - c15;
+            w[2] = c2 + c10 + c11 - c13 - c14 - c15;
+            w[3] = c3 + 2 * (c11 + c12) + c13 - c15 - c8 - c9;
+            w[4] = c4 + 2 * (c12 + c13) + c14 - c9 - c10;
+            w[5] = c5 + 2 * (c13 + c14) + c15 - c10 - c11;
+            w[6] = c6 + 3 * c14 + 2 * c15 + c13 - c8 - c9;
+            w[7] = c7 + 3 * c15 + c8 - c10 - c11 - c12 - c13;
+            // 进位c乘以2^256 % p=2^224-2^192-2^96+1加回，最多三轮落在[0, 2^256)内
+            for (long c = carry(w); c != 0; c = carry(w)) {
+                w[0] += c;
+                w[3] -= c;
+                w[6] -= c;
+                w[7] += c;
+            }
+            if (compare(w, m) >= 0)
+                subInPlace(w, m);
+            return w;
+        }
+
+        /**
+         * 有符号的进位传播，返回溢出到第9个字的进位
+         */
+        private static long carry(long[] w) {
+            long c = 0;
+            for (int i = 0; i < N; i++) {
+                long s = w[i] + c;
+                w[i] = s & MASK;
+                c = s >> 32;
+            }
+            return c;
+        }
+
+        /**
+         * p-2=ffffffff 00000001 0^96 ffffffff ffffffff fffffffd，xk表示x^(2^k-1)
+         */
+        @Override
+        long[] inv(ECCurve.Ops ops, long[] x) {
+            long[] x2 = ops.mul(ops.sqr(x), x);
+            long[] x3 = ops.mul(ops.sqr(x2), x);
+            long[] x6 = ops.mul(ops.sqr(x3, 3), x3);
+            long[] x12 = ops.mul(ops.sqr(x6, 6), x6);
+            long[] x15 = ops.mul(ops.sqr(x12, 3), x3);
+            long[] x30 = ops.mul(ops.sqr(x15, 15), x15);
+            long[] x32 = ops.mul(ops.sqr(x30, 2), x2);
+            // ffffffff 00000001
+            long[] r = ops.mul(ops.sqr(x32, 32), x);
+            // 0^96 ffffffff
+            r = ops.mul(ops.sqr(r, 128), x32);
+            // ffffffff
+            r = ops.mul(ops.sqr(r, 32), x32);
+            // fffffffd=1^30 01
+            r = ops.mul(ops.sqr(r, 30), x30);
+            return ops.mul(ops.sqr(r, 2), x);
+        }
+    }
+
+    /**
+     * secp256k1，p=2^256-2^32-977
+     */
+    private static final class K256Field extends Field {
+        /**
+         * 2^256 % p=2^32+977
+         */
+        private static final long FOLD = 977;
+
+        K256Field() {
+            super("fffffffffffffffffffffffffffffffffffffffffffffffffffffffefffffc2f");
+        }
+
+        /**
+         * t=L+H*2^256≡L+H*977+H*2^32，溢出的部分再折一次
+         */
+        @Override
+        long[] reduce(long[] t) {
+            long[] w = new long[N];
+            long c = 0;
+            for (int i = 0; i < N; i++) {
+                long s = t[i] + t[i + N] * FOLD + (i > 0 ? t[i + N - 1] : 0) + c;
+                w[i] = s & MASK;
+                c = s >>> 32;
+            }
+            c += t[2 * N - 1];
+            while (c != 0) {
+                long s = w[0] + c * FOLD;
+                w[0] = s & MASK;
+                s = w[1] + c + (s >>> 32);
+                w[1] = s & MASK;
+                c = s >>> 32;
+                for (int i = 2; i < N && c != 0; i++) {
+                    s = w[i] + c;
+                    w[i] = s & MASK;
+                    c = s >>> 32;
+                }
+            }
+            if (compare(w, m) >= 0)
+                subInPlace(w, m);
+            return w;
+        }
+
+        /**
+         * p-2=1^223 0 1^22 0000 1 0 11 0 1，xk表示x^(2^k-1)
+         */
+        @Override
+        long[] inv(ECCurve.Ops ops, long[] x) {
+            long[] x2 = ops.mul(ops.sqr(x), x);
+            long[] x3 = ops.mul(ops.sqr(x2), x);
+            long[] x6 = ops.mul(ops.sqr(x3, 3), x3);
+            long[] x9 = ops.mul(ops.sqr(x6, 3), x3);
+            long[] x11 = ops.mul(ops.sqr(x9, 2), x2);
+            long[] x22 = ops.mul(ops.sqr(x11, 11), x11);
+            long[] x44 = ops.mul(ops.sqr(x22, 22), x22);
+            long[] x88 = ops.mul(ops.sqr(x44, 44), x44);
+            long[] x176 = ops.mul(ops.sqr(x88, 88), x88);
+            long[] x220 = ops.mul(ops.sqr(x176, 44), x44);
+            long[] x223 = ops.mul(ops.sqr(x220, 3), x3);
+            // 0 1^22
+            long[] r = ops.mul(ops.sqr(x223, 23), x22);
+            // 00001
+            r = ops.mul(ops.sqr(r, 5), x);
+            // 011
+            r = ops.mul(ops.sqr(r, 3), x2);
+            // 01
+            return ops.mul(ops.sqr(r, 2), x);
+        }
+    }
+
+    /**
+     * 宽度为w的NAF，每个非零位是绝对值小于2^(w-1)的奇数，任意w个连续位中最多一个非零
+     *
+     * @return d[i]为第i位的系数
+     */
+    static int[] wnaf(BigInteger k, int w) {
+        int len = k.bitLength();
+        int[] digits = new int[len + 1];
+        int pow2 = 1 << w, sign = pow2 >>> 1;
+        boolean carry = false;
+        int pos = 0;
+        while (pos <= len) {
+            // 加上进位后这一位为0
+            if (k.testBit(pos) == carry) {
+                pos++;
+                continue;
+            }
+            int digit = 0;
+            for (int j = 0; j < w; j++)
+                if (k.testBit(pos + j))
+                    digit |= 1 << j;
+            if (carry)
+                digit++;
+            carry = (digit & sign) != 0;
+            if (carry)
+                digit -= pow2;
+            digits[pos] = digit;
+            pos += w;
+        }
+        return digits;
+    }
+
+    private static boolean isZero(long[] x) {
+        for (long v : x)
+            if (v != 0)
+                return false;
+        return true;
+    }
+
+    private static int compare(long[] x, long[] y) {
+        for (int i = N - 1; i >= 0; i--)
+            if (x[i] != y[i])
+                return Long.compareUnsigned(x[i], y[i]);
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    /**
+     * 已知答案测试，并与仿射坐标的朴素实现和JDK的SHA256withECDSA对照
+     */
+    public static void main(String[] args) throws Exception {
+        for (ECCurve c : new ECCurve[]{P256, SECP256K1}) {
+            check(c.isOnCurve(c.g), c + " G on curve");
+            check(c.multiplyG(c.n) == null, c + " nG = O");
+            check(Arrays.equals(c.multiplyG(BigInteger.ONE), c.g), c + " 1G = G");
+            SecureRandom random = new SecureRandom();
+            for (int i = 0; i < 50; i++) {
+                BigInteger k = c.randomScalar(random);
+                BigInteger[] expected = naiveMultiply(c, c.g, k);
+                check(Arrays.equals(c.multiplyG(k), expected), c + " comb " + k);
+                check(Arrays.equals(c.multiply(c.g, k), expected), c + " wNAF " + k);
+                BigInteger u = c.randomScalar(random);
+                BigInteger[] q = c.multiplyG(u);
+                BigInteger v = c.randomScalar(random);
+                check(Arrays.equals(c.multiplyAdd(k, q, v), c.multiplyG(k.add(u.multiply(v)))),
+                        c + " u1*G+u2*Q");
+            }
+            // Q+(-Q)=O，Q+Q=2Q
+            BigInteger[] q = c.multiplyG(BigInteger.TEN);
+            check(c.multiplyAdd(c.n.subtract(BigInteger.TEN), c.g, BigInteger.ZERO) != null
+                    && c.multiplyAdd(BigInteger.TEN, q, c.n.subtract(BigInteger.ONE)) == null, c + " P-P");
+            check(Arrays.equals(c.multiplyAdd(BigInteger.TEN, q, BigInteger.ONE), c.multiplyG(BigInteger.valueOf(20))),
+                    c + " P+P");
+        }
+        // secp256k1: 2G, 3G
+        check(Arrays.equals(SECP256K1.multiplyG(BigInteger.TWO), point(
+                "c6047f9441ed7d6d3045406e95c07cd85c778e4b8cef3ca7abac09b95c709ee5",
+                "1ae168fea63dc339a3c58419466ceaeef7f632653266d0e1236431a950cfe52a")), "secp256k1 2G");
+        check(Arrays.equals(SECP256K1.multiplyG(BigInteger.valueOf(3)), point(
+                "f9308a019258c31049344f85f89d5229b531c845836f99b08601f113bce036f9",
+                "388f7b0f632de8140fe337e62a37f3566500a99934c2231b6cb9fd7584b8e672")), "secp256k1 3G");
+        ECDSA.main(args);
+        ECSchnorr.main(args);
+        System.out.println("pass");
+    }
+
+    static void check(boolean ok, String what) {
+        if (!ok)
+            throw new AssertionError(what);
+    }
+
+    static BigInteger[] point(String x, String y) {
+        return new BigInteger[]{new BigInteger(x, 16), new BigInteger(y, 16)};
+    }
+
+    /**
+     * 仿射坐标的二进制标量乘，只用于对照
+     */
+    private static BigInteger[] naiveMultiply(ECCurve c, BigInteger[] point, BigInteger k) {
+        BigInteger[] r = null;
+        for (int i = k.bitLength() - 1; i >= 0; i--) {
+            r = naiveAdd(c, r, r);
+            if (k.testBit(i))
+                r = naiveAdd(c, r, point);
+        }
+        return r;
+    }
+
+    private static BigInteger[] naiveAdd(ECCurve c, BigInteger[] p1, BigInteger[] p2) {
+        if (p1 == null)
+            return p2;
+        if (p2 == null)
+            return p1;
+        BigInteger p = c.p;
+        BigInteger lambda;
+        if (p1[0].equals(p2[0])) {
+            if (!p1[1].equals(p2[1]) || p1[1].signum() == 0)
+                return null;
+            lambda = p1[0].pow(2).multiply(BigInteger.valueOf(3)).add(c.a)
+                    .multiply(p1[1].shiftLeft(1).modInverse(p)).mod(p);
+        } else {
+            lambda = p2[1].subtract(p1[1]).multiply(p2[0].subtract(p1[0]).modInverse(p)).mod(p);
+        }
+        BigInteger x = lambda.pow(2).subtract(p1[0]).subtract(p2[0]).mod(p);
+        BigInteger y = lambda.multiply(p1[0].subtract(x)).subtract(p1[1]).mod(p);
+        return new BigInteger[]{x, y};
+    }
+}
@@ -0,0 +1,230 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.AlgorithmParameters;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPublicKeySpec;
+import java.util.Arrays;
+
+/**
+ * 椭圆曲线上的DSA（ECDSA），流程与{@link DSA}相同，hash为SHA-256
+ * <p>
+ * 密钥为BigInteger[]{d, Qx, Qy}，Q=dG；签名为r, s。
+ */
+public class ECDSA {
+    /**
+     * 生成密钥
+     *
+     * @param curve 曲线名，见{@link ECCurve#of}
+     * @return 私钥d，公钥Qx, Qy
+     */
+    public static BigInteger[] generateKey(String curve) {
+        ECCurve c = ECCurve.of(curve);
+        BigInteger d = c.randomScalar(NonceSource.random());
+        BigInteger[] q = c.multiplyG(d);
+        return new BigInteger[]{d, q[0], q[1]};
+    }
+
+    /**
+     * 产生签名用的随机数，与消息无关，可以预先计算
+     *
+     * @return k, r=(kG).x % n, k^(-1) % n
+     */
+    public static NoncePool.Nonce nonce(ECCurve c) {
+        long t = Metrics.start();
+        SecureRandom random = NonceSource.random();
+        while (true) {
+            BigInteger k = c.randomScalar(random);
+            BigInteger r = c.multiplyG(k)[0].mod(c.n);
+            if (r.signum() != 0) {
+                NoncePool.Nonce nonce = new NoncePool.Nonce(k, r, k.modInverse(c.n));
+                Metrics.stop(Metrics.Stage.NONCE, t);
+                return nonce;
+            }
+        }
+    }
+
+    /**
+     * 签名
+     *
+     * @param m 消息
+     * @param c 曲线
+     * @param d 私钥d
+     * @return 签名r, s
+     */
+    public static BigInteger[] sign(BigInteger m, ECCurve c, BigInteger d) {
+        try {
+            return sign(Message.of(m), c, d);
+        } catch (IOException e) {
+            // 内存中的消息不会抛出IOException
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 签名，消息按块读取
+     *
+     * @param m 消息
+     * @param c 曲线
+     * @param d 私钥d
+     * @return 签名r, s
+     */
+    public static BigInteger[] sign(Message m, ECCurve c, BigInteger d) throws IOException {
+        while (true) {
+            BigInteger[] signature = sign(m, c, d, nonce(c));
+            if (signature != null)
+                return signature;
+        }
+    }
+
+    /**
+     * 使用预计算的随机数签名
+     *
+     * @param pool 由{@link #nonce}产生随机数的池，曲线与私钥d一致
+     */
+    public static BigInteger[] sign(Message m, ECCurve c, BigInteger d, NoncePool pool) throws IOException {
+        while (true) {
+            BigInteger[] signature = sign(m, c, d, pool.take());
+            if (signature != null)
+                return signature;
+        }
+    }
+
+    /**
+     * 签名，随机数已经产生
+     *
+     * @return 签名r, s，s=0时为null，需要换一个随机数
+     */
+    static BigInteger[] sign(Message m, ECCurve c, BigInteger d, NoncePool.Nonce nonce) throws IOException {
+        BigInteger e = hash(m, c);
+        BigInteger r = nonce.commitment;
+        // s=k^(-1) * (e+dr) % n
+        BigInteger s = nonce.kInv.multiply(e.add(d.multiply(r))).mod(c.n);
+        return s.signum() == 0 ? null : new BigInteger[]{r, s};
+    }
+
+    /**
+     * 验证签名
+     *
+     * @param m 消息
+     * @param s 签名r, s
+     * @param c 曲线
+     * @param q 公钥Qx, Qy
+     * @return 签名是否合法
+     */
+    public static boolean verify(BigInteger m, BigInteger[] s, ECCurve c, BigInteger[] q) {
+        try {
+            return verify(Message.of(m), s, c, q);
+        } catch (IOException e) {
+            // 内存中的消息不会抛出IOException
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 验证签名，消息按块读取
+     *
+     * @param m 消息
+     * @param s 签名r, s
+     * @param c 曲线
+     * @param q 公钥Qx, Qy
+     * @return 签名是否合法
+     */
+    public static boolean verify(Message m, BigInteger[] s, ECCurve c, BigInteger[] q) throws IOException {
+        // 0<r, s<n，Q在曲线上
+        if (!DSA.inRange(s, c.n) || !c.isOnCurve(q))
+            return false;
+        BigInteger r = s[0];
+        BigInteger e = hash(m, c);
+        BigInteger w = s[1].modInverse(c.n);
+        // u1=e*w % n, u2=r*w % n
+        BigInteger u1 = e.multiply(w).mod(c.n);
+        BigInteger u2 = r.multiply(w).mod(c.n);
+        // (x, y)=u1*G+u2*Q
+        long t = Metrics.start();
+        BigInteger[] point = c.multiplyAdd(u1, q, u2);
+        Metrics.stop(Metrics.Stage.MODPOW, t);
+        t = Metrics.start();
+        boolean valid = point != null && point[0].mod(c.n).equals(r);
+        Metrics.stop(Metrics.Stage.COMPARE, t);
+        return valid;
+    }
+
+    /**
+     * SHA-256摘要，长于n时取左边的n.bitLength()位
+     */
+    private static BigInteger hash(Message m, ECCurve c) throws IOException {
+        long t = Metrics.start();
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        m.update(messageDigest);
+        byte[] h = messageDigest.digest();
+        BigInteger e = new BigInteger(1, h);
+        if (8 * h.length > c.n.bitLength())
+            e = e.shiftRight(8 * h.length - c.n.bitLength());
+        Metrics.stop(Metrics.Stage.HASH, t);
+        return e;
+    }
+
+    /**
+     * RFC 6979 A.2.5的P-256/SHA-256向量，并与JDK的SHA256withECDSA互相验证
+     */
+    public static void main(String[] args) throws Exception {
+        ECCurve c = ECCurve.P256;
+        BigInteger d = new BigInteger("c9afa9d845ba75166b5c215767b1d6934e50c3db36e89b127b8a622b120f6721", 16);
+        BigInteger[] q = ECCurve.point("60fed4ba255a9d31c961eb74c6356d68c049b8923b61fa6ce669622e60f29fb6",
+                "7903fe1008b8bc99a41ae9e95628bc64f2f1b20c2d7e9f5177a3c294d4462299");
+        ECCurve.check(Arrays.equals(c.multiplyG(d), q), "RFC 6979 public key");
+        Message sample = Message.of("sample".getBytes(StandardCharsets.US_ASCII));
+        BigInteger k = new BigInteger("a6e3c57dd01abe90086538398355dd4c3b17aa873382b0f24d6129493d8aad60", 16);
+        BigInteger[] s = sign(sample, c, d, new NoncePool.Nonce(k, c.multiplyG(k)[0].mod(c.n), k.modInverse(c.n)));
+        ECCurve.check(s[0].equals(new BigInteger("efd48b2aacb6a8fd1140dd9cd45e81d69d2c877b56aaf991c34d0ea84eaf3716", 16))
+                && s[1].equals(new BigInteger("f7cb1c942d657c41d436c7a1b6e29f65f3e900dbb9aff4064dc4ab2f843acda8", 16)),
+                "RFC 6979 signature");
+        ECCurve.check(verify(sample, s, c, q), "RFC 6979 verify");
+        ECCurve.check(!verify(sample, new BigInteger[]{s[0], s[1].add(BigInteger.ONE)}, c, q), "tampered verify");
+
+        // JDK签名，本实现验证；本实现签名，JDK验证
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair pair = generator.generateKeyPair();
+        ECPoint w = ((ECPublicKey) pair.getPublic()).getW();
+        byte[] message = "interop".getBytes(StandardCharsets.US_ASCII);
+        Signature jdk = Signature.getInstance("SHA256withECDSA");
+        jdk.initSign(pair.getPrivate());
+        jdk.update(message);
+        BigInteger[] fromJdk = Encoding.fromDer(jdk.sign());
+        ECCurve.check(verify(Message.of(message), fromJdk, c, new BigInteger[]{w.getAffineX(), w.getAffineY()}),
+                "verify JDK signature");
+
+        BigInteger[] key = generateKey("P-256");
+        BigInteger[] ours = sign(Message.of(message), c, key[0]);
+        AlgorithmParameters parameters = AlgorithmParameters.getInstance("EC");
+        parameters.init(new ECGenParameterSpec("secp256r1"));
+        ECPublicKeySpec spec = new ECPublicKeySpec(new ECPoint(key[1], key[2]),
+                parameters.getParameterSpec(ECParameterSpec.class));
+        jdk.initVerify(KeyFactory.getInstance("EC").generatePublic(spec));
+        jdk.update(message);
+        ECCurve.check(jdk.verify(Encoding.der(ours)), "JDK verifies our signature");
+
+        BigInteger[] k1 = generateKey("secp256k1");
+        BigInteger[] s1 = sign(Message.of(message), ECCurve.SECP256K1, k1[0]);
+        ECCurve.check(verify(Message.of(message), s1, ECCurve.SECP256K1, new BigInteger[]{k1[1], k1[2]}),
+                "secp256k1 round trip");
+    }
+}
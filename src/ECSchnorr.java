@@ -0,0 +1,172 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 椭圆曲线上的Schnorr数字签名方案，流程与{@link Schnorr}相同，hash为SHA-256
+ * <p>
+ * 私钥s，公钥V=-sG；签名时X=rG，e=H(m||X)，y=r+se % n；验证时X'=yG+eV，e=H(m||X')则合法。
+ * X按{@link ECCurve#encode}压缩编码后接在消息之后。密钥为BigInteger[]{s, Vx, Vy}，签名为e, y。
+ */
+public class ECSchnorr {
+    /**
+     * 生成密钥
+     *
+     * @param curve 曲线名，见{@link ECCurve#of}
+     * @return 私钥s，公钥Vx, Vy
+     */
+    public static BigInteger[] generateKey(String curve) {
+        ECCurve c = ECCurve.of(curve);
+        BigInteger s = c.randomScalar(NonceSource.random());
+        // V=-sG=(n-s)G
+        BigInteger[] v = c.multiplyG(c.n.subtract(s));
+        return new BigInteger[]{s, v[0], v[1]};
+    }
+
+    /**
+     * 产生签名用的随机数，与消息无关，可以预先计算
+     *
+     * @return r, X=rG的压缩编码
+     */
+    public static NoncePool.Nonce nonce(ECCurve c) {
+        long t = Metrics.start();
+        BigInteger r = c.randomScalar(NonceSource.random());
+        BigInteger x = new BigInteger(1, c.encode(c.multiplyG(r)));
+        Metrics.stop(Metrics.Stage.NONCE, t);
+        return new NoncePool.Nonce(r, x, null);
+    }
+
+    /**
+     * 签名
+     *
+     * @param m 消息
+     * @param c 曲线
+     * @param s 私钥s
+     * @return 签名e, y
+     */
+    public static BigInteger[] sign(BigInteger m, ECCurve c, BigInteger s) {
+        try {
+            return sign(Message.of(m), c, s);
+        } catch (IOException e) {
+            // 内存中的消息不会抛出IOException
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 签名，消息按块读取
+     *
+     * @param m 消息
+     * @param c 曲线
+     * @param s 私钥s
+     * @return 签名e, y
+     */
+    public static BigInteger[] sign(Message m, ECCurve c, BigInteger s) throws IOException {
+        return sign(m, c, s, nonce(c));
+    }
+
+    /**
+     * 使用预计算的随机数签名
+     *
+     * @param pool 由{@link #nonce}产生随机数的池，曲线与私钥s一致
+     */
+    public static BigInteger[] sign(Message m, ECCurve c, BigInteger s, NoncePool pool) throws IOException {
+        return sign(m, c, s, pool.take());
+    }
+
+    /**
+     * 签名，随机数已经产生
+     */
+    private static BigInteger[] sign(Message m, ECCurve c, BigInteger s, NoncePool.Nonce nonce) throws IOException {
+        // e=H(m||X)
+        BigInteger e = hash(m, Encoding.toBytes(nonce.commitment, 1 + c.fieldLength()));
+        // y=r+se % n
+        BigInteger y = nonce.k.add(s.multiply(e)).mod(c.n);
+        return new BigInteger[]{e, y};
+    }
+
+    /**
+     * 验证签名
+     *
+     * @param m         消息
+     * @param signature 签名e, y
+     * @param c         曲线
+     * @param v         公钥Vx, Vy
+     * @return 签名是否合法
+     */
+    public static boolean verify(BigInteger m, BigInteger[] signature, ECCurve c, BigInteger[] v) {
+        try {
+            return verify(Message.of(m), signature, c, v);
+        } catch (IOException e) {
+            // 内存中的消息不会抛出IOException
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 验证签名，消息按块读取
+     *
+     * @param m         消息
+     * @param signature 签名e, y
+     * @param c         曲线
+     * @param v         公钥Vx, Vy
+     * @return 签名是否合法
+     */
+    public static boolean verify(Message m, BigInteger[] signature, ECCurve c, BigInteger[] v) throws IOException {
+        if (signature == null || signature.length != 2 || signature[0] == null || signature[1] == null)
+            return false;
+        BigInteger e = signature[0], y = signature[1];
+        if (e.signum() < 0 || e.bitLength() > 256 || y.signum() < 0 || y.compareTo(c.n) >= 0 || !c.isOnCurve(v))
+            return false;
+        // X'=yG+eV
+        long t = Metrics.start();
+        BigInteger[] x = c.multiplyAdd(y, v, e);
+        Metrics.stop(Metrics.Stage.MODPOW, t);
+        if (x == null)
+            return false;
+        BigInteger h = hash(m, c.encode(x));
+        t = Metrics.start();
+        boolean valid = h.equals(e);
+        Metrics.stop(Metrics.Stage.COMPARE, t);
+        return valid;
+    }
+
+    /**
+     * 计算H(m||x)
+     */
+    private static BigInteger hash(Message m, byte[] x) throws IOException {
+        long t = Metrics.start();
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        m.update(messageDigest);
+        messageDigest.update(x);
+        BigInteger h = new BigInteger(1, messageDigest.digest());
+        Metrics.stop(Metrics.Stage.HASH, t);
+        return h;
+    }
+
+    /**
+     * 两条曲线上的签名、验证和篡改检测
+     */
+    public static void main(String[] args) throws IOException {
+        byte[] message = "sample".getBytes(StandardCharsets.US_ASCII);
+        for (ECCurve c : new ECCurve[]{ECCurve.P256, ECCurve.SECP256K1}) {
+            BigInteger[] key = generateKey(c.name);
+            BigInteger[] v = {key[1], key[2]};
+            ECCurve.check(c.multiplyAdd(key[0], v, BigInteger.ONE) == null, c + " V=-sG");
+            BigInteger[] signature = sign(Message.of(message), c, key[0]);
+            ECCurve.check(verify(Message.of(message), signature, c, v), c + " Schnorr verify");
+            ECCurve.check(!verify(Message.of("samplf".getBytes(StandardCharsets.US_ASCII)), signature, c, v),
+                    c + " Schnorr wrong message");
+            ECCurve.check(!verify(Message.of(message), new BigInteger[]{signature[0], signature[1].add(BigInteger.ONE)},
+                    c, v), c + " Schnorr tampered");
+        }
+    }
+}
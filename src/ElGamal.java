@@ -1,8 +1,7 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigInteger;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
-import java.util.Random;
 import java.util.Scanner;
 
 /**
@@ -18,18 +17,49 @@ public class ElGamal {
      */
     public static BigInteger[] generateKey(int qLen, int aLen) {
         BigInteger[] g = generator(qLen, aLen);
-        BigInteger q = g[0];
-        BigInteger a = g[1];
-        SecureRandom secureRandom = new SecureRandom();
-        BigInteger x = new BigInteger(q.bitLength(), secureRandom);
+        return generateKey(g[0], g[1]);
+    }
+
+    /**
+     * 使用注册的域参数产生公私钥，只选取私钥，素数q取参数中的p，a取参数中的g
+     *
+     * @param group 参数名，见{@link DomainParameters}
+     * @return q, a，私钥X，公钥Y
+     */
+    public static BigInteger[] generateKey(String group) {
+        BigInteger[] g = DomainParameters.get(group);
+        return generateKey(g[0], g[2]);
+    }
+
+    private static BigInteger[] generateKey(BigInteger q, BigInteger a) {
         // 1<X<q-1
-        while (x.compareTo(BigInteger.ONE) <= 0 || x.compareTo(q.subtract(BigInteger.ONE)) >= 0)
-            x = new BigInteger(q.bitLength(), secureRandom);
+        BigInteger x = NonceSource.uniform(BigInteger.TWO, q.subtract(BigInteger.ONE));
         // Y=a^X mod q
-        BigInteger y = a.modPow(x, q);
+        BigInteger y = FixedBase.of(a, q, q.bitLength()).pow(x);
         return new BigInteger[]{q, a, x, y};
     }
 
+    /**
+     * 产生签名用的随机数，与消息无关，可以预先计算
+     *
+     * @param q 公钥q
+     * @param a 公钥a
+     * @return K, S1=a^K mod q, K^(-1) mod (q-1)
+     */
+    public static NoncePool.Nonce nonce(BigInteger q, BigInteger a) {
+        long t = Metrics.start();
+        BigInteger q1 = q.subtract(BigInteger.ONE);
+        // 1<=K<q-1且gcd(K,q-1)=1，K=q-1时gcd不为1
+        BigInteger k = NonceSource.uniform(BigInteger.ONE, q1);
+        while (!k.gcd(q1).equals(BigInteger.ONE))
+            k = NonceSource.uniform(BigInteger.ONE, q1);
+        // S1=a^k mod q
+        BigInteger s1 = FixedBase.of(a, q, q.bitLength()).pow(k);
+        NoncePool.Nonce nonce = new NoncePool.Nonce(k, s1, k.modInverse(q.subtract(BigInteger.ONE)));
+        Metrics.stop(Metrics.Stage.NONCE, t);
+        return nonce;
+    }
+
     /**
      * 签名
      *
@@ -40,32 +70,108 @@ public class ElGamal {
      * @return 签名S1，S2
      */
     public static BigInteger[] sign(BigInteger m, BigInteger q, BigInteger a, BigInteger x) {
-        BigInteger[] s = new BigInteger[2];
         try {
-            MessageDigest messageDigest = MessageDigest.getInstance("SHA");
-            messageDigest.update(toByteArray(m));
-            BigInteger hash = new BigInteger(1, messageDigest.digest());
-            // 0<=hash<=q-1
-            if (hash.compareTo(BigInteger.ZERO) < 0 || hash.compareTo(q) >= 0)
-                throw new IllegalArgumentException();
-            SecureRandom secureRandom = new SecureRandom();
-            BigInteger k = new BigInteger(q.bitLength(), secureRandom);
-            // 1<=K<=q-1且gcd(K,q-1)=1
-            while (k.compareTo(BigInteger.ONE) < 0 || k.compareTo(q) >= 0
-                    || !k.gcd(q.subtract(BigInteger.ONE)).equals(BigInteger.ONE))
-                k = new BigInteger(q.bitLength(), secureRandom);
-            // S1=a^k mod q
-            s[0] = a.modPow(k, q);
-            BigInteger invK = k.modInverse(q.subtract(BigInteger.ONE));
-            // S2=K^(-1) * (hash-X*S1) mod(q-1)
-            s[1] = invK.multiply(hash.subtract(x.multiply(s[0]))).mod(q.subtract(BigInteger.ONE));
-            return s;
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
+            return sign(Message.of(m), q, a, x);
+        } catch (IOException e) {
+            // 内存中的消息不会抛出IOException
+            throw new UncheckedIOException(e);
         }
+    }
+
+    /**
+     * 签名，消息按块读取
+     *
+     * @param m 消息
+     * @param q 公钥q
+     * @param a 公钥a
+     * @param x 私钥X
+     * @return 签名S1，S2
+     */
+    public static BigInteger[] sign(Message m, BigInteger q, BigInteger a, BigInteger x) throws IOException {
+        if (NonceSource.DETERMINISTIC)
+            return signDeterministic(m, q, a, x);
+        return sign(m, q, x, nonce(q, a));
+    }
+
+    /**
+     * 签名，K按RFC 6979由私钥和消息摘要确定，取序列中第一个与q-1互素的值
+     *
+     * @param m 消息
+     * @param q 公钥q
+     * @param a 公钥a
+     * @param x 私钥X
+     * @return 签名S1，S2
+     */
+    public static BigInteger[] signDeterministic(Message m, BigInteger q, BigInteger a, BigInteger x)
+            throws IOException {
+        return signDeterministic(digest(m), q, a, x);
+    }
+
+    /**
+     * 确定性签名，消息摘要h=H(m)已经计算
+     */
+    static BigInteger[] signDeterministic(byte[] h, BigInteger q, BigInteger a, BigInteger x) {
+        BigInteger hash = new BigInteger(1, h);
+        // 0<=hash<=q-1
+        if (hash.compareTo(q) >= 0)
+            throw new IllegalArgumentException();
+        BigInteger q1 = q.subtract(BigInteger.ONE);
+        long t = Metrics.start();
+        NonceSource.Deterministic kGenerator = new NonceSource.Deterministic(x, q1, h);
+        BigInteger k = kGenerator.next();
+        while (!k.gcd(q1).equals(BigInteger.ONE))
+            k = kGenerator.next();
+        // S1=a^k mod q
+        BigInteger s1 = FixedBase.of(a, q, q.bitLength()).pow(k);
+        Metrics.stop(Metrics.Stage.NONCE, t);
+        // S2=K^(-1) * (hash-X*S1) mod(q-1)
+        return new BigInteger[]{s1, k.modInverse(q1).multiply(hash.subtract(x.multiply(s1))).mod(q1)};
+    }
+
+    /**
+     * 使用预计算的随机数签名
+     *
+     * @param m    消息
+     * @param q    公钥q
+     * @param x    私钥X
+     * @param pool 由{@link #nonce}产生随机数的池，公钥与私钥X一致
+     * @return 签名S1，S2
+     */
+    public static BigInteger[] sign(Message m, BigInteger q, BigInteger x, NoncePool pool) throws IOException {
+        return sign(m, q, x, pool.take());
+    }
+
+    /**
+     * 签名，随机数已经产生
+     */
+    private static BigInteger[] sign(Message m, BigInteger q, BigInteger x, NoncePool.Nonce nonce)
+            throws IOException {
+        return signDigest(new BigInteger(1, digest(m)), q, x, nonce);
+    }
+
+    /**
+     * 签名，消息摘要和随机数已经产生
+     */
+    static BigInteger[] signDigest(BigInteger hash, BigInteger q, BigInteger x, NoncePool.Nonce nonce) {
+        BigInteger[] s = new BigInteger[2];
+        // 0<=hash<=q-1
+        if (hash.compareTo(BigInteger.ZERO) < 0 || hash.compareTo(q) >= 0)
+            throw new IllegalArgumentException();
+        // S1=a^k mod q
+        s[0] = nonce.commitment;
+        BigInteger invK = nonce.kInv;
+        // S2=K^(-1) * (hash-X*S1) mod(q-1)
+        s[1] = invK.multiply(hash.subtract(x.multiply(s[0]))).mod(q.subtract(BigInteger.ONE));
         return s;
     }
 
+    /**
+     * 消息的SHA-1摘要
+     */
+    static byte[] digest(Message m) throws IOException {
+        return DSA.digest(m);
+    }
+
     /**
      * 验证签名
      *
@@ -78,19 +184,54 @@ public class ElGamal {
      */
     public static boolean verify(BigInteger m, BigInteger[] signature, BigInteger q, BigInteger a, BigInteger y) {
         try {
-            MessageDigest messageDigest = MessageDigest.getInstance("SHA");
-            messageDigest.update(toByteArray(m));
-            BigInteger hash = new BigInteger(1, messageDigest.digest());
-            // V1=a^hash mod q
-            BigInteger v1 = a.modPow(hash, q);
-            // V2=y^S1 * S1^S2 mod q
-            BigInteger v2 = y.modPow(signature[0], q).multiply(signature[0].modPow(signature[1], q)).mod(q);
-            // V1=V2则签名合法
-            return v1.equals(v2);
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
+            return verify(Message.of(m), signature, q, a, y);
+        } catch (IOException e) {
+            // 内存中的消息不会抛出IOException
+            throw new UncheckedIOException(e);
         }
-        return false;
+    }
+
+    /**
+     * 验证签名，消息按块读取
+     *
+     * @param m         消息
+     * @param signature 签名
+     * @param q         公钥q
+     * @param a         公钥a
+     * @param y         公钥Y
+     * @return 签名是否合法
+     */
+    public static boolean verify(Message m, BigInteger[] signature, BigInteger q, BigInteger a, BigInteger y)
+            throws IOException {
+        return verifyDigest(new BigInteger(1, digest(m)), signature, q, a, y);
+    }
+
+    /**
+     * 验证签名，消息摘要已经计算
+     */
+    static boolean verifyDigest(BigInteger hash, BigInteger[] signature, BigInteger q, BigInteger a, BigInteger y) {
+        if (!inRange(signature, q))
+            return false;
+        // V1=a^hash mod q
+        long t = Metrics.start();
+        BigInteger v1 = FixedBase.of(a, q, q.bitLength()).pow(hash);
+        // V2=y^S1 * S1^S2 mod q，两个底数都不固定，分别modPow比交错窗口快
+        BigInteger v2 = y.modPow(signature[0], q).multiply(signature[0].modPow(signature[1], q)).mod(q);
+        Metrics.stop(Metrics.Stage.MODPOW, t);
+        // V1=V2则签名合法
+        t = Metrics.start();
+        boolean valid = v1.equals(v2);
+        Metrics.stop(Metrics.Stage.COMPARE, t);
+        return valid;
+    }
+
+    /**
+     * 签名S1, S2的范围：0&lt;S1&lt;q，0&lt;=S2&lt;q-1，S2的位数决定模幂的时间
+     */
+    static boolean inRange(BigInteger[] signature, BigInteger q) {
+        return signature != null && signature.length == 2 && signature[0] != null && signature[1] != null
+                && signature[0].signum() > 0 && signature[0].compareTo(q) < 0
+                && signature[1].signum() >= 0 && signature[1].compareTo(q.subtract(BigInteger.ONE)) < 0;
     }
 
     /**
@@ -101,12 +242,12 @@ public class ElGamal {
      * @return 素数p，原根g
      */
     public static BigInteger[] generator(int pLen, int gLen) {
-        Random rnd = new Random();
+        SecureRandom rnd = NonceSource.random();
         BigInteger p, q, g, x, y;
-        do {
-            q = BigInteger.probablePrime(pLen, rnd);
-            p = q.multiply(BigInteger.TWO).add(BigInteger.ONE);
-        } while (!p.isProbablePrime((int) (0.7 * pLen)));
+        // p=2q+1，q为pLen位素数
+        BigInteger[] safePrime = new ParameterGenerator().safePrime(pLen);
+        q = safePrime[0];
+        p = safePrime[1];
 
         do {
             g = BigInteger.probablePrime(gLen, rnd);
@@ -116,20 +257,6 @@ public class ElGamal {
         return new BigInteger[]{p, g};
     }
 
-
-    /**
-     * BigInteger转byte[]，去掉符号位0
-     */
-    private static byte[] toByteArray(BigInteger n) {
-        byte[] b = n.toByteArray();
-        if (b[0] == 0) {
-            byte[] result = new byte[b.length - 1];
-            System.arraycopy(b, 1, result, 0, result.length);
-            return result;
-        } else
-            return b;
-    }
-
     public static void main(String[] args) {
         Scanner scanner = new Scanner(System.in);
         System.out.println("1. sign\n2. verify");
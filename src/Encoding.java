@@ -0,0 +1,361 @@
+import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 密钥和签名的二进制编码
+ * <p>
+ * 整数按固定宽度的无符号大端字节编码（即PKCS#1的I2OSP），宽度由域参数决定：同一组参数下的签名、公钥长度都相同，
+ * 可以不加分隔地连续存放。各方案签名分量的宽度：
+ * <pre>
+ * dsa      r, s     |q|, |q|
+ * schnorr  e, y     20, |q|      e为SHA-1的输出
+ * elgamal  S1, S2   |q|, |q|     q为ElGamal的素数模数
+ * rsa      s        |n|
+ * </pre>
+ * 其中|x|为x的字节长度。密钥数组与各方案generateKey返回的顺序相同，RSA为n, e, d, p, q。
+ * 密钥编码为：方案(1字节)、分量存在的位图(1字节)、每个存在分量的宽度(2字节)，之后是各分量。
+ * 私钥分量为null时只编码公钥部分。
+ * <p>
+ * 另外提供DER编码的INTEGER序列，DSA签名的DER编码即Dss-Sig-Value，可以与其他实现互通。
+ * <p>
+ * 写入时每个整数只调用一次{@link BigInteger#toByteArray}，直接复制到缓冲区，不再去掉符号位另外复制；
+ * 从堆缓冲区读出时直接由底层数组构造BigInteger。
+ */
+public class Encoding {
+    private static final String[] SCHEMES = {"dsa", "schnorr", "elgamal", "rsa"};
+    /**
+     * 各方案密钥分量的宽度取自哪个分量
+     */
+    private static final int[][] KEY_WIDTHS = {
+            // p, q, g, x, y
+            {0, 1, 0, 1, 0},
+            // α, p, q, s, v
+            {1, 1, 2, 2, 1},
+            // q, α, X, Y
+            {0, 0, 0, 0},
+            // n, e, d, p, q，p和q取两者中较长的
+            {0, 1, 0, 3, 3},
+    };
+    /**
+     * 各方案签名分量的宽度取自哪个密钥分量，-1为SHA-1输出长度
+     */
+    private static final int[][] SIGNATURE_WIDTHS = {{1, 1}, {-1, 2}, {0, 0}, {0}};
+    /**
+     * 各方案私钥分量的位图：DSA的x、Schnorr的s、ElGamal的X、RSA的d, p, q
+     */
+    private static final int[] PRIVATE = {1 << 3, 1 << 3, 1 << 2, 1 << 2 | 1 << 3 | 1 << 4};
+    private static final int H_LEN = 20;
+
+    private static final byte SEQUENCE = 0x30;
+    private static final byte INTEGER = 0x02;
+
+    private Encoding() {
+    }
+
+    /**
+     * @return 非负整数v的字节长度，0的长度为0
+     */
+    public static int length(BigInteger v) {
+        return (v.bitLength() + 7) >>> 3;
+    }
+
+    /**
+     * 按len字节的无符号大端形式写入
+     *
+     * @throws IllegalArgumentException v为负数或超过len字节
+     */
+    public static void put(ByteBuffer buffer, BigInteger v, int len) {
+        if (v.signum() < 0 || length(v) > len)
+            throw new IllegalArgumentException("value does not fit in " + len + " bytes");
+        if (buffer.remaining() < len)
+            throw new BufferOverflowException();
+        if (v.bitLength() < Long.SIZE) {
+            // 不超过63位时不需要toByteArray
+            long l = v.longValue();
+            for (int i = len - 1; i >= 0; i--)
+                buffer.put(i >= Long.BYTES ? 0 : (byte) (l >>> (8 * i)));
+            return;
+        }
+        byte[] b = v.toByteArray();
+        // toByteArray可能多一个符号位0
+        int off = b.length - length(v);
+        for (int i = length(v); i < len; i++)
+            buffer.put((byte) 0);
+        buffer.put(b, off, b.length - off);
+    }
+
+    /**
+     * 读出len字节的无符号大端整数
+     */
+    public static BigInteger get(ByteBuffer buffer, int len) {
+        if (buffer.remaining() < len)
+            throw new BufferUnderflowException();
+        BigInteger v;
+        if (buffer.hasArray()) {
+            v = new BigInteger(1, buffer.array(), buffer.arrayOffset() + buffer.position(), len);
+            buffer.position(buffer.position() + len);
+        } else {
+            byte[] b = new byte[len];
+            buffer.get(b);
+            v = new BigInteger(1, b);
+        }
+        return v;
+    }
+
+    /**
+     * len字节的无符号大端形式
+     */
+    public static byte[] toBytes(BigInteger v, int len) {
+        byte[] b = new byte[len];
+        put(ByteBuffer.wrap(b), v, len);
+        return b;
+    }
+
+    /**
+     * 去掉前导0的无符号大端形式
+     */
+    public static byte[] toBytes(BigInteger v) {
+        return toBytes(v, length(v));
+    }
+
+    /**
+     * @param scheme dsa、schnorr、elgamal或rsa
+     * @param key    密钥，至少包含公钥部分
+     * @return 签名的字节长度
+     */
+    public static int signatureLength(String scheme, BigInteger[] key) {
+        int length = 0;
+        for (int w : SIGNATURE_WIDTHS[scheme(scheme)])
+            length += width(scheme(scheme), key, w);
+        return length;
+    }
+
+    /**
+     * 写入定长签名
+     */
+    public static void putSignature(ByteBuffer buffer, String scheme, BigInteger[] key, BigInteger[] signature) {
+        int id = scheme(scheme);
+        int[] widths = SIGNATURE_WIDTHS[id];
+        if (signature.length != widths.length)
+            throw new IllegalArgumentException("signature has " + signature.length + " values");
+        for (int i = 0; i < widths.length; i++)
+            put(buffer, signature[i], width(id, key, widths[i]));
+    }
+
+    /**
+     * 读出定长签名
+     */
+    public static BigInteger[] getSignature(ByteBuffer buffer, String scheme, BigInteger[] key) {
+        int id = scheme(scheme);
+        int[] widths = SIGNATURE_WIDTHS[id];
+        BigInteger[] signature = new BigInteger[widths.length];
+        for (int i = 0; i < widths.length; i++)
+            signature[i] = get(buffer, width(id, key, widths[i]));
+        return signature;
+    }
+
+    /**
+     * @return 密钥编码的字节长度
+     */
+    public static int keyLength(String scheme, BigInteger[] key) {
+        int id = scheme(scheme);
+        int length = 2;
+        for (int i = 0; i < key.length; i++)
+            if (key[i] != null)
+                length += 2 + width(id, key, KEY_WIDTHS[id][i]);
+        return length;
+    }
+
+    /**
+     * 写入密钥，null分量不写入
+     */
+    public static void putKey(ByteBuffer buffer, String scheme, BigInteger[] key) {
+        int id = scheme(scheme);
+        if (key.length != KEY_WIDTHS[id].length)
+            throw new IllegalArgumentException("key has " + key.length + " values");
+        int mask = 0;
+        for (int i = 0; i < key.length; i++)
+            if (key[i] != null)
+                mask |= 1 << i;
+        buffer.put((byte) id);
+        buffer.put((byte) mask);
+        for (int i = 0; i < key.length; i++)
+            if (key[i] != null)
+                buffer.putShort((short) width(id, key, KEY_WIDTHS[id][i]));
+        for (int i = 0; i < key.length; i++)
+            if (key[i] != null)
+                put(buffer, key[i], width(id, key, KEY_WIDTHS[id][i]));
+    }
+
+    /**
+     * @return 去掉私钥分量的密钥副本
+     */
+    public static BigInteger[] publicKey(String scheme, BigInteger[] key) {
+        int id = scheme(scheme);
+        BigInteger[] pub = key.clone();
+        for (int i = 0; i < pub.length; i++)
+            if ((PRIVATE[id] & 1 << i) != 0)
+                pub[i] = null;
+        return pub;
+    }
+
+    /**
+     * 读出密钥，未编码的分量为null
+     *
+     * @throws IllegalArgumentException 编码的方案不是scheme
+     */
+    public static BigInteger[] getKey(ByteBuffer buffer, String scheme) {
+        int id = scheme(scheme);
+        if (buffer.get() != id)
+            throw new IllegalArgumentException("not a " + scheme + " key");
+        int mask = buffer.get() & 0xff;
+        BigInteger[] key = new BigInteger[KEY_WIDTHS[id].length];
+        int[] widths = new int[key.length];
+        for (int i = 0; i < key.length; i++)
+            if ((mask & 1 << i) != 0)
+                widths[i] = buffer.getShort() & 0xffff;
+        for (int i = 0; i < key.length; i++)
+            if ((mask & 1 << i) != 0)
+                key[i] = get(buffer, widths[i]);
+        return key;
+    }
+
+    /**
+     * 密钥分量的宽度，见KEY_WIDTHS
+     */
+    private static int width(int id, BigInteger[] key, int from) {
+        if (from == -1)
+            return H_LEN;
+        if (id == 3 && from == 3)
+            return Math.max(key[3] == null ? 0 : length(key[3]), key[4] == null ? 0 : length(key[4]));
+        return length(key[from]);
+    }
+
+    private static int scheme(String scheme) {
+        int id = Arrays.asList(SCHEMES).indexOf(scheme);
+        if (id < 0)
+            throw new IllegalArgumentException("unknown scheme: " + scheme);
+        return id;
+    }
+
+    /**
+     * @return DER编码的INTEGER序列的字节长度
+     */
+    public static int derLength(BigInteger... values) {
+        int content = derContentLength(values);
+        return 1 + lengthOfLength(content) + content;
+    }
+
+    private static int derContentLength(BigInteger... values) {
+        int content = 0;
+        for (BigInteger v : values) {
+            // toByteArray的长度
+            int n = v.bitLength() / 8 + 1;
+            content += 1 + lengthOfLength(n) + n;
+        }
+        return content;
+    }
+
+    /**
+     * 写入DER编码的SEQUENCE { INTEGER ... }
+     */
+    public static void putDer(ByteBuffer buffer, BigInteger... values) {
+        buffer.put(SEQUENCE);
+        putLength(buffer, derContentLength(values));
+        for (BigInteger v : values) {
+            // DER的INTEGER即二进制补码的最短形式，与toByteArray相同
+            byte[] b = v.toByteArray();
+            buffer.put(INTEGER);
+            putLength(buffer, b.length);
+            buffer.put(b);
+        }
+    }
+
+    /**
+     * DER编码的SEQUENCE { INTEGER ... }
+     */
+    public static byte[] der(BigInteger... values) {
+        byte[] b = new byte[derLength(values)];
+        putDer(ByteBuffer.wrap(b), values);
+        return b;
+    }
+
+    /**
+     * 读出DER编码的SEQUENCE { INTEGER ... }，只接受定长、最短的编码
+     *
+     * @throws IllegalArgumentException 不是合法的DER编码
+     */
+    public static BigInteger[] getDer(ByteBuffer buffer) {
+        try {
+            if (buffer.get() != SEQUENCE)
+                throw new IllegalArgumentException("not a DER SEQUENCE");
+            int end = getLength(buffer);
+            end += buffer.position();
+            if (end > buffer.limit())
+                throw new IllegalArgumentException("truncated DER");
+            List<BigInteger> values = new ArrayList<>();
+            while (buffer.position() < end) {
+                if (buffer.get() != INTEGER)
+                    throw new IllegalArgumentException("not a DER INTEGER");
+                int n = getLength(buffer);
+                if (n == 0 || buffer.position() + n > end)
+                    throw new IllegalArgumentException("bad DER INTEGER length");
+                byte[] b = new byte[n];
+                buffer.get(b);
+                // 最短形式：前9位不能全0或全1
+                if (n > 1 && (b[0] == 0 && b[1] >= 0 || b[0] == -1 && b[1] < 0))
+                    throw new IllegalArgumentException("non-minimal DER INTEGER");
+                values.add(new BigInteger(b));
+            }
+            return values.toArray(new BigInteger[0]);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("truncated DER", e);
+        }
+    }
+
+    /**
+     * 读出DER编码的SEQUENCE { INTEGER ... }，整个数组必须恰好是一个SEQUENCE
+     */
+    public static BigInteger[] fromDer(byte[] der) {
+        ByteBuffer buffer = ByteBuffer.wrap(der);
+        BigInteger[] values = getDer(buffer);
+        if (buffer.hasRemaining())
+            throw new IllegalArgumentException("trailing bytes after DER");
+        return values;
+    }
+
+    private static int lengthOfLength(int n) {
+        return n < 0x80 ? 1 : 1 + (32 - Integer.numberOfLeadingZeros(n) + 7) / 8;
+    }
+
+    private static void putLength(ByteBuffer buffer, int n) {
+        if (n < 0x80) {
+            buffer.put((byte) n);
+            return;
+        }
+        int bytes = lengthOfLength(n) - 1;
+        buffer.put((byte) (0x80 | bytes));
+        for (int i = bytes - 1; i >= 0; i--)
+            buffer.put((byte) (n >>> (8 * i)));
+    }
+
+    private static int getLength(ByteBuffer buffer) {
+        int first = buffer.get() & 0xff;
+        if (first < 0x80)
+            return first;
+        int bytes = first & 0x7f;
+        if (bytes == 0 || bytes > 3)
+            throw new IllegalArgumentException("bad DER length");
+        int n = 0;
+        for (int i = 0; i < bytes; i++)
+            n = n << 8 | buffer.get() & 0xff;
+        if (n < 0x80 || n >>> (8 * (bytes - 1)) == 0)
+            throw new IllegalArgumentException("non-minimal DER length");
+        return n;
+    }
+}
@@ -0,0 +1,157 @@
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 固定底数模幂预计算表（固定窗口法）
+ * <p>
+ * 把指数按window位分成d段，第i段预先计算g^(j * 2^(window*i)) % p，j=0..2^window-1，
+ * 这样g^k % p只需要d次模乘，不需要平方，模乘使用{@link Barrett}约减。
+ * window越大，模乘次数越少，表越大：表中共有d * 2^window个模p的数。
+ */
+public class FixedBase {
+    /**
+     * 默认窗口位数，可以用系统属性fixedbase.window修改
+     */
+    public static final int DEFAULT_WINDOW = Integer.getInteger("fixedbase.window", 6);
+    /**
+     * 最多缓存的预计算表个数
+     */
+    private static final int MAX_TABLES = Integer.getInteger("fixedbase.tables", 8);
+    /**
+     * 按(g, p)缓存的预计算表
+     */
+    private static final ConcurrentHashMap<List<BigInteger>, FixedBase> CACHE = new ConcurrentHashMap<>();
+
+    private final BigInteger g;
+    private final BigInteger p;
+    private final Barrett barrett;
+    /**
+     * 表能处理的最大指数位数
+     */
+    private final int bits;
+    private final int window;
+    /**
+     * table[i][j]=g^(j * 2^(window*i)) % p
+     */
+    private final BigInteger[][] table;
+
+    /**
+     * 构造预计算表
+     *
+     * @param g      底数
+     * @param p      模数
+     * @param bits   指数的最大位数
+     * @param window 窗口位数，1到16
+     */
+    public FixedBase(BigInteger g, BigInteger p, int bits, int window) {
+        if (window < 1 || window > 16 || bits < 1)
+            throw new IllegalArgumentException();
+        this.g = g;
+        this.p = p;
+        this.bits = bits;
+        this.window = window;
+        this.barrett = Barrett.of(p);
+        int d = (bits + window - 1) / window;
+        int size = 1 << window;
+        table = new BigInteger[d][size];
+        // base=g^(2^(window*i)) % p
+        BigInteger base = g.mod(p);
+        for (int i = 0; i < d; i++) {
+            table[i][0] = BigInteger.ONE;
+            table[i][1] = base;
+            for (int j = 2; j < size; j++)
+                table[i][j] = barrett.multiply(table[i][j - 1], base);
+            base = barrett.multiply(table[i][size - 1], base);
+        }
+    }
+
+    /**
+     * 取缓存的预计算表，没有或者位数不够时重新构造
+     *
+     * @param g    底数
+     * @param p    模数
+     * @param bits 指数的最大位数
+     * @return 预计算表
+     */
+    public static FixedBase of(BigInteger g, BigInteger p, int bits) {
+        List<BigInteger> key = Arrays.asList(g, p);
+        FixedBase fixedBase = CACHE.get(key);
+        if (fixedBase != null && fixedBase.bits >= bits)
+            return fixedBase;
+        // 向上取整到32位，避免指数位数略有不同时反复重建
+        fixedBase = new FixedBase(g, p, (bits + 31) & ~31, DEFAULT_WINDOW);
+        if (CACHE.size() >= MAX_TABLES) {
+            Iterator<List<BigInteger>> it = CACHE.keySet().iterator();
+            if (it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+        CACHE.put(key, fixedBase);
+        return fixedBase;
+    }
+
+    /**
+     * 估计预计算表占用的字节数
+     *
+     * @param p      模数
+     * @param bits   指数的最大位数
+     * @param window 窗口位数
+     */
+    public static long bytes(BigInteger p, int bits, int window) {
+        long d = (bits + window - 1) / window;
+        // 每个BigInteger约有40字节的对象头和int[]头
+        return d * (1L << window) * (((p.bitLength() + 31) >>> 5) * 4L + 40);
+    }
+
+    /**
+     * @return 表能处理的最大指数位数
+     */
+    public int bits() {
+        return bits;
+    }
+
+    /**
+     * @return 模数p的Barrett约减
+     */
+    public Barrett barrett() {
+        return barrett;
+    }
+
+    /**
+     * 固定底数模幂
+     *
+     * @param k 指数
+     * @return g^k % p
+     */
+    public BigInteger pow(BigInteger k) {
+        // 超出预计算范围的指数使用普通模幂
+        if (k.signum() < 0 || k.bitLength() > bits)
+            return g.modPow(k, p);
+        byte[] e = k.toByteArray();
+        BigInteger r = null;
+        for (int i = 0; i < table.length; i++) {
+            int j = digit(e, i * window, window);
+            if (j == 0)
+                continue;
+            r = r == null ? table[i][j] : barrett.multiply(r, table[i][j]);
+        }
+        return r == null ? BigInteger.ONE.mod(p) : r;
+    }
+
+    /**
+     * 取大端字节串e从第from位开始的w位
+     */
+    static int digit(byte[] e, int from, int w) {
+        int d = 0;
+        for (int i = w - 1; i >= 0; i--) {
+            int bit = from + i;
+            int idx = e.length - 1 - (bit >>> 3);
+            d = d << 1 | (idx >= 0 ? (e[idx] >>> (bit & 7)) & 1 : 0);
+        }
+        return d;
+    }
+}
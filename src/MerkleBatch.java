@@ -0,0 +1,535 @@
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Merkle树批量签名
+ * <p>
+ * 一批消息先各自计算叶子哈希，按RFC 6962（与{@link TreeHash}相同）合并成一棵Merkle树，只对树根做一次签名：
+ * <pre>
+ * 叶子    SHA-256(0x00 || SHA-256(m))
+ * 节点    SHA-256(0x01 || 左 || 右)，左子树为不超过n-1的最大的2的幂个叶子
+ * 签名    用{@link SignatureProvider}的引擎对"merkle-batch" || n(4) || 树根签名
+ * </pre>
+ * 每条消息得到一个{@link Proof}：树根的签名、叶子序号和从叶子到树根的兄弟节点（审计路径，⌈log2 n⌉个哈希）。
+ * 验证时由消息和审计路径算出树根，再验证树根的签名；同一批的签名相同，{@link Verifier}把验证通过的树根记入
+ * {@link VerifyCache}，同一批的其他消息只需要计算log2 n次哈希。
+ * <p>
+ * {@link #sign(Message)}在调用线程上计算叶子哈希后放入队列，签名线程收齐batchSize条或者从第一条起等满latency微秒时
+ * 签一批。batchSize越大、latency越长，每条消息分摊的模幂越少，单条的延迟越长。签名线程签名期间到达的消息留给下一批。
+ * 队列满时sign阻塞。
+ */
+public class MerkleBatch implements AutoCloseable {
+    /**
+     * 每批最多的消息数，可以用系统属性merkle.batch修改
+     */
+    public static final int DEFAULT_BATCH = Integer.getInteger("merkle.batch", 1024);
+    /**
+     * 从一批的第一条消息起最多等待的时间，微秒，可以用系统属性merkle.latency修改
+     */
+    public static final int DEFAULT_LATENCY = Integer.getInteger("merkle.latency", 1000);
+    private static final byte[] PREFIX = "merkle-batch".getBytes(StandardCharsets.US_ASCII);
+    private static final int HASH = 32;
+    /**
+     * 审计路径的最大长度，n不超过2^31-1
+     */
+    private static final int MAX_PATH = 31;
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    /**
+     * 等待签名的一条消息
+     */
+    private static final class Pending {
+        final byte[] leaf;
+        final CompletableFuture<Proof> future = new CompletableFuture<>();
+
+        Pending(byte[] leaf) {
+            this.leaf = leaf;
+        }
+    }
+
+    private final int batchSize;
+    private final long latency;
+    private final Signature signature;
+    private final BlockingQueue<Pending> queue;
+    private final Thread dispatcher;
+    private volatile boolean closed;
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder messages = new LongAdder();
+
+    /**
+     * 使用默认的batchSize和latency
+     */
+    public MerkleBatch(String scheme, BigInteger[] key) {
+        this(scheme, key, DEFAULT_BATCH, DEFAULT_LATENCY);
+    }
+
+    /**
+     * @param scheme    dsa、schnorr、elgamal或rsa
+     * @param key       与各方案generateKey返回值顺序相同的私钥
+     * @param batchSize 每批最多的消息数
+     * @param latency   从一批的第一条消息起最多等待的时间，微秒
+     */
+    public MerkleBatch(String scheme, BigInteger[] key, int batchSize, int latency) {
+        if (batchSize < 1 || latency < 0)
+            throw new IllegalArgumentException();
+        this.batchSize = batchSize;
+        this.latency = TimeUnit.MICROSECONDS.toNanos(latency);
+        this.signature = signer(scheme, key);
+        this.queue = new ArrayBlockingQueue<>(Math.max(batchSize * 4, 1024));
+        this.dispatcher = new Thread(this::dispatch, "merkle-batch");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * 提交一条消息，消息在调用线程上读完
+     *
+     * @return 所在批次签名后完成的证明
+     */
+    public CompletableFuture<Proof> sign(Message m) throws IOException {
+        if (closed)
+            throw new IllegalStateException("closed");
+        Pending p = new Pending(leaf(m));
+        try {
+            queue.put(p);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+        // close之后放入的不会再被签名线程取走
+        if (closed)
+            reject();
+        return p.future;
+    }
+
+    /**
+     * 同步签名一批消息
+     *
+     * @param scheme dsa、schnorr、elgamal或rsa
+     * @param key    与各方案generateKey返回值顺序相同的私钥
+     * @return 各消息的证明，顺序与messages相同
+     */
+    public static Proof[] sign(List<Message> messages, String scheme, BigInteger[] key) throws IOException {
+        byte[][] leaves = new byte[messages.size()][];
+        for (int i = 0; i < leaves.length; i++)
+            leaves[i] = leaf(messages.get(i));
+        try {
+            return sign(leaves, signer(scheme, key));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return 已签名的批数
+     */
+    public long batches() {
+        return batches.sum();
+    }
+
+    /**
+     * @return 已签名的消息数
+     */
+    public long messages() {
+        return messages.sum();
+    }
+
+    @Override
+    public String toString() {
+        long b = batches.sum();
+        return String.format("batches=%d messages=%d average=%.1f", b, messages.sum(),
+                b == 0 ? 0.0 : (double) messages.sum() / b);
+    }
+
+    /**
+     * 签完已提交的消息后停止
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            dispatcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        reject();
+    }
+
+    /**
+     * 签名线程结束后，队列中剩余的消息失败
+     */
+    private void reject() {
+        if (dispatcher.isAlive())
+            return;
+        for (Pending p; (p = queue.poll()) != null; )
+            p.future.completeExceptionally(new IllegalStateException("closed"));
+    }
+
+    /**
+     * 签名线程：收集一批，签名，再收集下一批
+     */
+    private void dispatch() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        try {
+            while (true) {
+                Pending first = queue.poll(10, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (closed)
+                        break;
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + latency;
+                while (batch.size() < batchSize) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0)
+                        continue;
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0)
+                        break;
+                    Pending p = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (p == null)
+                        break;
+                    batch.add(p);
+                }
+                flush(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            // 停止
+        }
+    }
+
+    private void flush(List<Pending> batch) {
+        byte[][] leaves = new byte[batch.size()][];
+        for (int i = 0; i < leaves.length; i++)
+            leaves[i] = batch.get(i).leaf;
+        Proof[] proofs;
+        try {
+            proofs = sign(leaves, signature);
+        } catch (GeneralSecurityException | RuntimeException e) {
+            for (Pending p : batch)
+                p.future.completeExceptionally(e);
+            return;
+        }
+        batches.increment();
+        messages.add(leaves.length);
+        for (int i = 0; i < proofs.length; i++)
+            batch.get(i).future.complete(proofs[i]);
+    }
+
+    /**
+     * 建树，对树根签名
+     */
+    private static Proof[] sign(byte[][] leaves, Signature signature) throws GeneralSecurityException {
+        int n = leaves.length;
+        if (n == 0)
+            return new Proof[0];
+        List<List<byte[]>> paths = new ArrayList<>(n);
+        for (int i = 0; i < n; i++)
+            paths.add(new ArrayList<>());
+        byte[] root = build(leaves, 0, n, paths);
+        signature.update(message(n, root));
+        byte[] s = signature.sign();
+        Proof[] proofs = new Proof[n];
+        for (int i = 0; i < n; i++)
+            proofs[i] = new Proof(i, n, paths.get(i).toArray(new byte[0][]), s);
+        return proofs;
+    }
+
+    /**
+     * 第lo到hi-1个叶子组成的子树，同时把兄弟节点加入其中每个叶子的审计路径，先加入的离叶子近
+     */
+    private static byte[] build(byte[][] leaves, int lo, int hi, List<List<byte[]>> paths) {
+        if (hi - lo == 1)
+            return leaves[lo];
+        int k = Integer.highestOneBit(hi - lo - 1);
+        byte[] l = build(leaves, lo, lo + k, paths);
+        byte[] r = build(leaves, lo + k, hi, paths);
+        for (int i = lo; i < lo + k; i++)
+            paths.get(i).add(r);
+        for (int i = lo + k; i < hi; i++)
+            paths.get(i).add(l);
+        return node(l, r);
+    }
+
+    /**
+     * SHA-256(0x00 || SHA-256(m))
+     */
+    static byte[] leaf(Message m) throws IOException {
+        MessageDigest sha = SHA256.get();
+        sha.reset();
+        m.update(sha);
+        byte[] h = sha.digest();
+        sha.update((byte) 0);
+        return sha.digest(h);
+    }
+
+    private static byte[] node(byte[] l, byte[] r) {
+        MessageDigest sha = SHA256.get();
+        sha.reset();
+        sha.update((byte) 1);
+        sha.update(l);
+        sha.update(r);
+        return sha.digest();
+    }
+
+    /**
+     * 签名的消息"merkle-batch" || n || 树根
+     */
+    private static byte[] message(int n, byte[] root) {
+        return ByteBuffer.allocate(PREFIX.length + 4 + HASH).put(PREFIX).putInt(n).put(root).array();
+    }
+
+    private static Signature signer(String scheme, BigInteger[] key) {
+        try {
+            Signature s = Signature.getInstance(SignatureProvider.algorithm(scheme), new SignatureProvider());
+            s.initSign(SignatureProvider.privateKey(scheme, key));
+            return s;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * 一条消息的签名：叶子序号、叶子数、审计路径和树根的签名
+     * <p>
+     * 编码为index(4) || size(4) || 路径长度(1) || 路径 || 签名，签名占剩余的字节。
+     */
+    public static final class Proof {
+        final int index;
+        final int size;
+        final byte[][] path;
+        final byte[] signature;
+
+        Proof(int index, int size, byte[][] path, byte[] signature) {
+            this.index = index;
+            this.size = size;
+            this.path = path;
+            this.signature = signature;
+        }
+
+        public int index() {
+            return index;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public byte[] toBytes() {
+            ByteBuffer b = ByteBuffer.allocate(9 + path.length * HASH + signature.length);
+            b.putInt(index).putInt(size).put((byte) path.length);
+            for (byte[] h : path)
+                b.put(h);
+            return b.put(signature).array();
+        }
+
+        /**
+         * @throws IllegalArgumentException 编码格式错误
+         */
+        public static Proof of(byte[] bytes) {
+            ByteBuffer b = ByteBuffer.wrap(bytes);
+            if (b.remaining() < 9)
+                throw new IllegalArgumentException("truncated proof");
+            int index = b.getInt(), size = b.getInt(), length = b.get() & 0xff;
+            if (length > MAX_PATH || b.remaining() < length * HASH)
+                throw new IllegalArgumentException("truncated proof");
+            byte[][] path = new byte[length][HASH];
+            for (byte[] h : path)
+                b.get(h);
+            byte[] signature = new byte[b.remaining()];
+            b.get(signature);
+            return new Proof(index, size, path, signature);
+        }
+
+        /**
+         * 由叶子和审计路径算出树根，按RFC 9162 2.1.3.2
+         *
+         * @return 树根，路径与index、size不符时为null
+         */
+        byte[] root(byte[] leaf) {
+            if (index < 0 || index >= size)
+                return null;
+            long fn = index, sn = size - 1;
+            byte[] r = leaf;
+            for (byte[] p : path) {
+                if (sn == 0)
+                    return null;
+                if ((fn & 1) == 1 || fn == sn) {
+                    r = node(p, r);
+                    while ((fn & 1) == 0 && fn != 0) {
+                        fn >>= 1;
+                        sn >>= 1;
+                    }
+                } else {
+                    r = node(r, p);
+                }
+                fn >>= 1;
+                sn >>= 1;
+            }
+            return sn == 0 ? r : null;
+        }
+    }
+
+    /**
+     * 验证{@link Proof}，可以在多个线程中使用
+     */
+    public static final class Verifier {
+        private final String scheme;
+        private final BigInteger[] key;
+        private final int signatureLength;
+        private final VerifyCache cache;
+        private final byte[] fingerprint;
+        private final ThreadLocal<Signature> signatures;
+
+        /**
+         * @param scheme dsa、schnorr、elgamal或rsa
+         * @param key    公钥，私钥分量不使用
+         * @param cache  记录验证通过的树根，可以与其他验证共用
+         */
+        public Verifier(String scheme, BigInteger[] key, VerifyCache cache) {
+            this.scheme = scheme;
+            this.key = Encoding.publicKey(scheme, key);
+            this.signatureLength = Encoding.signatureLength(scheme, this.key);
+            this.cache = cache;
+            this.fingerprint = VerifyCache.fingerprint(scheme, this.key);
+            this.signatures = ThreadLocal.withInitial(() -> {
+                try {
+                    Signature s = Signature.getInstance(SignatureProvider.algorithm(scheme), new SignatureProvider());
+                    s.initVerify(SignatureProvider.publicKey(scheme, this.key));
+                    return s;
+                } catch (GeneralSecurityException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        }
+
+        /**
+         * 检查审计路径，再验证树根的签名，验证通过的树根不再重复验证
+         *
+         * @return 签名是否合法
+         */
+        public boolean verify(Message m, Proof proof) throws IOException {
+            // 定长签名，缓存中的整数值与字节一一对应
+            if (proof.signature.length != signatureLength)
+                return false;
+            byte[] root = proof.root(leaf(m));
+            if (root == null)
+                return false;
+            byte[] signed = message(proof.size, root);
+            return cache.verify(fingerprint, Message.of(signed), new BigInteger[]{new BigInteger(1, proof.signature)},
+                    r -> {
+                        Signature s = signatures.get();
+                        try {
+                            s.update(signed);
+                            return s.verify(proof.signature);
+                        } catch (GeneralSecurityException e) {
+                            return false;
+                        }
+                    });
+        }
+    }
+
+    /**
+     * 比较逐条签名和批量签名的速度，验证全部证明，检查篡改的消息、序号、路径和签名
+     */
+    public static void main(String[] args) throws Exception {
+        String scheme = args.length > 0 ? args[0] : "schnorr";
+        int n = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+        int batchSize = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_BATCH;
+        int latency = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_LATENCY;
+        BigInteger[] key;
+        switch (scheme) {
+            case "dsa":
+                key = DSA.generateKey("dsa-2048-256");
+                break;
+            case "schnorr":
+                key = Schnorr.generateKey();
+                break;
+            case "elgamal":
+                key = ElGamal.generateKey("ffdhe2048");
+                break;
+            default:
+                RSA_PrivateKey rsa = RSA_PrivateKey.generateKey(2048);
+                key = new BigInteger[]{rsa.n, rsa.e, rsa.d, rsa.p, rsa.q};
+        }
+        List<Message> messages = new ArrayList<>(n);
+        for (int i = 0; i < n; i++)
+            messages.add(Message.of(("event " + i).getBytes(StandardCharsets.US_ASCII)));
+
+        Signature single = signer(scheme, key);
+        int sample = Math.min(n, 200);
+        long t0 = System.nanoTime();
+        for (int i = 0; i < sample; i++) {
+            single.update(("event " + i).getBytes(StandardCharsets.US_ASCII));
+            single.sign();
+        }
+        long t1 = System.nanoTime();
+        List<CompletableFuture<Proof>> futures = new ArrayList<>(n);
+        MerkleBatch batch = new MerkleBatch(scheme, key, batchSize, latency);
+        try (batch) {
+            for (Message m : messages)
+                futures.add(batch.sign(m));
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        }
+        long t2 = System.nanoTime();
+
+        Verifier verifier = new Verifier(scheme, key, new VerifyCache(1024));
+        Proof[] proofs = new Proof[n];
+        for (int i = 0; i < n; i++) {
+            proofs[i] = Proof.of(futures.get(i).join().toBytes());
+            if (!verifier.verify(messages.get(i), proofs[i]))
+                throw new AssertionError("verify " + i);
+        }
+        long t3 = System.nanoTime();
+        System.out.printf("%s, %d messages: single sign %.1f us, batch sign %.2f us per message (%s), "
+                        + "verify %.2f us per message%n", scheme, n, (t1 - t0) / 1e3 / sample, (t2 - t1) / 1e3 / n,
+                batch, (t3 - t2) / 1e3 / n);
+
+        Proof p = proofs[n / 2];
+        if (verifier.verify(messages.get(n / 2 + 1), p))
+            throw new AssertionError("wrong message");
+        if (verifier.verify(messages.get(n / 2), new Proof(p.index ^ 1, p.size, p.path, p.signature)))
+            throw new AssertionError("wrong index");
+        if (p.path.length > 0) {
+            byte[][] path = p.path.clone();
+            path[0] = path[0].clone();
+            path[0][0] ^= 1;
+            if (verifier.verify(messages.get(n / 2), new Proof(p.index, p.size, path, p.signature)))
+                throw new AssertionError("tampered path");
+        }
+        byte[] s = p.signature.clone();
+        s[s.length - 1] ^= 1;
+        // 树根相同、签名不同，不能命中缓存
+        if (verifier.verify(messages.get(n / 2), new Proof(p.index, p.size, p.path, s)))
+            throw new AssertionError("tampered signature");
+
+        // 同步接口，各种叶子数的树
+        for (int size = 1; size <= 17; size++) {
+            Proof[] q = sign(messages.subList(0, size), scheme, key);
+            for (int i = 0; i < size; i++)
+                if (!verifier.verify(messages.get(i), q[i]))
+                    throw new AssertionError("size " + size + " index " + i);
+        }
+        System.out.println("pass");
+    }
+}
@@ -0,0 +1,101 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+
+/**
+ * 待签名的消息，按块送入摘要，消息不需要整个放在堆中
+ * <p>
+ * 字节形式的消息按原样计算摘要。首字节不为0的消息与{@code new BigInteger(1, bytes)}的摘要相同，
+ * 因此两种形式的签名可以互相验证。流、通道形式的消息只能读取一次。
+ */
+public interface Message {
+    /**
+     * 读缓冲区大小
+     */
+    int BUFFER_SIZE = 64 * 1024;
+    /**
+     * 每次映射的最大字节数
+     */
+    int MAP_SIZE = 1 << 30;
+
+    /**
+     * 把消息送入摘要
+     *
+     * @param messageDigest 摘要
+     */
+    void update(MessageDigest messageDigest) throws IOException;
+
+    /**
+     * 整数形式的消息，按去掉符号位0的大端字节计算摘要
+     */
+    static Message of(BigInteger m) {
+        return messageDigest -> {
+            byte[] b = m.toByteArray();
+            int off = b[0] == 0 ? 1 : 0;
+            messageDigest.update(b, off, b.length - off);
+        };
+    }
+
+    /**
+     * 字节数组形式的消息
+     */
+    static Message of(byte[] b) {
+        return messageDigest -> messageDigest.update(b);
+    }
+
+    /**
+     * 缓冲区中position到limit的字节，不改变缓冲区的position
+     */
+    static Message of(ByteBuffer buffer) {
+        return messageDigest -> messageDigest.update(buffer.duplicate());
+    }
+
+    /**
+     * 输入流中剩余的全部字节，读完后不关闭流
+     */
+    static Message of(InputStream in) {
+        return messageDigest -> {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int n;
+            while ((n = in.read(buffer)) != -1)
+                messageDigest.update(buffer, 0, n);
+        };
+    }
+
+    /**
+     * 通道中剩余的全部字节，读完后不关闭通道
+     */
+    static Message of(ReadableByteChannel channel) {
+        return messageDigest -> {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                messageDigest.update(buffer);
+                buffer.clear();
+            }
+        };
+    }
+
+    /**
+     * 文件内容，使用内存映射分段读取
+     */
+    static Message of(Path path) {
+        return messageDigest -> {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long size = channel.size();
+                for (long pos = 0; pos < size; pos += MAP_SIZE) {
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, pos,
+                            Math.min(MAP_SIZE, size - pos));
+                    messageDigest.update(buffer);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,341 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * 签名/验证各阶段的计时
+ * <p>
+ * 用法：
+ * <pre>
+ * long t = Metrics.start();
+ * ...
+ * Metrics.stop(Metrics.Stage.HASH, t);
+ * </pre>
+ * 关闭时start()只读一个volatile字段并返回0，stop(stage, 0)直接返回，可以常驻在生产代码中。
+ * <p>
+ * 打开的方式有两种：
+ * <ul>
+ * <li>系统属性metrics=true，或者通过JMX的DigitalSignature:type=Metrics设置Enabled，
+ * 记录每个阶段的次数、总时间和按2的幂分桶的延迟直方图，由同一个MBean读出</li>
+ * <li>JFR录制开始后自动打开，每次调用产生一个DigitalSignature.Stage事件，录制全部停止后关闭</li>
+ * </ul>
+ * 阶段是包含关系的，例如ENCODE包含其中的HASH和MGF，NONCE包含其中的模幂。
+ */
+public final class Metrics {
+    /**
+     * 计时的阶段
+     */
+    public enum Stage {
+        /**
+         * 消息摘要
+         */
+        HASH,
+        /**
+         * RSA-PSS编码
+         */
+        ENCODE,
+        /**
+         * MGF1
+         */
+        MGF,
+        /**
+         * 产生签名随机数及其承诺
+         */
+        NONCE,
+        /**
+         * 模幂，椭圆曲线上为标量乘
+         */
+        MODPOW,
+        /**
+         * 比较验证结果
+         */
+        COMPARE
+    }
+
+    /**
+     * 直方图的桶数，第i个桶为[2^(i-1), 2^i)纳秒
+     */
+    private static final int BUCKETS = 48;
+
+    /**
+     * 一个阶段的统计
+     */
+    private static final class Histogram {
+        final LongAdder count = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        void record(long d) {
+            count.increment();
+            nanos.add(d);
+            buckets.incrementAndGet(Math.min(64 - Long.numberOfLeadingZeros(d), BUCKETS - 1));
+        }
+
+        /**
+         * @return 分位数所在桶的上界，纳秒
+         */
+        long percentile(double p) {
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++)
+                total += buckets.get(i);
+            if (total == 0)
+                return 0;
+            long rank = (long) Math.ceil(p * total);
+            for (int i = 0; i < BUCKETS; i++) {
+                rank -= buckets.get(i);
+                if (rank <= 0)
+                    return 1L << i;
+            }
+            return 1L << (BUCKETS - 1);
+        }
+
+        void reset() {
+            count.reset();
+            nanos.reset();
+            for (int i = 0; i < BUCKETS; i++)
+                buckets.set(i, 0);
+        }
+    }
+
+    /**
+     * JFR事件
+     */
+    @Name("DigitalSignature.Stage")
+    @Label("Signature Stage")
+    @Category("Digital Signature")
+    @Description("One stage of a sign or verify operation")
+    @StackTrace(false)
+    static class StageEvent extends Event {
+        @Label("Stage")
+        String stage;
+        @Label("Duration")
+        @Timespan(Timespan.NANOSECONDS)
+        long nanos;
+    }
+
+    /**
+     * JMX接口
+     */
+    public interface MetricsMXBean {
+        boolean isEnabled();
+
+        void setEnabled(boolean enabled);
+
+        Map<String, Long> getCount();
+
+        Map<String, Long> getTotalNanos();
+
+        Map<String, Long> getMeanNanos();
+
+        Map<String, Long> getP50Nanos();
+
+        Map<String, Long> getP99Nanos();
+
+        void reset();
+    }
+
+    private static final Histogram[] HISTOGRAMS = new Histogram[Stage.values().length];
+    /**
+     * 是否记录直方图
+     */
+    private static volatile boolean enabled = Boolean.getBoolean("metrics");
+    /**
+     * 是否有正在进行的JFR录制
+     */
+    private static volatile boolean recording;
+    /**
+     * enabled || recording，start()只读这一个字段
+     */
+    private static volatile boolean active = enabled;
+
+    static {
+        for (int i = 0; i < HISTOGRAMS.length; i++)
+            HISTOGRAMS[i] = new Histogram();
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(),
+                    new ObjectName("DigitalSignature:type=Metrics"));
+        } catch (JMException | SecurityException e) {
+            // 已注册或者没有权限时只是不能通过JMX访问
+        }
+        try {
+            FlightRecorder.addListener(new FlightRecorderListener() {
+                @Override
+                public void recordingStateChanged(Recording r) {
+                    updateRecording();
+                }
+            });
+            // 启动参数中的录制在注册监听器之前就已经开始了
+            if (FlightRecorder.isInitialized())
+                updateRecording();
+        } catch (SecurityException e) {
+            // 没有JFR权限时不产生事件
+        }
+    }
+
+    private Metrics() {
+    }
+
+    private static void updateRecording() {
+        boolean running = false;
+        for (Recording r : FlightRecorder.getFlightRecorder().getRecordings())
+            running |= r.getState() == RecordingState.RUNNING;
+        recording = running;
+        active = enabled || recording;
+    }
+
+    /**
+     * 开始计时
+     *
+     * @return 开始时间，关闭时为0
+     */
+    public static long start() {
+        return active ? System.nanoTime() : 0;
+    }
+
+    /**
+     * 结束计时
+     *
+     * @param stage 阶段
+     * @param start {@link #start()}的返回值
+     */
+    public static void stop(Stage stage, long start) {
+        if (start == 0)
+            return;
+        long d = System.nanoTime() - start;
+        if (enabled)
+            HISTOGRAMS[stage.ordinal()].record(d);
+        if (recording) {
+            StageEvent event = new StageEvent();
+            if (event.isEnabled()) {
+                event.stage = stage.name();
+                event.nanos = d;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * 打开或关闭直方图
+     */
+    public static void setEnabled(boolean on) {
+        enabled = on;
+        active = on || recording;
+    }
+
+    /**
+     * @return 是否记录直方图
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return 阶段的调用次数
+     */
+    public static long count(Stage stage) {
+        return HISTOGRAMS[stage.ordinal()].count.sum();
+    }
+
+    /**
+     * @return 阶段的总时间，纳秒
+     */
+    public static long totalNanos(Stage stage) {
+        return HISTOGRAMS[stage.ordinal()].nanos.sum();
+    }
+
+    /**
+     * @param p 0到1
+     * @return 阶段延迟的分位数，精确到2的幂，纳秒
+     */
+    public static long percentile(Stage stage, double p) {
+        return HISTOGRAMS[stage.ordinal()].percentile(p);
+    }
+
+    /**
+     * 清空统计
+     */
+    public static void reset() {
+        for (Histogram h : HISTOGRAMS)
+            h.reset();
+    }
+
+    /**
+     * 各阶段的统计，每行一个阶段
+     */
+    public static String report() {
+        StringBuilder sb = new StringBuilder();
+        for (Stage stage : Stage.values()) {
+            long n = count(stage);
+            sb.append(String.format("%-8s %10d calls, mean %10.1f us, p50 <= %8.1f us, p99 <= %8.1f us%n",
+                    stage, n, n == 0 ? 0 : totalNanos(stage) / 1e3 / n,
+                    percentile(stage, 0.5) / 1e3, percentile(stage, 0.99) / 1e3));
+        }
+        return sb.toString();
+    }
+
+    private static class Bean implements MetricsMXBean {
+        @Override
+        public boolean isEnabled() {
+            return Metrics.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean enabled) {
+            Metrics.setEnabled(enabled);
+        }
+
+        @Override
+        public Map<String, Long> getCount() {
+            return byStage(Metrics::count);
+        }
+
+        @Override
+        public Map<String, Long> getTotalNanos() {
+            return byStage(Metrics::totalNanos);
+        }
+
+        @Override
+        public Map<String, Long> getMeanNanos() {
+            return byStage(s -> count(s) == 0 ? 0 : totalNanos(s) / count(s));
+        }
+
+        @Override
+        public Map<String, Long> getP50Nanos() {
+            return byStage(s -> percentile(s, 0.5));
+        }
+
+        @Override
+        public Map<String, Long> getP99Nanos() {
+            return byStage(s -> percentile(s, 0.99));
+        }
+
+        @Override
+        public void reset() {
+            Metrics.reset();
+        }
+
+        private static Map<String, Long> byStage(ToLongFunction<Stage> f) {
+            Map<String, Long> map = new LinkedHashMap<>();
+            for (Stage stage : Stage.values())
+                map.put(stage.name(), f.applyAsLong(stage));
+            return map;
+        }
+    }
+}
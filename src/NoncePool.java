@@ -0,0 +1,188 @@
+import java.math.BigInteger;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 离线预计算的签名随机数池
+ * <p>
+ * DSA的(k, r=g^k % p % q, k^(-1) % q)、Schnorr的(r, x=α^r % p)、ElGamal的(k, S1=α^k % q, k^(-1) % (q-1))
+ * 都与消息无关，可以在空闲时预先计算，在线签名只需要计算hash和几次乘法。
+ * <p>
+ * 池中数量降到低水位时，由后台的低优先级线程补充到容量为止；池空时在调用线程上现算，记为未命中。
+ * 每个随机数只会被{@link #take()}取出一次，取出后即从池中删除。池中保存的是秘密值，用完应{@link #close()}。
+ */
+public class NoncePool implements AutoCloseable {
+    /**
+     * 预计算的随机数
+     */
+    public static class Nonce {
+        /**
+         * 秘密随机数k
+         */
+        public final BigInteger k;
+        /**
+         * 承诺，DSA为r，Schnorr为x，ElGamal为S1
+         */
+        public final BigInteger commitment;
+        /**
+         * k的逆，Schnorr不需要，为null
+         */
+        public final BigInteger kInv;
+
+        public Nonce(BigInteger k, BigInteger commitment, BigInteger kInv) {
+            this.k = k;
+            this.commitment = commitment;
+            this.kInv = kInv;
+        }
+    }
+
+    private final Supplier<Nonce> generator;
+    private final int depth;
+    private final int lowWater;
+    private final int threads;
+    private final ConcurrentLinkedQueue<Nonce> queue = new ConcurrentLinkedQueue<>();
+    /**
+     * 池中的数量，ConcurrentLinkedQueue.size()需要遍历
+     */
+    private final AtomicInteger size = new AtomicInteger();
+    /**
+     * 正在运行的补充任务数
+     */
+    private final AtomicInteger refilling = new AtomicInteger();
+    private final ExecutorService executor;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder generated = new LongAdder();
+    private volatile boolean closed;
+
+    /**
+     * 容量为depth，低水位为depth/2，一个补充线程
+     *
+     * @param generator 产生一个随机数，例如() -> DSA.nonce(p, q, g)
+     * @param depth     容量
+     */
+    public NoncePool(Supplier<Nonce> generator, int depth) {
+        this(generator, depth, depth / 2, 1);
+    }
+
+    /**
+     * @param generator 产生一个随机数，例如() -> DSA.nonce(p, q, g)
+     * @param depth     容量
+     * @param lowWater  池中数量不超过lowWater时开始补充
+     * @param threads   补充线程数
+     */
+    public NoncePool(Supplier<Nonce> generator, int depth, int lowWater, int threads) {
+        if (depth < 1 || lowWater < 0 || lowWater >= depth || threads < 1)
+            throw new IllegalArgumentException();
+        this.generator = generator;
+        this.depth = depth;
+        this.lowWater = lowWater;
+        this.threads = threads;
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "nonce-pool");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        refill();
+    }
+
+    /**
+     * 取出一个随机数，池空时现算
+     *
+     * @return 只会被使用一次的随机数
+     */
+    public Nonce take() {
+        Nonce nonce = queue.poll();
+        if (nonce != null) {
+            hits.increment();
+            if (size.decrementAndGet() <= lowWater)
+                refill();
+            return nonce;
+        }
+        misses.increment();
+        refill();
+        generated.increment();
+        return generator.get();
+    }
+
+    /**
+     * 在调用线程上填满，用于启动时预热
+     */
+    public void fill() {
+        while (!closed && size.get() < depth)
+            offer(generator.get());
+    }
+
+    /**
+     * 没有补充任务在运行时启动补充
+     */
+    private void refill() {
+        if (closed || !refilling.compareAndSet(0, threads))
+            return;
+        for (int i = 0; i < threads; i++)
+            executor.execute(() -> {
+                try {
+                    while (!closed && size.get() < depth)
+                        offer(generator.get());
+                } finally {
+                    refilling.decrementAndGet();
+                }
+            });
+    }
+
+    /**
+     * 放入池中，已满时丢弃
+     */
+    private void offer(Nonce nonce) {
+        generated.increment();
+        if (size.incrementAndGet() > depth) {
+            size.decrementAndGet();
+            return;
+        }
+        queue.offer(nonce);
+    }
+
+    /**
+     * @return 池中的数量
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * @return 从池中取到的次数
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return 池空现算的次数
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return 一共计算的随机数个数，包括现算的
+     */
+    public long generated() {
+        return generated.sum();
+    }
+
+    /**
+     * 停止补充并清空池
+     */
+    @Override
+    public void close() {
+        closed = true;
+        executor.shutdownNow();
+        queue.clear();
+        size.set(0);
+    }
+}
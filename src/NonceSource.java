@@ -0,0 +1,232 @@
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.DrbgParameters;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * 密钥生成和签名用的随机数来源
+ * <p>
+ * 随机模式：每个线程一个DRBG实例，只在创建时和每取用{@link #RESEED}次后从系统熵源播种，
+ * 不再每次new SecureRandom()，多线程签名时不争用同一个熵源。{@link #random()}返回的实例只能在当前线程使用。
+ * <p>
+ * 确定性模式：按RFC 6979 3.2由私钥和消息摘要经HMAC-DRBG产生k，热路径上不需要熵，
+ * 同一私钥对同一消息总是得到相同的签名。系统属性nonce=deterministic时DSA、Schnorr、ElGamal的sign默认使用，
+ * 也可以直接调用各方案的signDeterministic。{@link NoncePool}中预计算的随机数与消息无关，总是随机模式。
+ */
+public final class NonceSource {
+    /**
+     * sign是否默认使用确定性模式
+     */
+    public static final boolean DETERMINISTIC = "deterministic".equals(System.getProperty("nonce"));
+    /**
+     * 每个线程的DRBG取用多少次后重新播种，可以用系统属性random.reseed修改
+     */
+    public static final long RESEED = Math.max(1, Long.getLong("random.reseed", 1 << 16));
+
+    /**
+     * 一个线程的DRBG和取用次数
+     */
+    private static final class Drbg {
+        final SecureRandom random = create();
+        long uses;
+    }
+
+    private static final ThreadLocal<Drbg> LOCAL = ThreadLocal.withInitial(Drbg::new);
+
+    private NonceSource() {
+    }
+
+    private static SecureRandom create() {
+        try {
+            return SecureRandom.getInstance("DRBG",
+                    DrbgParameters.instantiation(256, DrbgParameters.Capability.RESEED_ONLY, null));
+        } catch (NoSuchAlgorithmException e) {
+            return new SecureRandom();
+        }
+    }
+
+    /**
+     * @return 当前线程的DRBG，到期时先重新播种
+     */
+    public static SecureRandom random() {
+        Drbg d = LOCAL.get();
+        if (++d.uses % RESEED == 0)
+            d.random.reseed();
+        return d.random;
+    }
+
+    /**
+     * 用当前线程的DRBG取[lo, hi)内均匀分布的整数
+     */
+    public static BigInteger uniform(BigInteger lo, BigInteger hi) {
+        return uniform(lo, hi, random());
+    }
+
+    /**
+     * [lo, hi)内均匀分布的整数
+     * <p>
+     * 只取表示hi-lo-1所需的位数，超出范围时重取，每次被拒绝的概率小于1/2。
+     */
+    public static BigInteger uniform(BigInteger lo, BigInteger hi, SecureRandom random) {
+        BigInteger range = hi.subtract(lo);
+        if (range.signum() <= 0)
+            throw new IllegalArgumentException("empty range");
+        int bits = range.subtract(BigInteger.ONE).bitLength();
+        if (bits == 0)
+            return lo;
+        byte[] b = new byte[(bits + 7) / 8];
+        int mask = 0xff >>> (8 * b.length - bits);
+        while (true) {
+            random.nextBytes(b);
+            b[0] &= mask;
+            BigInteger v = new BigInteger(1, b);
+            if (v.compareTo(range) < 0)
+                return v.add(lo);
+        }
+    }
+
+    /**
+     * RFC 6979 3.2的k序列
+     * <p>
+     * 第一次{@link #next()}返回的就是RFC中的k，k不能用时（如r=0）再调用next()取下一个。
+     */
+    public static final class Deterministic {
+        private final Mac mac;
+        private final BigInteger q;
+        private final int qlen;
+        private final byte[] v;
+        private boolean first = true;
+
+        /**
+         * HMAC-SHA1，与DSA、Schnorr、ElGamal的消息摘要一致
+         *
+         * @param x  私钥
+         * @param q  k的上界，DSA和Schnorr为q，ElGamal为q-1
+         * @param h1 消息摘要
+         */
+        public Deterministic(BigInteger x, BigInteger q, byte[] h1) {
+            this("HmacSHA1", x, q, h1);
+        }
+
+        /**
+         * @param algorithm HMAC算法，与产生h1的摘要算法对应
+         */
+        public Deterministic(String algorithm, BigInteger x, BigInteger q, byte[] h1) {
+            try {
+                mac = Mac.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+            this.q = q;
+            this.qlen = q.bitLength();
+            int hlen = mac.getMacLength();
+            v = new byte[hlen];
+            Arrays.fill(v, (byte) 1);
+            byte[] seed = concat(int2octets(x), bits2octets(h1));
+            // K=0x00...00
+            key(new byte[hlen]);
+            // K=HMAC_K(V||0x00||int2octets(x)||bits2octets(h1))，V=HMAC_K(V)
+            update(0, seed);
+            // K=HMAC_K(V||0x01||int2octets(x)||bits2octets(h1))，V=HMAC_K(V)
+            update(1, seed);
+        }
+
+        /**
+         * @return 下一个1<=k<q
+         */
+        public BigInteger next() {
+            while (true) {
+                if (!first)
+                    update(0, new byte[0]);
+                first = false;
+                byte[] t = new byte[0];
+                while (8 * t.length < qlen) {
+                    mac.update(v);
+                    doFinal(v);
+                    t = concat(t, v);
+                }
+                BigInteger k = bits2int(t);
+                if (k.signum() > 0 && k.compareTo(q) < 0)
+                    return k;
+            }
+        }
+
+        /**
+         * K=HMAC_K(V||b||data)，V=HMAC_K(V)
+         */
+        private void update(int b, byte[] data) {
+            mac.update(v);
+            mac.update((byte) b);
+            mac.update(data);
+            key(mac.doFinal());
+            mac.update(v);
+            doFinal(v);
+        }
+
+        private void key(byte[] k) {
+            try {
+                mac.init(new SecretKeySpec(k, mac.getAlgorithm()));
+            } catch (InvalidKeyException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void doFinal(byte[] out) {
+            try {
+                mac.doFinal(out, 0);
+            } catch (ShortBufferException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private BigInteger bits2int(byte[] b) {
+            BigInteger i = new BigInteger(1, b);
+            return 8 * b.length > qlen ? i.shiftRight(8 * b.length - qlen) : i;
+        }
+
+        private byte[] int2octets(BigInteger x) {
+            return Encoding.toBytes(x, (qlen + 7) / 8);
+        }
+
+        private byte[] bits2octets(byte[] h) {
+            return int2octets(bits2int(h).mod(q));
+        }
+
+        private static byte[] concat(byte[] a, byte[] b) {
+            byte[] c = Arrays.copyOf(a, a.length + b.length);
+            System.arraycopy(b, 0, c, a.length, b.length);
+            return c;
+        }
+    }
+
+    /**
+     * RFC 6979 A.2.1（DSA 1024位，SHA-1）和A.2.5（P-256，SHA-256）中"sample"的k
+     */
+    public static void main(String[] args) throws NoSuchAlgorithmException {
+        byte[] sample = "sample".getBytes(StandardCharsets.US_ASCII);
+        BigInteger k = new Deterministic(new BigInteger("411602CB19A6CCC34494D79D98EF1E7ED5AF25F7", 16),
+                new BigInteger("996F967F6C8E388D9E28D01E205FBA957A5642B1", 16),
+                MessageDigest.getInstance("SHA").digest(sample)).next();
+        if (!k.equals(new BigInteger("7BDB6B0FF756E1BB5D53583EF979082F9AD5BD5B", 16)))
+            throw new AssertionError("RFC 6979 A.2.1 k");
+        k = new Deterministic("HmacSHA256",
+                new BigInteger("C9AFA9D845BA75166B5C215767B1D6934E50C3DB36E89B127B8A622B120F6721", 16),
+                ECCurve.P256.n, MessageDigest.getInstance("SHA-256").digest(sample)).next();
+        if (!k.equals(new BigInteger("A6E3C57DD01ABE90086538398355DD4C3B17AA873382B0F24D6129493D8AAD60", 16)))
+            throw new AssertionError("RFC 6979 A.2.5 k");
+        BigInteger q = BigInteger.valueOf(1000);
+        for (int i = 0; i < 10000; i++) {
+            BigInteger u = uniform(BigInteger.ONE, q);
+            if (u.signum() <= 0 || u.compareTo(q) >= 0)
+                throw new AssertionError("uniform range");
+        }
+        System.out.println("pass");
+    }
+}
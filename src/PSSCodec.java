@@ -0,0 +1,262 @@
+import java.io.IOException;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * RSA-PSS编码与验证，不分配内存
+ * <p>
+ * 编码结果直接写入调用者提供的数组，MGF的掩码直接异或到数据上，摘要用digest(buf, off, len)写入固定的缓冲区。
+ * 除了验证时按需要扩大一次的工作区外，稳定状态下不分配内存。
+ * 实例不是线程安全的，多线程使用{@link #get()}取得当前线程的实例。
+ */
+public class PSSCodec {
+    private static final int H_LEN = RSA_PSS.H_LEN;
+    private static final int S_LEN = RSA_PSS.S_LEN;
+    private static final ThreadLocal<PSSCodec> LOCAL = ThreadLocal.withInitial(PSSCodec::new);
+
+    private final MessageDigest messageDigest;
+    /**
+     * m'=padding1||mHash||salt，padding1为8字节全零串
+     */
+    private final byte[] m2 = new byte[8 + H_LEN + S_LEN];
+    private final byte[] salt = new byte[S_LEN];
+    /**
+     * MGF的计数器
+     */
+    private final byte[] counter = new byte[4];
+    /**
+     * 一次hash的输出
+     */
+    private final byte[] block = new byte[H_LEN];
+    /**
+     * 验证时补齐前导0的em
+     */
+    private byte[] em = new byte[0];
+
+    public PSSCodec() {
+        try {
+            messageDigest = MessageDigest.getInstance("SHA");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return 当前线程的实例
+     */
+    public static PSSCodec get() {
+        return LOCAL.get();
+    }
+
+    /**
+     * em的字节长度
+     */
+    public static int emLen(int emBits) {
+        return emBits % 8 == 0 ? emBits / 8 : emBits / 8 + 1;
+    }
+
+    /**
+     * 掩码生成函数MGF1，基于SHA-1，掩码异或到mask上
+     *
+     * @param seed    种子
+     * @param seedOff 种子的起始位置
+     * @param seedLen 种子的字节长度
+     * @param mask    被掩码的字节串
+     * @param off     被掩码部分的起始位置
+     * @param len     掩码的字节长度
+     */
+    public void mgf(byte[] seed, int seedOff, int seedLen, byte[] mask, int off, int len) {
+        long t = Metrics.start();
+        for (int i = 0; len > 0; i++) {
+            // Hash(seed||i)
+            counter[0] = (byte) (i >>> 24);
+            counter[1] = (byte) (i >>> 16);
+            counter[2] = (byte) (i >>> 8);
+            counter[3] = (byte) i;
+            messageDigest.update(seed, seedOff, seedLen);
+            messageDigest.update(counter);
+            digest(block, 0);
+            int n = Math.min(len, H_LEN);
+            for (int j = 0; j < n; j++)
+                mask[off + j] ^= block[j];
+            off += n;
+            len -= n;
+        }
+        Metrics.stop(Metrics.Stage.MGF, t);
+    }
+
+    /**
+     * 消息编码
+     *
+     * @param m      用于签名的待编码消息
+     * @param emBits 比RSA模数n的长度小
+     * @param out    编码结果
+     * @param off    编码结果的起始位置，从off开始写emLen(emBits)字节
+     * @return em的字节长度
+     */
+    public int encode(Message m, int emBits, byte[] out, int off) throws IOException {
+        if (emLen(emBits) < H_LEN + S_LEN + 2)
+            throw new IllegalArgumentException("emBits too small");
+        long t = Metrics.start();
+        // m'=padding1||mHash||salt
+        long th = Metrics.start();
+        messageDigest.reset();
+        m.update(messageDigest);
+        digest(m2, 8);
+        Metrics.stop(Metrics.Stage.HASH, th);
+        int emLen = encode(emBits, out, off);
+        Metrics.stop(Metrics.Stage.ENCODE, t);
+        return emLen;
+    }
+
+    /**
+     * 消息编码，消息摘要mHash已经计算
+     *
+     * @param mHash  消息的SHA-1摘要
+     * @param emBits 比RSA模数n的长度小
+     * @param out    编码结果
+     * @param off    编码结果的起始位置，从off开始写emLen(emBits)字节
+     * @return em的字节长度
+     */
+    public int encodeDigest(byte[] mHash, int emBits, byte[] out, int off) {
+        if (emLen(emBits) < H_LEN + S_LEN + 2 || mHash.length != H_LEN)
+            throw new IllegalArgumentException("emBits too small or wrong digest length");
+        long t = Metrics.start();
+        System.arraycopy(mHash, 0, m2, 8, H_LEN);
+        int emLen = encode(emBits, out, off);
+        Metrics.stop(Metrics.Stage.ENCODE, t);
+        return emLen;
+    }
+
+    /**
+     * 编码，m2中已经有mHash
+     */
+    private int encode(int emBits, byte[] out, int off) {
+        int emLen = emLen(emBits);
+        int dbLen = emLen - H_LEN - 1;
+        NonceSource.random().nextBytes(salt);
+        System.arraycopy(salt, 0, m2, 8 + H_LEN, S_LEN);
+        // h=Hash(m')，直接写在em中maskedDB之后
+        messageDigest.update(m2);
+        digest(out, off + dbLen);
+        // db=padding2||salt，padding2为emLen-S_LEN-H_LEN-2个00加01
+        Arrays.fill(out, off, off + dbLen - S_LEN - 1, (byte) 0);
+        out[off + dbLen - S_LEN - 1] = 1;
+        System.arraycopy(salt, 0, out, off + dbLen - S_LEN, S_LEN);
+        // maskedDB=db xor MGF(h, dbLen)
+        mgf(out, off + dbLen, H_LEN, out, off, dbLen);
+        // maskedDB的最左字节的左8 * emLen - emBits位设为0
+        out[off] &= (byte) (0xff >> (8 * emLen - emBits));
+        // em=maskedDB||h||0xbc
+        out[off + emLen - 1] = (byte) 0xbc;
+        return emLen;
+    }
+
+    /**
+     * em验证
+     *
+     * @param m      待验证消息
+     * @param em1    签名解密后的字节串，前导0可以省略
+     * @param off    em1的起始位置
+     * @param len    em1的字节长度
+     * @param emBits 比RSA模数n的长度小
+     * @return 签名是否合法
+     */
+    public boolean verify(Message m, byte[] em1, int off, int len, int emBits) throws IOException {
+        int dbLen = unmask(em1, off, len, emBits);
+        if (dbLen < 0)
+            return false;
+        long t = Metrics.start();
+        messageDigest.reset();
+        m.update(messageDigest);
+        digest(m2, 8);
+        return compare(dbLen, t);
+    }
+
+    /**
+     * em验证，消息摘要mHash已经计算
+     *
+     * @param mHash  消息的SHA-1摘要
+     * @param em1    签名解密后的字节串，前导0可以省略
+     * @param off    em1的起始位置
+     * @param len    em1的字节长度
+     * @param emBits 比RSA模数n的长度小
+     * @return 签名是否合法
+     */
+    public boolean verifyDigest(byte[] mHash, byte[] em1, int off, int len, int emBits) {
+        if (mHash.length != H_LEN)
+            return false;
+        int dbLen = unmask(em1, off, len, emBits);
+        if (dbLen < 0)
+            return false;
+        long t = Metrics.start();
+        System.arraycopy(mHash, 0, m2, 8, H_LEN);
+        return compare(dbLen, t);
+    }
+
+    /**
+     * 检查em的格式并去掉掩码，db留在em中
+     *
+     * @return db的字节长度，格式错误时为-1
+     */
+    private int unmask(byte[] em1, int off, int len, int emBits) {
+        int emLen = emLen(emBits);
+        if (emLen < H_LEN + S_LEN + 2 || len > emLen || len == 0)
+            return -1;
+        // em的最右字节应为0xbc
+        if (em1[off + len - 1] != (byte) 0xbc)
+            return -1;
+        int dbLen = emLen - H_LEN - 1;
+        int zeroBits = 8 * emLen - emBits;
+        // em的前几个字节可能为0，解密时会去掉，所以要将em1补充完整
+        if (em.length < emLen)
+            em = new byte[emLen];
+        Arrays.fill(em, 0, emLen - len, (byte) 0);
+        System.arraycopy(em1, off, em, emLen - len, len);
+        // maskedDB的最左字节的左8 * emLen - emBits位应全为0
+        if ((em[0] & 0xff & ~(0xff >> zeroBits)) != 0)
+            return -1;
+        // db=maskedDB xor MGF(h, dbLen)
+        mgf(em, dbLen, H_LEN, em, 0, dbLen);
+        em[0] &= (byte) (0xff >> zeroBits);
+        // db的最左emLen - H_LEN - S_LEN - 2字节应为0，之后为01
+        for (int i = 0; i < dbLen - S_LEN - 1; i++)
+            if (em[i] != 0)
+                return -1;
+        if (em[dbLen - S_LEN - 1] != 1)
+            return -1;
+        return dbLen;
+    }
+
+    /**
+     * m2中已经有mHash，取出salt计算h'并与em中的h比较
+     *
+     * @param t 摘要计时的开始时间
+     */
+    private boolean compare(int dbLen, long t) {
+        // m'=padding1||mHash||salt，salt为db的最后S_LEN字节
+        System.arraycopy(em, dbLen - S_LEN, m2, 8 + H_LEN, S_LEN);
+        // h'=Hash(m')
+        messageDigest.update(m2);
+        digest(block, 0);
+        Metrics.stop(Metrics.Stage.HASH, t);
+        // 如果h=h'则签名合法
+        t = Metrics.start();
+        boolean valid = Arrays.equals(em, dbLen, dbLen + H_LEN, block, 0, H_LEN);
+        Metrics.stop(Metrics.Stage.COMPARE, t);
+        return valid;
+    }
+
+    /**
+     * 把摘要写入buf[off, off+H_LEN)
+     */
+    private void digest(byte[] buf, int off) {
+        try {
+            messageDigest.digest(buf, off, H_LEN);
+        } catch (DigestException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
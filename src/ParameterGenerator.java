@@ -0,0 +1,242 @@
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 素数和域参数的并行生成
+ * <p>
+ * 在随机起点之后的一段连续候选数上，先用小素数筛掉有小因子的候选数（安全素数同时筛q和2q+1），
+ * 剩下的候选数分给ForkJoinPool并行检测，先做一次以2为底的Fermat检测，通过后才做完整的素性检测。
+ * 任一任务找到结果后其余任务立即停止。
+ */
+public class ParameterGenerator {
+    /**
+     * 筛法使用的小素数上界
+     */
+    private static final int SIEVE_BOUND = 1 << 16;
+    /**
+     * 每段候选数的个数
+     */
+    private static final int INTERVAL = 1 << 16;
+    /**
+     * 每个并行任务至少检测的候选数
+     */
+    private static final int LEAF = 16;
+    /**
+     * 3到SIEVE_BOUND之间的奇素数
+     */
+    private static final int[] SMALL_PRIMES = smallPrimes(SIEVE_BOUND);
+
+    private final ForkJoinPool pool;
+    private final int certainty;
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * 使用公共ForkJoinPool
+     */
+    public ParameterGenerator() {
+        this(ForkJoinPool.commonPool(), 100);
+    }
+
+    /**
+     * @param pool      检测候选数的线程池
+     * @param certainty 素性检测的certainty，见{@link BigInteger#isProbablePrime}
+     */
+    public ParameterGenerator(ForkJoinPool pool, int certainty) {
+        this.pool = pool;
+        this.certainty = certainty;
+    }
+
+    /**
+     * 产生安全素数p=2q+1，q也是素数
+     *
+     * @param bits q的位数
+     * @return q, p
+     */
+    public BigInteger[] safePrime(int bits) {
+        if (bits < 32)
+            throw new IllegalArgumentException("bits < 32");
+        while (true) {
+            // 随机的bits位奇数起点，候选数q=start+2i
+            BigInteger start = new BigInteger(bits, random).setBit(bits - 1).setBit(0);
+            BitSet composite = new BitSet(INTERVAL);
+            for (int s : SMALL_PRIMES) {
+                int r = start.mod(BigInteger.valueOf(s)).intValue();
+                // q≡0 (mod s)：2i≡-r
+                mark(composite, (int) ((long) (s - r) % s * inverse(2, s) % s), s);
+                // 2q+1≡0 (mod s)：4i≡-(2r+1)
+                mark(composite, (int) ((s - (2L * r + 1) % s) % s * inverse(4, s) % s), s);
+            }
+            BigInteger q = search(composite, i -> start.add(BigInteger.valueOf(2L * i)), q1 -> {
+                if (q1.bitLength() != bits || !fermat(q1))
+                    return false;
+                BigInteger p1 = q1.shiftLeft(1).add(BigInteger.ONE);
+                return fermat(p1) && q1.isProbablePrime(certainty) && p1.isProbablePrime(certainty);
+            });
+            if (q != null)
+                return new BigInteger[]{q, q.shiftLeft(1).add(BigInteger.ONE)};
+        }
+    }
+
+    /**
+     * 产生DSA域参数
+     *
+     * @param l p的位数
+     * @param n q的位数
+     * @return p, q, g，p-1是q的倍数，g的阶为q
+     */
+    public BigInteger[] dsa(int l, int n) {
+        if (n < 32 || l <= n + 1)
+            throw new IllegalArgumentException();
+        BigInteger q = BigInteger.probablePrime(n, random);
+        while (q.bitLength() != n)
+            q = BigInteger.probablePrime(n, random);
+        BigInteger q2 = q.shiftLeft(1);
+        // p=2q*j+1为l位：j的范围[⌈(2^(l-1)-1) / 2q⌉, ⌊(2^l-2) / 2q⌋]
+        BigInteger jMin = BigInteger.ONE.shiftLeft(l - 1).subtract(BigInteger.ONE)
+                .add(q2).subtract(BigInteger.ONE).divide(q2);
+        BigInteger jMax = BigInteger.ONE.shiftLeft(l).subtract(BigInteger.TWO).divide(q2);
+        BigInteger jRange = jMax.subtract(jMin).add(BigInteger.ONE);
+        BigInteger p = null;
+        while (p == null) {
+            BigInteger j = new BigInteger(jRange.bitLength(), random);
+            while (j.compareTo(jRange) >= 0)
+                j = new BigInteger(jRange.bitLength(), random);
+            // 候选数p=start+2q*i
+            BigInteger start = q2.multiply(jMin.add(j)).add(BigInteger.ONE);
+            BitSet composite = new BitSet(INTERVAL);
+            for (int s : SMALL_PRIMES) {
+                BigInteger bs = BigInteger.valueOf(s);
+                int r = start.mod(bs).intValue();
+                int step = q2.mod(bs).intValue();
+                // p≡0 (mod s)：2q*i≡-r
+                mark(composite, (int) ((long) (s - r) % s * inverse(step, s) % s), s);
+            }
+            p = search(composite, i -> start.add(q2.multiply(BigInteger.valueOf(i))),
+                    p1 -> p1.bitLength() == l && fermat(p1) && p1.isProbablePrime(certainty));
+        }
+        // g=h^((p-1)/q) % p > 1
+        BigInteger factor = p.subtract(BigInteger.ONE).divide(q);
+        BigInteger g;
+        do {
+            BigInteger h = new BigInteger(l, random);
+            while (h.compareTo(BigInteger.ONE) <= 0 || h.compareTo(p.subtract(BigInteger.ONE)) >= 0)
+                h = new BigInteger(l, random);
+            g = h.modPow(factor, p);
+        } while (g.compareTo(BigInteger.ONE) <= 0);
+        return new BigInteger[]{p, q, g};
+    }
+
+    /**
+     * 并行检测一段候选数中未被筛掉的部分
+     *
+     * @return 第一个找到的素数，没有则为null
+     */
+    private BigInteger search(BitSet composite, Candidate candidate, Test test) {
+        int[] survivors = new int[INTERVAL - composite.cardinality()];
+        for (int i = composite.nextClearBit(0), k = 0; i < INTERVAL; i = composite.nextClearBit(i + 1))
+            survivors[k++] = i;
+        AtomicReference<BigInteger> found = new AtomicReference<>();
+        pool.invoke(new SearchTask(survivors, 0, survivors.length, candidate, test, found));
+        return found.get();
+    }
+
+    /**
+     * 检测survivors[from, to)的任务，找到结果后停止
+     */
+    private class SearchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int[] survivors;
+        private final int from;
+        private final int to;
+        private final Candidate candidate;
+        private final Test test;
+        private final AtomicReference<BigInteger> found;
+
+        SearchTask(int[] survivors, int from, int to, Candidate candidate, Test test,
+                   AtomicReference<BigInteger> found) {
+            this.survivors = survivors;
+            this.from = from;
+            this.to = to;
+            this.candidate = candidate;
+            this.test = test;
+            this.found = found;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new SearchTask(survivors, from, mid, candidate, test, found),
+                        new SearchTask(survivors, mid, to, candidate, test, found));
+                return;
+            }
+            for (int k = from; k < to && found.get() == null; k++) {
+                BigInteger c = candidate.at(survivors[k]);
+                if (test.test(c)) {
+                    found.compareAndSet(null, c);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 第i个候选数
+     */
+    private interface Candidate {
+        BigInteger at(int i);
+    }
+
+    /**
+     * 素性检测
+     */
+    private interface Test {
+        boolean test(BigInteger c);
+    }
+
+    /**
+     * 以2为底的Fermat检测，用于快速排除合数
+     */
+    private static boolean fermat(BigInteger c) {
+        return BigInteger.TWO.modPow(c.subtract(BigInteger.ONE), c).equals(BigInteger.ONE);
+    }
+
+    /**
+     * 从first开始每隔s个标记为合数
+     */
+    private static void mark(BitSet composite, int first, int s) {
+        for (int i = first; i < INTERVAL; i += s)
+            composite.set(i);
+    }
+
+    /**
+     * a在模素数s下的逆，a不是s的倍数
+     */
+    private static long inverse(long a, int s) {
+        return BigInteger.valueOf(a).modInverse(BigInteger.valueOf(s)).longValue();
+    }
+
+    /**
+     * 埃拉托斯特尼筛法
+     */
+    private static int[] smallPrimes(int bound) {
+        BitSet composite = new BitSet(bound);
+        for (int i = 3; (long) i * i < bound; i += 2)
+            if (!composite.get(i))
+                for (int j = i * i; j < bound; j += 2 * i)
+                    composite.set(j);
+        int count = 0;
+        for (int i = 3; i < bound; i += 2)
+            if (!composite.get(i))
+                count++;
+        int[] primes = new int[count];
+        for (int i = 3, k = 0; i < bound; i += 2)
+            if (!composite.get(i))
+                primes[k++] = i;
+        return primes;
+    }
+}
@@ -0,0 +1,187 @@
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 热点公钥的预计算表缓存
+ * <p>
+ * 验证时公钥y（DSA、ElGamal）或v（Schnorr）的模幂每次都从头计算。同一个公钥被查询{@link #THRESHOLD}次后，
+ * 为它构造一个{@link FixedBase}表，之后的验证与生成元一样只需要查表相乘，不需要平方。
+ * <p>
+ * 表只由达到阈值的那个线程构造一次，构造完成后写入volatile字段发布，读者不加锁，构造期间其他线程照常走普通模幂。
+ * 表的总大小不超过keycache.bytes字节，超出时淘汰最久未用的表；只计数还没有表的公钥最多keycache.keys个，
+ * 超出时清掉这些计数。keycache.threshold为0时不缓存。
+ */
+public class PublicKeyCache {
+    /**
+     * 构造预计算表前公钥需要被查询的次数
+     */
+    public static final int THRESHOLD = Integer.getInteger("keycache.threshold", 8);
+    /**
+     * 预计算表的总字节数上限
+     */
+    private static final long MAX_BYTES = Long.getLong("keycache.bytes", 64L << 20);
+    /**
+     * 最多跟踪的公钥个数
+     */
+    private static final int MAX_KEYS = Integer.getInteger("keycache.keys", 4096);
+    /**
+     * 按(y, p)跟踪的公钥
+     */
+    private static final ConcurrentHashMap<List<BigInteger>, Entry> KEYS = new ConcurrentHashMap<>();
+    /**
+     * 已构造的表的总字节数
+     */
+    private static final AtomicLong BYTES = new AtomicLong();
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+    private static final LongAdder BUILDS = new LongAdder();
+    private static final LongAdder EVICTIONS = new LongAdder();
+
+    /**
+     * 一个公钥的查询次数和预计算表
+     */
+    private static final class Entry {
+        final AtomicInteger uses = new AtomicInteger();
+        volatile FixedBase table;
+        volatile long lastUse;
+        long bytes;
+    }
+
+    private PublicKeyCache() {
+    }
+
+    /**
+     * 记录一次查询，公钥已有预计算表时返回它
+     *
+     * @param y    公钥
+     * @param p    模数
+     * @param bits 指数的最大位数
+     * @return 预计算表，还没有时为null
+     */
+    public static FixedBase lookup(BigInteger y, BigInteger p, int bits) {
+        if (THRESHOLD <= 0)
+            return null;
+        List<BigInteger> key = Arrays.asList(y, p);
+        Entry entry = KEYS.get(key);
+        if (entry == null) {
+            if (KEYS.size() >= MAX_KEYS)
+                sweep();
+            entry = KEYS.computeIfAbsent(key, k -> new Entry());
+        }
+        entry.lastUse = System.nanoTime();
+        FixedBase table = entry.table;
+        if (table != null && table.bits() >= bits) {
+            HITS.increment();
+            return table;
+        }
+        MISSES.increment();
+        // 只有恰好达到阈值的线程构造，之后的计数不再增加
+        if (table == null && entry.uses.get() < THRESHOLD && entry.uses.incrementAndGet() == THRESHOLD)
+            return build(key, entry, y, p, bits);
+        return null;
+    }
+
+    /**
+     * 构造并发布预计算表，超出总大小时淘汰最久未用的表
+     */
+    private static FixedBase build(List<BigInteger> key, Entry entry, BigInteger y, BigInteger p, int bits) {
+        // 向上取整到32位，与FixedBase.of相同
+        bits = (bits + 31) & ~31;
+        long bytes = FixedBase.bytes(p, bits, FixedBase.DEFAULT_WINDOW);
+        if (bytes > MAX_BYTES)
+            return null;
+        FixedBase table = new FixedBase(y, p, bits, FixedBase.DEFAULT_WINDOW);
+        synchronized (KEYS) {
+            // 构造期间可能已被sweep清掉
+            if (KEYS.get(key) != entry)
+                return table;
+            entry.bytes = bytes;
+            entry.table = table;
+            BUILDS.increment();
+            if (BYTES.addAndGet(bytes) > MAX_BYTES)
+                evict(entry);
+        }
+        return table;
+    }
+
+    /**
+     * 淘汰最久未用的表，直到总大小不超过上限
+     *
+     * @param keep 刚构造的表，不淘汰
+     */
+    private static void evict(Entry keep) {
+        while (BYTES.get() > MAX_BYTES) {
+            Map.Entry<List<BigInteger>, Entry> coldest = null;
+            for (Map.Entry<List<BigInteger>, Entry> e : KEYS.entrySet()) {
+                Entry v = e.getValue();
+                if (v != keep && v.table != null && (coldest == null || v.lastUse < coldest.getValue().lastUse))
+                    coldest = e;
+            }
+            if (coldest == null)
+                return;
+            KEYS.remove(coldest.getKey());
+            BYTES.addAndGet(-coldest.getValue().bytes);
+            EVICTIONS.increment();
+        }
+    }
+
+    /**
+     * 清掉还没有表的公钥的计数
+     */
+    private static void sweep() {
+        synchronized (KEYS) {
+            KEYS.values().removeIf(e -> e.table == null);
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public static void clear() {
+        synchronized (KEYS) {
+            KEYS.clear();
+            BYTES.set(0);
+        }
+    }
+
+    /**
+     * @return 使用预计算表的次数
+     */
+    public static long hits() {
+        return HITS.sum();
+    }
+
+    /**
+     * @return 没有预计算表的次数
+     */
+    public static long misses() {
+        return MISSES.sum();
+    }
+
+    /**
+     * @return 构造的表的个数
+     */
+    public static long builds() {
+        return BUILDS.sum();
+    }
+
+    /**
+     * @return 淘汰的表的个数
+     */
+    public static long evictions() {
+        return EVICTIONS.sum();
+    }
+
+    /**
+     * @return 当前表的总字节数
+     */
+    public static long bytes() {
+        return BYTES.get();
+    }
+}
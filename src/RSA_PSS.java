@@ -1,8 +1,6 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigInteger;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
-import java.util.Arrays;
 import java.util.Scanner;
 
 /**
@@ -19,7 +17,7 @@ public class RSA_PSS {
     public final static int S_LEN = 20;
 
     /**
-     * 掩码生成函数，基于SHA-1
+     * 掩码生成函数MGF1，基于SHA-1
      *
      * @param x       被掩码的字节串
      * @param maskLen 掩码的字节长度
@@ -27,32 +25,8 @@ public class RSA_PSS {
      */
     public static byte[] MGF(byte[] x, int maskLen) {
         byte[] mask = new byte[maskLen];
-        // 初始化变量
-        byte[] t = new byte[0];
-        int k = maskLen % H_LEN == 0 ? maskLen / H_LEN - 1 : maskLen / H_LEN;
-        // hash函数的输入
-        byte[] hashInput = new byte[x.length + 4];
-        // 前面始终是x
-        System.arraycopy(x, 0, hashInput, 0, x.length);
-        try {
-            MessageDigest messageDigest = MessageDigest.getInstance("SHA");
-            for (int i = 0; i <= k; i++) {
-                // hash函数的输入后4字节为i
-                System.arraycopy(intToBytes(i), 0, hashInput, x.length, 4);
-                // hash值Hash(x||i)
-                messageDigest.update(hashInput);
-                byte[] tmp = new byte[t.length + H_LEN];
-                // t=t||Hash(x||i)
-                System.arraycopy(t, 0, tmp, 0, t.length);
-                System.arraycopy(messageDigest.digest(), 0, tmp, 0, H_LEN);
-                t = tmp;
-            }
-            // mask为t的前maskLen字节
-            System.arraycopy(t, 0, mask, 0, maskLen);
-            return mask;
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
-        }
+        // mask=Hash(x||0)||Hash(x||1)||...的前maskLen字节
+        PSSCodec.get().mgf(x, 0, x.length, mask, 0, maskLen);
         return mask;
     }
 
@@ -64,42 +38,24 @@ public class RSA_PSS {
      * @return 编码后的消息
      */
     private static byte[] encode(BigInteger m, int emBits) {
-        // em的字节长度
-        int emLen = emBits % 8 == 0 ? emBits / 8 : emBits / 8 + 1;
-        byte[] em = new byte[emLen];
         try {
-            MessageDigest messageDigest = MessageDigest.getInstance("SHA");
-            messageDigest.update(toByteArray(m));
-            // m的hash值
-            byte[] mHash = messageDigest.digest();
-            // 随机生成的S_LEN字节作为盐，此处长度可能小于S_LEN字节
-            byte[] salt = toByteArray(new BigInteger(8 * S_LEN, new SecureRandom()));
-            // m'=paddind1||mHash||salt，padding1为8字节全零串
-            byte[] m2 = new byte[8 + H_LEN + S_LEN];
-            System.arraycopy(mHash, 0, m2, 8, H_LEN);
-            // ！！！salt的长度不确定，填充时要注意
-            System.arraycopy(salt, 0, m2, 8 + H_LEN + S_LEN - salt.length, salt.length);
-            messageDigest.update(m2);
-            // m'的hash值
-            byte[] h = messageDigest.digest();
-            // db=padding2||salt，padding2为emLen -S_LEN-H_LEN-2个00加01
-            byte[] db = new byte[emLen - H_LEN - 1];
-            db[emLen - S_LEN - H_LEN - 2] = 1;
-            // ！！！salt的长度不确定，填充时要注意
-            System.arraycopy(salt, 0, db, emLen - H_LEN - 1 - salt.length, salt.length);
-            // dbMask=MGF(h, emLen - H_LEN - 1)
-            byte[] dbMask = MGF(h, emLen - H_LEN - 1);
-            byte[] maskedDB = xor(db, dbMask);
-            // maskedDB的最左字节的左8 * emLen - emBits位设为0
-            maskedDB[0] = (byte) (maskedDB[0] & (0xff >> (8 * emLen - emBits)));
-            // em=maskDB||h||0xbc
-            System.arraycopy(maskedDB, 0, em, 0, emLen - H_LEN - 1);
-            System.arraycopy(h, 0, em, emLen - H_LEN - 1, H_LEN);
-            em[emLen - 1] = (byte) 0xbc;
-            return em;
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
+            return encode(Message.of(m), emBits);
+        } catch (IOException e) {
+            // 内存中的消息不会抛出IOException
+            throw new UncheckedIOException(e);
         }
+    }
+
+    /**
+     * 消息编码，消息按块读取
+     *
+     * @param m      用于签名的待编码消息
+     * @param emBits 比RSA模数n的长度小
+     * @return 编码后的消息
+     */
+    public static byte[] encode(Message m, int emBits) throws IOException {
+        byte[] em = new byte[PSSCodec.emLen(emBits)];
+        PSSCodec.get().encode(m, emBits, em, 0);
         return em;
     }
 
@@ -109,13 +65,36 @@ public class RSA_PSS {
      * @param em 编码后的消息
      * @param d  RSA私钥d
      * @param n  RSA模数n
-     * @return 签名字节串
+     * @return 签名字节串，与n的字节长度相同
      */
     public static byte[] sign(byte[] em, BigInteger d, BigInteger n) {
         // em转为无符号整数
         BigInteger m = new BigInteger(1, em);
+        long t = Metrics.start();
         BigInteger s = m.modPow(d, n);
-        return toByteArray(s);
+        Metrics.stop(Metrics.Stage.MODPOW, t);
+        return Encoding.toBytes(s, Encoding.length(n));
+    }
+
+    /**
+     * 使用CRT生成签名
+     * <p>
+     * 签名返回前用公钥e检验s^e % n=em，防止CRT计算出错时泄露p、q。
+     *
+     * @param em  编码后的消息
+     * @param key 带CRT参数的RSA私钥
+     * @return 签名字节串，与n的字节长度相同
+     */
+    public static byte[] sign(byte[] em, RSA_PrivateKey key) {
+        // em转为无符号整数
+        BigInteger m = new BigInteger(1, em);
+        long t = Metrics.start();
+        BigInteger s = key.modPow(m);
+        boolean fault = !s.modPow(key.e, key.n).equals(m.mod(key.n));
+        Metrics.stop(Metrics.Stage.MODPOW, t);
+        if (fault)
+            throw new ArithmeticException("CRT signature fault");
+        return Encoding.toBytes(s, Encoding.length(key.n));
     }
 
     /**
@@ -128,8 +107,10 @@ public class RSA_PSS {
      */
     private static byte[] decode(byte[] s, BigInteger e, BigInteger n) {
         BigInteger s2 = new BigInteger(1, s);
+        long t = Metrics.start();
         BigInteger m = s2.modPow(e, n);
-        return toByteArray(m);
+        Metrics.stop(Metrics.Stage.MODPOW, t);
+        return Encoding.toBytes(m);
     }
 
     /**
@@ -141,97 +122,24 @@ public class RSA_PSS {
      * @return 签名是否合法
      */
     public static boolean verify(BigInteger m, byte[] em1, int emBits) {
-        // em的长度
-        int emLen = emBits % 8 == 0 ? emBits / 8 : emBits / 8 + 1;
-        byte[] em = new byte[emLen];
-        if(em1.length>emLen)
-            return false;
-        // em的前几个字节可能为0，解密时会去掉，所以要将em1补充完整
-        System.arraycopy(em1, 0, em, emLen - em1.length, em1.length);
         try {
-            MessageDigest messageDigest = MessageDigest.getInstance("SHA");
-            messageDigest.update(toByteArray(m));
-            // m的hash值
-            byte[] mHsah = messageDigest.digest();
-            // 先检查长度
-            if (emLen < H_LEN + S_LEN + 2)
-                return false;
-            // em的最右字节应为0xbc
-            if (em[emLen - 1] != (byte) (0xbc))
-                return false;
-            // maskedDB等于em的左emLen - H_LEN - 1字节
-            byte[] maskedDB = new byte[emLen - H_LEN - 1];
-            System.arraycopy(em, 0, maskedDB, 0, emLen - H_LEN - 1);
-            // h为接下来的H_LEN字节
-            byte[] h = new byte[H_LEN];
-            System.arraycopy(em, emLen - H_LEN - 1, h, 0, H_LEN);
-            // maskedDB的最左字节的左8 * emLen + emBits应全为0
-            if (maskedDB[0] >> (8 - 8 * emLen + emBits) != 0)
-                return false;
-            byte[] dbMask = MGF(h, emLen - H_LEN - 1);
-            byte[] db = xor(maskedDB, dbMask);
-            // 设置db的最左字节的左8 * emLen + emBits全为0
-            db[0] = (byte) (db[0] & (0xff >> (8 * emLen - emBits)));
-            // db的最左emLen - H_LEN - S_LEN-1字节应等于padding2
-            for (int i = 0; i < emLen - H_LEN - S_LEN - 2; i++)
-                if (db[i] != 0)
-                    return false;
-            if (db[emLen - H_LEN - S_LEN - 2] != 1)
-                return false;
-            byte[] salt = new byte[S_LEN];
-            // db的最后S_LEN字节设置为盐
-            System.arraycopy(db, emLen - H_LEN - S_LEN - 1, salt, 0, S_LEN);
-            // m'=padding1||mHash||salt
-            byte[] m2 = new byte[8 + H_LEN + S_LEN];
-            System.arraycopy(mHsah, 0, m2, 8, H_LEN);
-            System.arraycopy(salt, 0, m2, 8 + H_LEN, S_LEN);
-            messageDigest.update(m2);
-            // h'Hash(m')
-            byte[] h2 = messageDigest.digest();
-            // 如果h=h'则签名合法
-            if (Arrays.equals(h, h2)) {
-                return true;
-            }
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
+            return verify(Message.of(m), em1, emBits);
+        } catch (IOException e) {
+            // 内存中的消息不会抛出IOException
+            throw new UncheckedIOException(e);
         }
-        return false;
-    }
-
-    /**
-     * int转4字节
-     */
-    private static byte[] intToBytes(int counter) {
-        byte[] b = new byte[4];
-        b[3] = (byte) (counter & 0xff);
-        b[2] = (byte) ((counter >> 8) & 0xff);
-        b[1] = (byte) ((counter >> 16) & 0xff);
-        b[0] = (byte) ((counter >> 24) & 0xff);
-        return b;
     }
 
     /**
-     * BigInteger转byte[]，去掉符号位0
-     */
-    private static byte[] toByteArray(BigInteger n) {
-        byte[] b = n.toByteArray();
-        if (b[0] == 0) {
-            byte[] result = new byte[b.length - 1];
-            System.arraycopy(b, 1, result, 0, result.length);
-            return result;
-        } else
-            return b;
-    }
-
-    /**
-     * byte数组异或
+     * em验证，消息按块读取
+     *
+     * @param m      待验证消息
+     * @param em1    签名解密后的字节串
+     * @param emBits 比RSA模数n的长度小
+     * @return 签名是否合法
      */
-    private static byte[] xor(byte[] a, byte[] b) {
-        int len = a.length;
-        byte[] result = new byte[len];
-        for (int i = 0; i < len; i++)
-            result[i] = (byte) (a[i] ^ b[i]);
-        return result;
+    public static boolean verify(Message m, byte[] em1, int emBits) throws IOException {
+        return PSSCodec.get().verify(m, em1, 0, em1.length, emBits);
     }
 
     public static void main(String[] args) {
@@ -269,7 +177,7 @@ public class RSA_PSS {
             BigInteger e = new BigInteger(scanner.next());
             System.out.print("RSA n: ");
             BigInteger n = new BigInteger(scanner.next());
-            byte[] em = decode(toByteArray(s), e, n);
+            byte[] em = decode(Encoding.toBytes(s), e, n);
             System.out.print(verify(m, em, emBits));
         }
         scanner.close();
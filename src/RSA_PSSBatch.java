@@ -0,0 +1,193 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 同一个RSA公钥下的RSA-PSS批量验证
+ * <p>
+ * 公钥(e, n)、emBits和签名的字节长度只计算一次。各项按{@link #CHUNK}条一组在ForkJoinPool上并行验证，
+ * 每个线程使用自己的{@link PSSCodec}，不再每次查找MessageDigest。结果写入boolean[]，不装箱。
+ * <p>
+ * s^e % n的最低字节不是0xbc时不再转为字节串，直接判为不合法。
+ */
+public class RSA_PSSBatch {
+    /**
+     * 每个任务验证的条数，可以用系统属性rsabatch.chunk修改
+     */
+    public static final int CHUNK = Math.max(1, Integer.getInteger("rsabatch.chunk", 64));
+    private final BigInteger e;
+    private final BigInteger n;
+    private final int emBits;
+    /**
+     * n的字节长度，更长的签名不合法
+     */
+    private final int length;
+
+    /**
+     * @param e RSA公钥e
+     * @param n RSA模数n
+     */
+    public RSA_PSSBatch(BigInteger e, BigInteger n) {
+        if (e.signum() <= 0 || n.signum() <= 0)
+            throw new IllegalArgumentException("invalid public key");
+        this.e = e;
+        this.n = n;
+        this.emBits = n.bitLength() - 1;
+        this.length = Encoding.length(n);
+    }
+
+    /**
+     * 验证一个签名
+     *
+     * @param m 消息
+     * @param s 签名字节串，前导0可以省略
+     * @return 签名是否合法
+     */
+    public boolean verify(Message m, byte[] s) throws IOException {
+        byte[] em = decode(s);
+        if (em == null)
+            return false;
+        // toByteArray()可能多一个符号字节，跳过而不复制
+        int off = em[0] == 0 ? 1 : 0;
+        return PSSCodec.get().verify(m, em, off, em.length - off, emBits);
+    }
+
+    /**
+     * 验证一个签名，消息摘要已经计算
+     *
+     * @param mHash 消息的SHA-1摘要
+     * @param s     签名字节串
+     * @param codec 调用者的PSSCodec
+     */
+    boolean verifyDigest(byte[] mHash, byte[] s, PSSCodec codec) {
+        byte[] em = decode(s);
+        if (em == null)
+            return false;
+        int off = em[0] == 0 ? 1 : 0;
+        return codec.verifyDigest(mHash, em, off, em.length - off, emBits);
+    }
+
+    /**
+     * @return s^e % n的toByteArray()，签名不在[0, n)内或者最低字节不是0xbc时为null
+     */
+    private byte[] decode(byte[] s) {
+        if (s.length == 0 || s.length > length)
+            return null;
+        BigInteger x = new BigInteger(1, s);
+        if (x.compareTo(n) >= 0)
+            return null;
+        long t = Metrics.start();
+        BigInteger y = x.modPow(e, n);
+        Metrics.stop(Metrics.Stage.MODPOW, t);
+        // em的最右字节应为0xbc
+        if ((y.intValue() & 0xff) != 0xbc)
+            return null;
+        return y.toByteArray();
+    }
+
+    /**
+     * 并行验证全部签名
+     *
+     * @param messages   消息
+     * @param signatures 签名，与消息一一对应
+     * @return 每个签名是否合法
+     */
+    public boolean[] verify(List<Message> messages, List<byte[]> signatures) throws IOException {
+        if (messages.size() != signatures.size())
+            throw new IllegalArgumentException("messages and signatures differ in size");
+        boolean[] result = new boolean[messages.size()];
+        try {
+            ForkJoinPool.commonPool().invoke(new Range(messages, signatures, result, 0, result.length));
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        return result;
+    }
+
+    /**
+     * 并行验证，全部合法时返回true
+     */
+    public boolean verifyAll(List<Message> messages, List<byte[]> signatures) throws IOException {
+        for (boolean valid : verify(messages, signatures))
+            if (!valid)
+                return false;
+        return true;
+    }
+
+    /**
+     * 验证[from, to)，多于{@link #CHUNK}条时分成两半
+     */
+    private class Range extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final List<Message> messages;
+        private final List<byte[]> signatures;
+        private final boolean[] result;
+        private final int from, to;
+
+        Range(List<Message> messages, List<byte[]> signatures, boolean[] result, int from, int to) {
+            this.messages = messages;
+            this.signatures = signatures;
+            this.result = result;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > CHUNK) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Range(messages, signatures, result, from, mid),
+                        new Range(messages, signatures, result, mid, to));
+                return;
+            }
+            try {
+                for (int i = from; i < to; i++)
+                    result[i] = verify(messages.get(i), signatures.get(i));
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+
+    /**
+     * 与{@link RSA_PSS}逐个验证的结果比较，并比较两者的速度
+     */
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        RSA_PrivateKey key = RSA_PrivateKey.generateKey(2048);
+        int emBits = key.n.bitLength() - 1;
+        List<Message> messages = new ArrayList<>();
+        List<byte[]> signatures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Message m = Message.of(("message " + i).getBytes(StandardCharsets.US_ASCII));
+            byte[] s = RSA_PSS.sign(RSA_PSS.encode(m, emBits), key);
+            // 每7条篡改一条
+            if (i % 7 == 3)
+                s[s.length - 1] ^= 1;
+            messages.add(m);
+            signatures.add(s);
+        }
+        RSA_PSSBatch batch = new RSA_PSSBatch(key.e, key.n);
+        for (int round = 0; round < 3; round++) {
+            long t0 = System.nanoTime();
+            boolean[] expected = new boolean[count];
+            for (int i = 0; i < count; i++) {
+                byte[] em = Encoding.toBytes(new BigInteger(1, signatures.get(i)).modPow(key.e, key.n));
+                expected[i] = RSA_PSS.verify(messages.get(i), em, emBits);
+            }
+            long t1 = System.nanoTime();
+            boolean[] result = batch.verify(messages, signatures);
+            long t2 = System.nanoTime();
+            for (int i = 0; i < count; i++)
+                if (result[i] != expected[i] || result[i] == (i % 7 == 3))
+                    throw new AssertionError("mismatch at " + i);
+            System.out.printf("%d signatures: sequential %.1f us, batch %.1f us per signature%n",
+                    count, (t1 - t0) / 1e3 / count, (t2 - t1) / 1e3 / count);
+        }
+    }
+}
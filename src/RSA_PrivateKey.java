@@ -0,0 +1,101 @@
+import java.math.BigInteger;
+import java.security.SecureRandom;
+
+/**
+ * 带CRT参数的RSA私钥
+ * <p>
+ * 签名时分别在模p和模q下做一半长度的模幂，再用CRT合并，比直接m^d % n快3到4倍。
+ */
+public class RSA_PrivateKey {
+    /**
+     * 默认公钥e
+     */
+    public static final BigInteger DEFAULT_E = BigInteger.valueOf(65537);
+
+    /**
+     * 模数n=p*q
+     */
+    public final BigInteger n;
+    /**
+     * 公钥e
+     */
+    public final BigInteger e;
+    /**
+     * 私钥d=e^(-1) % lcm(p-1, q-1)
+     */
+    public final BigInteger d;
+    public final BigInteger p;
+    public final BigInteger q;
+    /**
+     * dP=d % (p-1)
+     */
+    public final BigInteger dP;
+    /**
+     * dQ=d % (q-1)
+     */
+    public final BigInteger dQ;
+    /**
+     * qInv=q^(-1) % p
+     */
+    public final BigInteger qInv;
+
+    /**
+     * 由素数p, q和公钥e构造私钥
+     *
+     * @param p 素数p
+     * @param q 素数q，不等于p
+     * @param e 公钥e，与p-1和q-1互素
+     */
+    public RSA_PrivateKey(BigInteger p, BigInteger q, BigInteger e) {
+        if (p.equals(q))
+            throw new IllegalArgumentException("p == q");
+        BigInteger p1 = p.subtract(BigInteger.ONE);
+        BigInteger q1 = q.subtract(BigInteger.ONE);
+        // lcm(p-1, q-1)
+        BigInteger lambda = p1.divide(p1.gcd(q1)).multiply(q1);
+        this.n = p.multiply(q);
+        this.e = e;
+        this.d = e.modInverse(lambda);
+        this.p = p;
+        this.q = q;
+        this.dP = d.mod(p1);
+        this.dQ = d.mod(q1);
+        this.qInv = q.modInverse(p);
+    }
+
+    /**
+     * 生成RSA私钥，e=65537
+     *
+     * @param bits 模数n的位数
+     * @return 私钥
+     */
+    public static RSA_PrivateKey generateKey(int bits) {
+        SecureRandom random = NonceSource.random();
+        while (true) {
+            BigInteger p = BigInteger.probablePrime(bits - bits / 2, random);
+            BigInteger q = BigInteger.probablePrime(bits / 2, random);
+            // n为bits位，p-1和q-1与e互素
+            if (p.equals(q) || p.multiply(q).bitLength() != bits
+                    || !p.subtract(BigInteger.ONE).gcd(DEFAULT_E).equals(BigInteger.ONE)
+                    || !q.subtract(BigInteger.ONE).gcd(DEFAULT_E).equals(BigInteger.ONE))
+                continue;
+            return new RSA_PrivateKey(p, q, DEFAULT_E);
+        }
+    }
+
+    /**
+     * CRT模幂
+     *
+     * @param c 0<=c<n
+     * @return c^d % n
+     */
+    public BigInteger modPow(BigInteger c) {
+        // m1=c^dP % p, m2=c^dQ % q
+        BigInteger m1 = c.mod(p).modPow(dP, p);
+        BigInteger m2 = c.mod(q).modPow(dQ, q);
+        // h=qInv * (m1-m2) % p
+        BigInteger h = qInv.multiply(m1.subtract(m2)).mod(p);
+        // m=m2+h*q
+        return m2.add(h.multiply(q));
+    }
+}
@@ -1,7 +1,9 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
 import java.util.Scanner;
 
 /**
@@ -9,38 +11,52 @@ import java.util.Scanner;
  */
 public class Schnorr {
     /**
-     * 产生密钥
+     * 产生密钥，使用内置的dsa-1024-160参数
      *
      * @return 全局公钥参数α, p, q，私钥s，公钥v
      */
     public static BigInteger[] generateKey() {
-        SecureRandom qRandom = new SecureRandom();
-        // 160位素数q
-        BigInteger q = BigInteger.probablePrime(160, qRandom);
-        SecureRandom kRandom = new SecureRandom();
-        // p-1=kq
-        BigInteger k = new BigInteger(864, kRandom);
-        BigInteger p = q.multiply(k).add(BigInteger.ONE);
-        // p为1024位素数
-        while (!p.isProbablePrime(7)) {
-            k = new BigInteger(864, kRandom);
-            p = q.multiply(k).add(BigInteger.ONE);
-        }
-        //x^(p-1)≡1(mod p)
-        //而p-1=kq
-        //所以(x^k)^q≡1(mod p)
-        BigInteger x = new BigInteger(1024, new SecureRandom());
-        // α^q≡1(mod p)
-        BigInteger a = x.modPow(k, p);
-        SecureRandom sRandom = new SecureRandom();
-        BigInteger s = new BigInteger(160, sRandom);
+        return generateKey("dsa-1024-160");
+    }
+
+    /**
+     * 使用注册的域参数产生密钥，只选取私钥
+     *
+     * @param group 参数名，见{@link DomainParameters}
+     * @return 全局公钥参数α, p, q，私钥s，公钥v
+     */
+    public static BigInteger[] generateKey(String group) {
+        // p-1=kq，α的阶为q，即α^q≡1(mod p)
+        BigInteger[] g = DomainParameters.get(group);
+        BigInteger p = g[0];
+        BigInteger q = g[1];
+        BigInteger a = g[2];
+        int n = q.bitLength();
         // s为0<s<q的随机数
-        while (s.compareTo(q) >= 0)
-            s = new BigInteger(160, sRandom);
-        BigInteger v = a.modInverse(p).modPow(s, p);
+        BigInteger s = NonceSource.uniform(BigInteger.ONE, q);
+        // v=α^(-s)=α^(q-s) % p
+        BigInteger v = FixedBase.of(a, p, n).pow(q.subtract(s));
         return new BigInteger[]{a, p, q, s, v};
     }
 
+    /**
+     * 产生签名用的随机数，与消息无关，可以预先计算
+     *
+     * @param a 全局公钥α
+     * @param p 全局公钥p
+     * @param q 全局公钥q
+     * @return r, x=α^r % p
+     */
+    public static NoncePool.Nonce nonce(BigInteger a, BigInteger p, BigInteger q) {
+        long t = Metrics.start();
+        // r为0<r<q的随机数
+        BigInteger r = NonceSource.uniform(BigInteger.ONE, q);
+        // x=α^r % p
+        BigInteger x = FixedBase.of(a, p, q.bitLength()).pow(r);
+        Metrics.stop(Metrics.Stage.NONCE, t);
+        return new NoncePool.Nonce(r, x, null);
+    }
+
     /**
      * 签名
      *
@@ -52,22 +68,87 @@ public class Schnorr {
      * @return 签名e, y
      */
     public static BigInteger[] sign(BigInteger m, BigInteger a, BigInteger p, BigInteger q, BigInteger s) {
-        BigInteger[] signature = new BigInteger[2];
-        SecureRandom secureRandom = new SecureRandom();
-        BigInteger r = new BigInteger(160, secureRandom);
-        // r为0<r<q的随机数
-        while (r.compareTo(q) >= 0)
-            r = new BigInteger(160, secureRandom);
+        try {
+            return sign(Message.of(m), a, p, q, s);
+        } catch (IOException e) {
+            // 内存中的消息不会抛出IOException
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 签名，消息按块读取
+     *
+     * @param m 消息
+     * @param a 全局公钥α
+     * @param p 全局公钥p
+     * @param q 全局公钥q
+     * @param s 私钥s
+     * @return 签名e, y
+     */
+    public static BigInteger[] sign(Message m, BigInteger a, BigInteger p, BigInteger q, BigInteger s)
+            throws IOException {
+        if (NonceSource.DETERMINISTIC)
+            return signDeterministic(m, a, p, q, s);
+        return sign(m, q, s, nonce(a, p, q));
+    }
+
+    /**
+     * 签名，r按RFC 6979由私钥和消息摘要确定
+     * <p>
+     * e=H(m||x)依赖于r，所以消息要读两遍：一遍计算产生r用的SHA-1(m)，一遍计算e。
+     *
+     * @param m 消息
+     * @param a 全局公钥α
+     * @param p 全局公钥p
+     * @param q 全局公钥q
+     * @param s 私钥s
+     * @return 签名e, y
+     */
+    public static BigInteger[] signDeterministic(Message m, BigInteger a, BigInteger p, BigInteger q, BigInteger s)
+            throws IOException {
+        long t = Metrics.start();
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("SHA");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        m.update(messageDigest);
+        byte[] h = messageDigest.digest();
+        Metrics.stop(Metrics.Stage.HASH, t);
+        t = Metrics.start();
+        BigInteger r = new NonceSource.Deterministic(s, q, h).next();
         // x=α^r % p
-        BigInteger x = a.modPow(r, p);
+        BigInteger x = FixedBase.of(a, p, q.bitLength()).pow(r);
+        Metrics.stop(Metrics.Stage.NONCE, t);
+        return sign(m, q, s, new NoncePool.Nonce(r, x, null));
+    }
+
+    /**
+     * 使用预计算的随机数签名
+     *
+     * @param m    消息
+     * @param q    全局公钥q
+     * @param s    私钥s
+     * @param pool 由{@link #nonce}产生随机数的池，域参数与私钥s一致
+     * @return 签名e, y
+     */
+    public static BigInteger[] sign(Message m, BigInteger q, BigInteger s, NoncePool pool) throws IOException {
+        return sign(m, q, s, pool.take());
+    }
+
+    /**
+     * 签名，随机数已经产生
+     */
+    private static BigInteger[] sign(Message m, BigInteger q, BigInteger s, NoncePool.Nonce nonce)
+            throws IOException {
+        BigInteger[] signature = new BigInteger[2];
+        BigInteger r = nonce.k;
+        BigInteger x = nonce.commitment;
         try {
-            // hash
-            MessageDigest messageDigest = MessageDigest.getInstance("SHA");
-            // hash输入为m||x
-            byte[] hashInput = toByteArray(m.shiftLeft(x.bitLength()).add(x));
-            messageDigest.update(hashInput);
             // 计算hash值e=H(m||x)
-            signature[0] = new BigInteger(1, messageDigest.digest());
+            signature[0] = hash(m, x);
             // y=r+se % q
             signature[1] = r.add(s.multiply(signature[0])).mod(q);
             return signature;
@@ -79,6 +160,9 @@ public class Schnorr {
 
     /**
      * 验证签名
+     * <p>
+     * q从{@link DomainParameters}中按p, α查找，找不到时不使用预计算表，见{@link #verify(Message, BigInteger[],
+     * BigInteger, BigInteger, BigInteger)}。
      *
      * @param m         消息
      * @param signature 签名e,y
@@ -88,35 +172,329 @@ public class Schnorr {
      * @return 签名是否合法
      */
     public static boolean verify(BigInteger m, BigInteger[] signature, BigInteger a, BigInteger p, BigInteger v) {
+        try {
+            return verify(Message.of(m), signature, a, p, v);
+        } catch (IOException e) {
+            // 内存中的消息不会抛出IOException
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 验证签名
+     *
+     * @param m         消息
+     * @param signature 签名e,y
+     * @param a         全局公钥α
+     * @param p         全局公钥p
+     * @param q         全局公钥q
+     * @param v         公钥v
+     * @return 签名是否合法
+     */
+    public static boolean verify(BigInteger m, BigInteger[] signature, BigInteger a, BigInteger p, BigInteger q,
+                                 BigInteger v) {
+        try {
+            return verify(Message.of(m), signature, a, p, q, v);
+        } catch (IOException e) {
+            // 内存中的消息不会抛出IOException
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 验证签名，消息按块读取
+     * <p>
+     * q从{@link DomainParameters}中按p, α查找。参数没有注册时不知道q，y只能以p为上界，
+     * 此时直接用modPow计算，不建立按p的位数的预计算表，也不替换缓存中按q建立的表。
+     *
+     * @param m         消息
+     * @param signature 签名e,y
+     * @param a         全局公钥α
+     * @param p         全局公钥p
+     * @param v         公钥v
+     * @return 签名是否合法
+     */
+    public static boolean verify(Message m, BigInteger[] signature, BigInteger a, BigInteger p, BigInteger v)
+            throws IOException {
+        BigInteger q = DomainParameters.order(p, a);
+        if (q != null)
+            return verify(m, signature, a, p, q, v);
+        if (!inRange(signature, p))
+            return false;
         // x'=α^y * v^e % p
+        long t = Metrics.start();
         BigInteger x = a.modPow(signature[1], p).multiply(v.modPow(signature[0], p)).mod(p);
+        Metrics.stop(Metrics.Stage.MODPOW, t);
+        return matches(m, signature[0], x);
+    }
+
+    /**
+     * 验证签名，消息按块读取
+     * <p>
+     * e不在[0, 2^160)或y不在[0, q)时直接判为不合法，预计算表的大小只由q决定，不受签名影响。
+     *
+     * @param m         消息
+     * @param signature 签名e,y
+     * @param a         全局公钥α
+     * @param p         全局公钥p
+     * @param q         全局公钥q
+     * @param v         公钥v
+     * @return 签名是否合法
+     */
+    public static boolean verify(Message m, BigInteger[] signature, BigInteger a, BigInteger p, BigInteger q,
+                                 BigInteger v) throws IOException {
+        if (!inRange(signature, q))
+            return false;
+        // x'=α^y * v^e % p
+        long t = Metrics.start();
+        BigInteger x = MultiExp.pow(FixedBase.of(a, p, q.bitLength()), signature[1], v, signature[0]);
+        Metrics.stop(Metrics.Stage.MODPOW, t);
+        return matches(m, signature[0], x);
+    }
+
+    /**
+     * 计算hash=H(m||x')，与签名e比较
+     */
+    private static boolean matches(Message m, BigInteger e, BigInteger x) throws IOException {
         try {
-            // hash
-            MessageDigest messageDigest = MessageDigest.getInstance("SHA");
-            // hash输入为m||x'
-            byte[] hashInput = toByteArray(m.shiftLeft(x.bitLength()).add(x));
-            messageDigest.update(hashInput);
-            // 计算hash=H(m||x')
-            BigInteger h = new BigInteger(1, messageDigest.digest());
+            BigInteger h = hash(m, x);
             // 签名e与hash相同则合法
-            return h.equals(signature[0]);
+            long t = Metrics.start();
+            boolean valid = h.equals(e);
+            Metrics.stop(Metrics.Stage.COMPARE, t);
+            return valid;
+        } catch (NoSuchAlgorithmException ex) {
+            ex.printStackTrace();
+        }
+        return true;
+    }
+
+    /**
+     * 签名e, y的范围：e为SHA-1的值，0&lt;=e&lt;2^160，0&lt;=y&lt;q
+     */
+    static boolean inRange(BigInteger[] signature, BigInteger q) {
+        return signature != null && signature.length == 2 && signature[0] != null && signature[1] != null
+                && signature[0].signum() >= 0 && signature[0].bitLength() <= 160
+                && signature[1].signum() >= 0 && signature[1].compareTo(q) < 0;
+    }
+
+    /**
+     * 带承诺x的签名，用于批量验证
+     *
+     * @param m 消息
+     * @param a 全局公钥α
+     * @param p 全局公钥p
+     * @param q 全局公钥q
+     * @param s 私钥s
+     * @return 签名x, y，其中e=H(m||x)可以由m和x重新计算
+     */
+    public static BigInteger[] signWithCommitment(BigInteger m, BigInteger a, BigInteger p, BigInteger q, BigInteger s) {
+        BigInteger[] signature = new BigInteger[2];
+        NoncePool.Nonce nonce = nonce(a, p, q);
+        BigInteger r = nonce.k;
+        BigInteger x = nonce.commitment;
+        try {
+            // e=H(m||x)
+            BigInteger e = hash(m, x);
+            signature[0] = x;
+            // y=r+se % q
+            signature[1] = r.add(s.multiply(e)).mod(q);
+            return signature;
         } catch (NoSuchAlgorithmException e) {
             e.printStackTrace();
         }
-        return true;
+        return signature;
     }
 
     /**
-     * BigInteger转byte[]，去掉符号位0
+     * 验证带承诺x的签名
+     * <p>
+     * q从{@link DomainParameters}中按p, α查找，找不到时y只能以p为上界，直接用modPow计算，不建立预计算表。
+     *
+     * @param m         消息
+     * @param signature 签名x,y
+     * @param a         全局公钥α
+     * @param p         全局公钥p
+     * @param v         公钥v
+     * @return 签名是否合法
      */
-    private static byte[] toByteArray(BigInteger n) {
-        byte[] b = n.toByteArray();
-        if (b[0] == 0) {
-            byte[] result = new byte[b.length - 1];
-            System.arraycopy(b, 1, result, 0, result.length);
-            return result;
-        } else
-            return b;
+    public static boolean verifyWithCommitment(BigInteger m, BigInteger[] signature, BigInteger a, BigInteger p,
+                                               BigInteger v) {
+        BigInteger q = DomainParameters.order(p, a);
+        if (q != null)
+            return verifyWithCommitment(m, signature, a, p, q, v);
+        if (!commitmentInRange(signature, p, p))
+            return false;
+        try {
+            BigInteger x = signature[0], y = signature[1];
+            // α^y * v^e % p应等于x
+            return a.modPow(y, p).multiply(v.modPow(hash(m, x), p)).mod(p).equals(x);
+        } catch (NoSuchAlgorithmException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * 验证带承诺x的签名，0&lt;x&lt;p，0&lt;=y&lt;q
+     *
+     * @param m         消息
+     * @param signature 签名x,y
+     * @param a         全局公钥α
+     * @param p         全局公钥p
+     * @param q         全局公钥q
+     * @param v         公钥v
+     * @return 签名是否合法
+     */
+    public static boolean verifyWithCommitment(BigInteger m, BigInteger[] signature, BigInteger a, BigInteger p,
+                                               BigInteger q, BigInteger v) {
+        if (!commitmentInRange(signature, p, q))
+            return false;
+        BigInteger x = signature[0], y = signature[1];
+        try {
+            // e=H(m||x)
+            BigInteger e = hash(m, x);
+            // α^y * v^e % p应等于x
+            return MultiExp.pow(FixedBase.of(a, p, q.bitLength()), y, v, e).equals(x);
+        } catch (NoSuchAlgorithmException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * 带承诺的签名x, y的范围：0&lt;x&lt;p，0&lt;=y&lt;q
+     */
+    private static boolean commitmentInRange(BigInteger[] signature, BigInteger p, BigInteger q) {
+        return signature != null && signature.length == 2 && signature[0] != null && signature[1] != null
+                && signature[0].signum() > 0 && signature[0].compareTo(p) < 0
+                && signature[1].signum() >= 0 && signature[1].compareTo(q) < 0;
+    }
+
+    /**
+     * 计算H(m||x)
+     */
+    static BigInteger hash(BigInteger m, BigInteger x) throws NoSuchAlgorithmException {
+        try {
+            return hash(Message.of(m), x);
+        } catch (IOException e) {
+            // 内存中的消息不会抛出IOException
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 计算H(m||x)，hash输入为m||x
+     */
+    static BigInteger hash(Message m, BigInteger x) throws NoSuchAlgorithmException, IOException {
+        long t = Metrics.start();
+        Concat concat = new Concat(MessageDigest.getInstance("SHA"), x.bitLength());
+        m.update(concat);
+        BigInteger h = concat.hash(x);
+        Metrics.stop(Metrics.Stage.HASH, t);
+        return h;
+    }
+
+    /**
+     * 把m||x按位拼接后送入摘要
+     * <p>
+     * 消息字节整体左移x.bitLength()位再加上x，与toByteArray(m.shiftLeft(x.bitLength()).add(x))的结果相同，
+     * 但不需要构造拼接后的整数。x.bitLength()不是8的倍数时，每个消息字节要和下一个字节拼出一个输出字节。
+     */
+    static class Concat extends MessageDigest {
+        private final MessageDigest digest;
+        /**
+         * 左移位数模8
+         */
+        private int t;
+        /**
+         * 还没有输出的上一个消息字节，-1表示还没有消息字节
+         */
+        private int pending = -1;
+        private final byte[] out = new byte[Message.BUFFER_SIZE];
+
+        Concat(MessageDigest digest, int xBits) {
+            super(digest.getAlgorithm());
+            this.digest = digest;
+            this.t = xBits & 7;
+        }
+
+        @Override
+        protected void engineUpdate(byte input) {
+            engineUpdate(new byte[]{input}, 0, 1);
+        }
+
+        @Override
+        protected void engineUpdate(byte[] input, int offset, int len) {
+            if (t == 0) {
+                digest.update(input, offset, len);
+                return;
+            }
+            int n = 0;
+            for (int i = offset; i < offset + len; i++) {
+                int c = input[i] & 0xff;
+                if (pending >= 0)
+                    out[n++] = (byte) (pending << t | c >>> (8 - t));
+                else if (c >>> (8 - t) != 0)
+                    // 最高的t位为0时省略，与BigInteger的最短表示一致
+                    out[n++] = (byte) (c >>> (8 - t));
+                pending = c;
+                if (n == out.length) {
+                    digest.update(out, 0, n);
+                    n = 0;
+                }
+            }
+            digest.update(out, 0, n);
+        }
+
+        @Override
+        protected void engineUpdate(ByteBuffer input) {
+            if (t == 0) {
+                digest.update(input);
+                return;
+            }
+            byte[] buffer = new byte[Math.min(input.remaining(), Message.BUFFER_SIZE)];
+            while (input.hasRemaining()) {
+                int n = Math.min(input.remaining(), buffer.length);
+                input.get(buffer, 0, n);
+                engineUpdate(buffer, 0, n);
+            }
+        }
+
+        /**
+         * 送入x并计算hash
+         */
+        BigInteger hash(BigInteger x) {
+            int xBytes = x.bitLength() >>> 3;
+            if (t != 0) {
+                // x的最高t位与最后一个消息字节拼成一个字节
+                int high = x.shiftRight(8 * xBytes).intValue();
+                digest.update((byte) (pending >= 0 ? pending << t | high : high));
+            }
+            // x的低xBytes字节
+            byte[] b = x.toByteArray();
+            digest.update(b, b.length - xBytes, xBytes);
+            return new BigInteger(1, digest.digest());
+        }
+
+        @Override
+        protected byte[] engineDigest() {
+            return digest.digest();
+        }
+
+        @Override
+        protected void engineReset() {
+            digest.reset();
+            pending = -1;
+        }
+
+        /**
+         * 清空后改为拼接xBits位的x，可以重复使用同一个实例
+         */
+        void reset(int xBits) {
+            reset();
+            t = xBits & 7;
+        }
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,237 @@
+import java.math.BigInteger;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Schnorr签名批量验证
+ * <p>
+ * 签名使用{@link Schnorr#signWithCommitment}产生的(x, y)形式，单个签名满足x=α^y * v^e % p，e=H(m||x)。
+ * 对n个签名随机选取64位系数c_i，检验
+ * <pre>
+ * Π x_i^(c_i) ≡ α^(Σc_i*y_i) * Π v_i^(c_i*e_i) (mod p)
+ * </pre>
+ * 左边是n个底数、64位指数的{@link MultiExp}，右边α用预计算表，同一公钥的项合并为一个底数。
+ * 若有不合法的签名，等式成立的概率约为2^(-64)。
+ * 批量检验失败时二分查找不合法的签名。
+ * <p>
+ * α和公钥v的指数在模q下取负，要求公钥v属于α生成的q阶子群，即由{@link Schnorr#generateKey}产生。
+ * 承诺x_i由签名者提供，要先检查x_i属于q阶子群：不在子群中的x_i（如p-X）单个验证一定失败，
+ * 在随机线性组合中却可能以1/2的概率被抵消，不检查时批量验证与单个验证的结果会不一致。
+ * y_i不在[0, q)内、有null分量的项直接判为不合法，预计算表的大小只由q决定。
+ * <p>
+ * 子群检查的代价决定批量验证是否更快：
+ * <ul>
+ * <li>p=2q+1（modpN、ffdheN）时q阶子群就是二次剩余，用Jacobi符号检查，代价远小于一次模幂，批量验证比逐个验证快</li>
+ * <li>其他参数（如dsa-L-N）只能计算x_i^q % p，每项多一次q位的模幂，与单个验证的代价相当，
+ * 批量验证不比逐个{@link Schnorr#verifyWithCommitment}快，只保证结果与之一致</li>
+ * </ul>
+ */
+public class SchnorrBatch {
+    /**
+     * 随机系数c_i的位数
+     */
+    private static final int C_BITS = 64;
+    /**
+     * 二分到这个大小以下时逐个验证
+     */
+    private static final int SINGLE_MAX = 2;
+
+    /**
+     * 批量验证的一项
+     */
+    public static class Entry {
+        /**
+         * 消息
+         */
+        public final BigInteger m;
+        /**
+         * 签名x, y
+         */
+        public final BigInteger[] signature;
+        /**
+         * 公钥v
+         */
+        public final BigInteger v;
+
+        public Entry(BigInteger m, BigInteger[] signature, BigInteger v) {
+            this.m = m;
+            this.signature = signature;
+            this.v = v;
+        }
+    }
+
+    private SchnorrBatch() {
+    }
+
+    /**
+     * 批量验证全部签名
+     *
+     * @param entries 消息、签名、公钥
+     * @param a       全局公钥α
+     * @param p       全局公钥p
+     * @param q       全局公钥q
+     * @return 全部签名是否合法
+     */
+    public static boolean verifyAll(List<Entry> entries, BigInteger a, BigInteger p, BigInteger q) {
+        BigInteger[] e = hashes(entries, p, q);
+        if (e == null)
+            return false;
+        for (BigInteger h : e)
+            if (h == null)
+                return false;
+        return batch(entries, e, 0, entries.size(), a, p, q, NonceSource.random());
+    }
+
+    /**
+     * 批量验证，找出不合法的签名
+     *
+     * @param entries 消息、签名、公钥
+     * @param a       全局公钥α
+     * @param p       全局公钥p
+     * @param q       全局公钥q
+     * @return 每个签名是否合法
+     */
+    public static boolean[] verify(List<Entry> entries, BigInteger a, BigInteger p, BigInteger q) {
+        boolean[] result = new boolean[entries.size()];
+        BigInteger[] e = hashes(entries, p, q);
+        if (e == null)
+            return result;
+        bisect(entries, e, 0, entries.size(), a, p, q, NonceSource.random(), result);
+        return result;
+    }
+
+    /**
+     * 检验[from, to)，失败时分成两半分别检验
+     */
+    private static void bisect(List<Entry> entries, BigInteger[] e, int from, int to,
+                               BigInteger a, BigInteger p, BigInteger q, SecureRandom random, boolean[] result) {
+        if (to - from <= SINGLE_MAX) {
+            for (int i = from; i < to; i++)
+                result[i] = e[i] != null && single(entries.get(i), e[i], a, p, q);
+            return;
+        }
+        if (batch(entries, e, from, to, a, p, q, random)) {
+            for (int i = from; i < to; i++)
+                result[i] = true;
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        bisect(entries, e, from, mid, a, p, q, random, result);
+        bisect(entries, e, mid, to, a, p, q, random, result);
+    }
+
+    /**
+     * 对[from, to)做一次随机线性组合检验：Π x_i^(c_i) ≡ α^(Σc_i*y_i % q) * Π v_i^(c_i*e_i % q) (mod p)
+     * <p>
+     * 两边分开计算，v_i的指数c_i*e_i不取负，位数不超过min(64+160, q的位数)。
+     * 同一公钥的指数先合并，热点公钥用{@link PublicKeyCache}的预计算表。
+     */
+    private static boolean batch(List<Entry> entries, BigInteger[] e, int from, int to,
+                                 BigInteger a, BigInteger p, BigInteger q, SecureRandom random) {
+        int n = to - from;
+        if (n == 0)
+            return true;
+        for (int i = from; i < to; i++)
+            if (e[i] == null)
+                return false;
+        BigInteger[] xs = new BigInteger[n];
+        BigInteger[] cs = new BigInteger[n];
+        // 每个公钥v的Σc_i*e_i
+        Map<BigInteger, BigInteger> keys = new HashMap<>();
+        // sum=Σc_i*y_i
+        BigInteger sum = BigInteger.ZERO;
+        for (int i = 0; i < n; i++) {
+            Entry entry = entries.get(from + i);
+            BigInteger c = new BigInteger(C_BITS, random);
+            sum = sum.add(c.multiply(entry.signature[1]));
+            xs[i] = entry.signature[0];
+            cs[i] = c;
+            keys.merge(entry.v, c.multiply(e[from + i]), BigInteger::add);
+        }
+        FixedBase fixedBase = FixedBase.of(a, p, q.bitLength());
+        Barrett barrett = fixedBase.barrett();
+        BigInteger right = fixedBase.pow(sum.mod(q));
+        BigInteger[] vs = new BigInteger[keys.size()];
+        BigInteger[] exps = new BigInteger[keys.size()];
+        int k = 0;
+        for (Map.Entry<BigInteger, BigInteger> key : keys.entrySet()) {
+            BigInteger exp = key.getValue().mod(q);
+            FixedBase hot = PublicKeyCache.lookup(key.getKey(), p, fixedBase.bits());
+            if (hot != null) {
+                right = barrett.multiply(right, hot.pow(exp));
+            } else {
+                vs[k] = key.getKey();
+                exps[k++] = exp;
+            }
+        }
+        right = barrett.multiply(right, MultiExp.pow(Arrays.copyOf(vs, k), Arrays.copyOf(exps, k), barrett));
+        return MultiExp.pow(xs, cs, barrett).equals(right);
+    }
+
+    /**
+     * 单个签名验证，e已经计算过
+     */
+    private static boolean single(Entry entry, BigInteger e, BigInteger a, BigInteger p, BigInteger q) {
+        return MultiExp.pow(FixedBase.of(a, p, q.bitLength()), entry.signature[1], entry.v, e)
+                .equals(entry.signature[0]);
+    }
+
+    /**
+     * 计算每项的e=H(m||x)，有null分量、x不在[1, p-1]内或不属于q阶子群、y不在[0, q)内的项为null
+     *
+     * @return 各项的e，hash算法不可用时为null
+     */
+    private static BigInteger[] hashes(List<Entry> entries, BigInteger p, BigInteger q) {
+        BigInteger[] e = new BigInteger[entries.size()];
+        boolean safePrime = q.shiftLeft(1).add(BigInteger.ONE).equals(p);
+        try {
+            for (int i = 0; i < e.length; i++) {
+                Entry entry = entries.get(i);
+                if (entry == null || entry.m == null || entry.v == null
+                        || entry.signature == null || entry.signature.length != 2)
+                    continue;
+                BigInteger x = entry.signature[0], y = entry.signature[1];
+                if (x == null || y == null)
+                    continue;
+                if (x.signum() > 0 && x.compareTo(p) < 0 && y.signum() >= 0 && y.compareTo(q) < 0
+                        && (safePrime ? jacobi(x, p) == 1 : x.modPow(q, p).equals(BigInteger.ONE)))
+                    e[i] = Schnorr.hash(entry.m, x);
+            }
+            return e;
+        } catch (NoSuchAlgorithmException ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Jacobi符号(a/n)
+     *
+     * @param a 非负整数
+     * @param n 正奇数
+     * @return 1, -1，a与n不互素时为0
+     */
+    static int jacobi(BigInteger a, BigInteger n) {
+        a = a.mod(n);
+        int t = 1;
+        while (a.signum() != 0) {
+            // (2/n)=-1当且仅当n≡3,5 (mod 8)
+            int z = a.getLowestSetBit();
+            a = a.shiftRight(z);
+            int r = n.intValue() & 7;
+            if ((z & 1) != 0 && (r == 3 || r == 5))
+                t = -t;
+            // 二次互反律：a≡n≡3 (mod 4)时变号
+            if ((a.intValue() & 3) == 3 && (r & 3) == 3)
+                t = -t;
+            BigInteger m = a;
+            a = n.mod(m);
+            n = m;
+        }
+        return n.equals(BigInteger.ONE) ? t : 0;
+    }
+}
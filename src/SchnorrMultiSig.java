@@ -0,0 +1,300 @@
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Schnorr多重签名（MuSig）
+ * <p>
+ * n个签名者使用相同的域参数α, p, q，各自的密钥由{@link Schnorr#generateKey}产生（s_i，v_i=α^(-s_i)）。
+ * <ol>
+ * <li>密钥聚合：L=H(v_1||...||v_n)，a_i=H(L||v_i) % q，聚合公钥V=Π v_i^(a_i) % p</li>
+ * <li>第一轮：每人选取r_i，X_i=α^(r_i)，只公布承诺H(X_i)</li>
+ * <li>第二轮：收齐全部承诺后公布X_i，其他人检查X_i与承诺一致</li>
+ * <li>部分签名：X=Π X_i，e=H(m||X)，y_i=r_i+e*a_i*s_i % q</li>
+ * <li>合并：y=Σy_i % q，签名为(e, y)</li>
+ * </ol>
+ * 合并后的签名与单人签名格式相同，用聚合公钥V调用一次{@link Schnorr#verify}即可验证，存储和验证都与人数无关。
+ * 系数a_i防止恶意签名者选取公钥抵消其他人的公钥；先承诺再公布X_i防止最后公布的人控制X。
+ * <p>
+ * 公钥v_i要属于α生成的q阶子群，否则聚合公钥没有意义。
+ */
+public class SchnorrMultiSig {
+    private SchnorrMultiSig() {
+    }
+
+    /**
+     * 密钥聚合系数a_i=H(L||v_i) % q，L=H(v_1||...||v_n)，顺序不同时系数不同
+     *
+     * @param keys 全部签名者的公钥v_i
+     * @param p    全局公钥p
+     * @param q    全局公钥q
+     * @return 各签名者的系数
+     */
+    public static BigInteger[] coefficients(BigInteger[] keys, BigInteger p, BigInteger q) {
+        int length = Encoding.length(p);
+        MessageDigest digest = sha256();
+        for (BigInteger v : keys)
+            digest.update(Encoding.toBytes(v, length));
+        byte[] l = digest.digest();
+        BigInteger[] a = new BigInteger[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            digest.update(l);
+            digest.update(Encoding.toBytes(keys[i], length));
+            a[i] = new BigInteger(1, digest.digest()).mod(q);
+        }
+        return a;
+    }
+
+    /**
+     * 聚合公钥V=Π v_i^(a_i) % p
+     *
+     * @param keys 全部签名者的公钥v_i
+     * @param p    全局公钥p
+     * @param q    全局公钥q
+     */
+    public static BigInteger aggregate(BigInteger[] keys, BigInteger p, BigInteger q) {
+        for (BigInteger v : keys)
+            if (v.signum() <= 0 || v.compareTo(p) >= 0)
+                throw new IllegalArgumentException("public key out of range");
+        return MultiExp.pow(keys, coefficients(keys, p, q), p);
+    }
+
+    /**
+     * 一个签名者的一次签名会话，只能签一条消息
+     * <p>
+     * 依次调用{@link #commit()}、{@link #reveal}、{@link #sign}，每一步的结果发给其他签名者。
+     */
+    public static class Signer {
+        private final BigInteger p;
+        private final BigInteger q;
+        private final BigInteger s;
+        private final BigInteger[] keys;
+        private final int index;
+        /**
+         * 本人的系数a_i
+         */
+        private final BigInteger coefficient;
+        /**
+         * 秘密随机数r_i，签名后清除
+         */
+        private BigInteger r;
+        private final BigInteger x;
+        private final byte[] commitment;
+        private byte[][] commitments;
+        private boolean signed;
+
+        /**
+         * @param a     全局公钥α
+         * @param p     全局公钥p
+         * @param q     全局公钥q
+         * @param s     本人的私钥s_i
+         * @param keys  全部签名者的公钥v_i，各签名者的顺序必须相同
+         * @param index 本人在keys中的位置
+         */
+        public Signer(BigInteger a, BigInteger p, BigInteger q, BigInteger s, BigInteger[] keys, int index) {
+            this.p = p;
+            this.q = q;
+            this.s = s;
+            this.keys = keys.clone();
+            this.index = index;
+            this.coefficient = coefficients(keys, p, q)[index];
+            NoncePool.Nonce nonce = Schnorr.nonce(a, p, q);
+            this.r = nonce.k;
+            this.x = nonce.commitment;
+            this.commitment = commitment(x, p);
+        }
+
+        /**
+         * 第一轮
+         *
+         * @return 承诺H(X_i)
+         */
+        public byte[] commit() {
+            return commitment.clone();
+        }
+
+        /**
+         * 第二轮，收齐全部承诺后才公布X_i
+         *
+         * @param commitments 全部签名者的承诺，与keys的顺序相同
+         * @return X_i
+         */
+        public BigInteger reveal(byte[][] commitments) {
+            if (commitments.length != keys.length || !Arrays.equals(commitments[index], commitment))
+                throw new IllegalArgumentException("commitments do not match this session");
+            this.commitments = commitments.clone();
+            return x;
+        }
+
+        /**
+         * 部分签名，先检查每个X_j与承诺一致
+         *
+         * @param m      消息
+         * @param nonces 全部签名者公布的X_j，与keys的顺序相同
+         * @return y_i
+         */
+        public BigInteger sign(Message m, BigInteger[] nonces) throws IOException {
+            if (commitments == null)
+                throw new IllegalStateException("reveal before sign");
+            if (signed)
+                throw new IllegalStateException("session already signed");
+            if (nonces.length != keys.length)
+                throw new IllegalArgumentException("wrong number of nonces");
+            for (int j = 0; j < nonces.length; j++)
+                if (!Arrays.equals(commitment(nonces[j], p), commitments[j]))
+                    throw new IllegalArgumentException("nonce of signer " + j + " does not match its commitment");
+            BigInteger e = challenge(m, nonces, p);
+            // y_i=r_i+e*a_i*s_i % q
+            BigInteger y = r.add(e.multiply(coefficient).multiply(s)).mod(q);
+            // 同一个r_i签两条消息会泄露s_i
+            r = null;
+            signed = true;
+            return y;
+        }
+    }
+
+    /**
+     * 合并部分签名，并逐个检查α^(y_i) * v_i^(e*a_i) % p=X_i
+     *
+     * @param m        消息
+     * @param partials 各签名者的y_i
+     * @param nonces   各签名者的X_i
+     * @param keys     各签名者的公钥v_i
+     * @param a        全局公钥α
+     * @param p        全局公钥p
+     * @param q        全局公钥q
+     * @return 签名e, y，可以用{@link #aggregate}的公钥由{@link Schnorr#verify}验证
+     * @throws IllegalArgumentException 有不合法的部分签名
+     */
+    public static BigInteger[] combine(Message m, BigInteger[] partials, BigInteger[] nonces, BigInteger[] keys,
+                                       BigInteger a, BigInteger p, BigInteger q) throws IOException {
+        if (partials.length != keys.length || nonces.length != keys.length)
+            throw new IllegalArgumentException("wrong number of partial signatures");
+        BigInteger[] coefficients = coefficients(keys, p, q);
+        BigInteger e = challenge(m, nonces, p);
+        BigInteger y = BigInteger.ZERO;
+        for (int i = 0; i < keys.length; i++) {
+            BigInteger yi = partials[i];
+            if (yi.signum() < 0 || yi.compareTo(q) >= 0 || !MultiExp.pow(FixedBase.of(a, p, q.bitLength()), yi,
+                    keys[i], e.multiply(coefficients[i]).mod(q)).equals(nonces[i]))
+                throw new IllegalArgumentException("invalid partial signature from signer " + i);
+            y = y.add(yi);
+        }
+        return new BigInteger[]{e, y.mod(q)};
+    }
+
+    /**
+     * 用聚合公钥验证多重签名，等同于一次{@link Schnorr#verify}
+     * <p>
+     * 聚合公钥只与签名者和顺序有关，用{@link #aggregate}算一次后保存，不要每次验证都重新聚合。
+     *
+     * @param m         消息
+     * @param signature 签名e, y
+     * @param a         全局公钥α
+     * @param p         全局公钥p
+     * @param q         全局公钥q
+     * @param v         聚合公钥V
+     * @return 签名是否合法
+     */
+    public static boolean verify(Message m, BigInteger[] signature, BigInteger a, BigInteger p, BigInteger q,
+                                 BigInteger v) throws IOException {
+        return Schnorr.verify(m, signature, a, p, q, v);
+    }
+
+    /**
+     * e=H(m||X)，X=Π X_i % p
+     */
+    private static BigInteger challenge(Message m, BigInteger[] nonces, BigInteger p) throws IOException {
+        BigInteger x = BigInteger.ONE;
+        for (BigInteger xi : nonces) {
+            if (xi.signum() <= 0 || xi.compareTo(p) >= 0)
+                throw new IllegalArgumentException("nonce out of range");
+            x = x.multiply(xi).mod(p);
+        }
+        try {
+            return Schnorr.hash(m, x);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 承诺H(X_i)
+     */
+    private static byte[] commitment(BigInteger x, BigInteger p) {
+        return sha256().digest(Encoding.toBytes(x, Encoding.length(p)));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 模拟n个签名者完成一次签名，比较一次聚合验证与n次单独验证的时间
+     */
+    public static void main(String[] args) throws IOException {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        BigInteger[][] key = new BigInteger[n][];
+        BigInteger[] keys = new BigInteger[n];
+        for (int i = 0; i < n; i++) {
+            key[i] = Schnorr.generateKey();
+            keys[i] = key[i][4];
+        }
+        BigInteger a = key[0][0], p = key[0][1], q = key[0][2];
+        Message m = Message.of("co-signed document".getBytes(StandardCharsets.US_ASCII));
+
+        Signer[] signers = new Signer[n];
+        byte[][] commitments = new byte[n][];
+        for (int i = 0; i < n; i++) {
+            signers[i] = new Signer(a, p, q, key[i][3], keys, i);
+            commitments[i] = signers[i].commit();
+        }
+        BigInteger[] nonces = new BigInteger[n];
+        for (int i = 0; i < n; i++)
+            nonces[i] = signers[i].reveal(commitments);
+        BigInteger[] partials = new BigInteger[n];
+        for (int i = 0; i < n; i++)
+            partials[i] = signers[i].sign(m, nonces);
+        BigInteger[] signature = combine(m, partials, nonces, keys, a, p, q);
+        BigInteger v = aggregate(keys, p, q);
+        if (!verify(m, signature, a, p, q, v))
+            throw new AssertionError("aggregate verify");
+        if (verify(Message.of("other".getBytes(StandardCharsets.US_ASCII)), signature, a, p, q, v))
+            throw new AssertionError("wrong message");
+        BigInteger[] reordered = keys.clone();
+        reordered[0] = keys[n - 1];
+        reordered[n - 1] = keys[0];
+        if (n > 1 && verify(m, signature, a, p, q, aggregate(reordered, p, q)))
+            throw new AssertionError("reordered keys");
+        partials[0] = partials[0].add(BigInteger.ONE).mod(q);
+        try {
+            combine(m, partials, nonces, keys, a, p, q);
+            throw new AssertionError("bad partial signature accepted");
+        } catch (IllegalArgumentException e) {
+            // 预期
+        }
+
+        BigInteger[][] single = new BigInteger[n][];
+        for (int i = 0; i < n; i++)
+            single[i] = Schnorr.sign(m, a, p, q, key[i][3]);
+        for (int round = 0; round < 3; round++) {
+            long t0 = System.nanoTime();
+            for (int i = 0; i < n; i++)
+                if (!Schnorr.verify(m, single[i], a, p, q, keys[i]))
+                    throw new AssertionError("single verify");
+            long t1 = System.nanoTime();
+            if (!verify(m, signature, a, p, q, v))
+                throw new AssertionError("aggregate verify");
+            long t2 = System.nanoTime();
+            System.out.printf("%d signers: %d single verifies %.1f us, one aggregate verify %.1f us%n",
+                    n, n, (t1 - t0) / 1e3, (t2 - t1) / 1e3);
+        }
+    }
+}
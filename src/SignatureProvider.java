@@ -0,0 +1,742 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.InvalidParameterException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.KeyFactorySpi;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyPairGeneratorSpi;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.Provider;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.SignatureSpi;
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.EncodedKeySpec;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.KeySpec;
+import java.security.spec.NamedParameterSpec;
+import java.security.spec.RSAKeyGenParameterSpec;
+import java.util.Arrays;
+
+/**
+ * 以JCA Provider的形式提供各签名方案
+ * <pre>
+ * Signature / KeyPairGenerator / KeyFactory   DSA, Schnorr, ElGamal, RSA-PSS
+ * </pre>
+ * 都使用SHA-1，与各方案的静态方法互相兼容。签名为{@link Encoding}的定长形式，密钥的getEncoded()为
+ * {@link Encoding#putKey}的"RAW"格式，由{@link RawKeySpec}经KeyFactory还原。
+ * <p>
+ * Signature实例在initSign/initVerify之间保留自己的MessageDigest和由密钥预计算的状态：同一个密钥再次init时
+ * 不重新计算（RSA的CRT私钥、验证上下文），Schnorr签名的随机数在上一次签名后就预先取好。
+ * update()直接送入摘要，消息不需要整个放在内存中；只有Schnorr验证和确定性模式的Schnorr签名需要缓存消息，
+ * 因为e=H(m||X)的拼接方式取决于X的位数，而X要在读完消息后才能得到。
+ * <p>
+ * KeyPairGenerator用initialize(keysize)选择内置参数（DSA、Schnorr为dsa-1024-160、dsa-2048-256、dsa-3072-256，
+ * ElGamal为ffdhe&lt;keysize&gt;，RSA为模数位数），或者用{@link NamedParameterSpec}指定{@link DomainParameters}中的名字。
+ * 传入的SecureRandom不使用，随机数来自{@link NonceSource}。
+ */
+public final class SignatureProvider extends Provider {
+    private static final long serialVersionUID = 1L;
+    public static final String NAME = "DigitalSignature";
+    /**
+     * 方案名与JCA算法名
+     */
+    private static final String[][] ALGORITHMS = {
+            {"dsa", "DSA"}, {"schnorr", "Schnorr"}, {"elgamal", "ElGamal"}, {"rsa", "RSA-PSS"}};
+
+    public SignatureProvider() {
+        super(NAME, "1.0", "DSA, Schnorr, ElGamal and RSA-PSS signatures with SHA-1");
+        for (String[] a : ALGORITHMS)
+            for (String type : new String[]{"Signature", "KeyPairGenerator", "KeyFactory"})
+                putService(new SchemeService(this, type, a[1], a[0]));
+    }
+
+    /**
+     * @return 方案对应的JCA算法名
+     */
+    static String algorithm(String scheme) {
+        for (String[] a : ALGORITHMS)
+            if (a[0].equals(scheme))
+                return a[1];
+        throw new IllegalArgumentException("unknown scheme: " + scheme);
+    }
+
+    /**
+     * 由方案的密钥数组构造公钥，私钥分量被去掉
+     *
+     * @param scheme dsa、schnorr、elgamal或rsa
+     * @param key    与各方案generateKey返回值顺序相同的数组
+     */
+    public static PublicKey publicKey(String scheme, BigInteger[] key) {
+        return new SchemePublicKey(scheme, Encoding.publicKey(scheme, key));
+    }
+
+    /**
+     * 由方案的密钥数组构造私钥
+     */
+    public static PrivateKey privateKey(String scheme, BigInteger[] key) {
+        return new SchemePrivateKey(scheme, key.clone());
+    }
+
+    /**
+     * 创建实例时把方案名传给引擎
+     */
+    private static final class SchemeService extends Service {
+        private final String scheme;
+
+        SchemeService(Provider provider, String type, String algorithm, String scheme) {
+            super(provider, type, algorithm, SignatureProvider.class.getName() + "$" + type, null, null);
+            this.scheme = scheme;
+        }
+
+        @Override
+        public Object newInstance(Object parameter) {
+            switch (getType()) {
+                case "Signature":
+                    switch (scheme) {
+                        case "dsa":
+                            return new DSAEngine();
+                        case "schnorr":
+                            return new SchnorrEngine();
+                        case "elgamal":
+                            return new ElGamalEngine();
+                        default:
+                            return new RSAEngine();
+                    }
+                case "KeyPairGenerator":
+                    return new Generator(scheme);
+                default:
+                    return new Factory(scheme);
+            }
+        }
+    }
+
+    /**
+     * 密钥，分量数组与各方案generateKey的返回值顺序相同
+     */
+    private abstract static class SchemeKey implements Key {
+        private static final long serialVersionUID = 1L;
+        final String scheme;
+        final BigInteger[] key;
+
+        SchemeKey(String scheme, BigInteger[] key) {
+            this.scheme = scheme;
+            this.key = key;
+        }
+
+        @Override
+        public String getAlgorithm() {
+            return algorithm(scheme);
+        }
+
+        @Override
+        public String getFormat() {
+            return RawKeySpec.FORMAT;
+        }
+
+        @Override
+        public byte[] getEncoded() {
+            ByteBuffer buffer = ByteBuffer.allocate(Encoding.keyLength(scheme, key));
+            Encoding.putKey(buffer, scheme, key);
+            return buffer.array();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o != null && o.getClass() == getClass() && scheme.equals(((SchemeKey) o).scheme)
+                    && Arrays.equals(key, ((SchemeKey) o).key);
+        }
+
+        @Override
+        public int hashCode() {
+            return scheme.hashCode() * 31 + Arrays.hashCode(key);
+        }
+    }
+
+    private static final class SchemePublicKey extends SchemeKey implements PublicKey {
+        private static final long serialVersionUID = 1L;
+
+        SchemePublicKey(String scheme, BigInteger[] key) {
+            super(scheme, key);
+        }
+    }
+
+    private static final class SchemePrivateKey extends SchemeKey implements PrivateKey {
+        private static final long serialVersionUID = 1L;
+
+        SchemePrivateKey(String scheme, BigInteger[] key) {
+            super(scheme, key);
+        }
+    }
+
+    /**
+     * {@link Encoding#putKey}格式的密钥
+     */
+    public static final class RawKeySpec extends EncodedKeySpec {
+        static final String FORMAT = "RAW";
+
+        public RawKeySpec(byte[] encoded) {
+            super(encoded);
+        }
+
+        @Override
+        public String getFormat() {
+            return FORMAT;
+        }
+    }
+
+    private static final class Factory extends KeyFactorySpi {
+        private final String scheme;
+
+        Factory(String scheme) {
+            this.scheme = scheme;
+        }
+
+        @Override
+        protected PublicKey engineGeneratePublic(KeySpec spec) throws InvalidKeySpecException {
+            return new SchemePublicKey(scheme, Encoding.publicKey(scheme, decode(spec)));
+        }
+
+        @Override
+        protected PrivateKey engineGeneratePrivate(KeySpec spec) throws InvalidKeySpecException {
+            BigInteger[] key = decode(spec);
+            if (Arrays.equals(key, Encoding.publicKey(scheme, key)))
+                throw new InvalidKeySpecException("no private components");
+            return new SchemePrivateKey(scheme, key);
+        }
+
+        private BigInteger[] decode(KeySpec spec) throws InvalidKeySpecException {
+            if (!(spec instanceof RawKeySpec))
+                throw new InvalidKeySpecException("only RawKeySpec is supported");
+            try {
+                return Encoding.getKey(ByteBuffer.wrap(((RawKeySpec) spec).getEncoded()), scheme);
+            } catch (RuntimeException e) {
+                throw new InvalidKeySpecException(e);
+            }
+        }
+
+        @Override
+        protected <T extends KeySpec> T engineGetKeySpec(Key key, Class<T> spec) throws InvalidKeySpecException {
+            if (!spec.isAssignableFrom(RawKeySpec.class))
+                throw new InvalidKeySpecException("only RawKeySpec is supported");
+            return spec.cast(new RawKeySpec(key.getEncoded()));
+        }
+
+        @Override
+        protected Key engineTranslateKey(Key key) throws InvalidKeyException {
+            if (key instanceof SchemeKey && ((SchemeKey) key).scheme.equals(scheme))
+                return key;
+            if (!RawKeySpec.FORMAT.equals(key.getFormat()))
+                throw new InvalidKeyException("unsupported key format: " + key.getFormat());
+            try {
+                RawKeySpec spec = new RawKeySpec(key.getEncoded());
+                return key instanceof PrivateKey ? engineGeneratePrivate(spec) : engineGeneratePublic(spec);
+            } catch (InvalidKeySpecException e) {
+                throw new InvalidKeyException(e);
+            }
+        }
+    }
+
+    private static final class Generator extends KeyPairGeneratorSpi {
+        private final String scheme;
+        /**
+         * 域参数名，RSA为null
+         */
+        private String group;
+        private int bits = 2048;
+
+        Generator(String scheme) {
+            this.scheme = scheme;
+            this.group = scheme.equals("dsa") ? "dsa-2048-256" : scheme.equals("schnorr") ? "dsa-1024-160"
+                    : scheme.equals("elgamal") ? "ffdhe2048" : null;
+        }
+
+        @Override
+        public void initialize(int keysize, SecureRandom random) {
+            switch (scheme) {
+                case "dsa":
+                case "schnorr":
+                    if (keysize != 1024 && keysize != 2048 && keysize != 3072)
+                        throw new InvalidParameterException("keysize must be 1024, 2048 or 3072");
+                    group = "dsa-" + keysize + "-" + (keysize == 1024 ? 160 : 256);
+                    break;
+                case "elgamal":
+                    group = "ffdhe" + keysize;
+                    if (!known(group))
+                        throw new InvalidParameterException("no ffdhe group of " + keysize + " bits");
+                    break;
+                default:
+                    if (keysize < 512)
+                        throw new InvalidParameterException("keysize must be at least 512");
+                    bits = keysize;
+            }
+        }
+
+        @Override
+        public void initialize(AlgorithmParameterSpec params, SecureRandom random)
+                throws InvalidAlgorithmParameterException {
+            if (scheme.equals("rsa")) {
+                if (!(params instanceof RSAKeyGenParameterSpec)
+                        || !((RSAKeyGenParameterSpec) params).getPublicExponent().equals(RSA_PrivateKey.DEFAULT_E))
+                    throw new InvalidAlgorithmParameterException("RSAKeyGenParameterSpec with e=65537 required");
+                try {
+                    initialize(((RSAKeyGenParameterSpec) params).getKeysize(), random);
+                } catch (InvalidParameterException e) {
+                    throw new InvalidAlgorithmParameterException(e.getMessage());
+                }
+                return;
+            }
+            if (!(params instanceof NamedParameterSpec) || !known(((NamedParameterSpec) params).getName()))
+                throw new InvalidAlgorithmParameterException("NamedParameterSpec with a known group required");
+            group = ((NamedParameterSpec) params).getName();
+        }
+
+        private static boolean known(String name) {
+            try {
+                DomainParameters.get(name);
+                return true;
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public KeyPair generateKeyPair() {
+            BigInteger[] key;
+            switch (scheme) {
+                case "dsa":
+                    key = DSA.generateKey(group);
+                    break;
+                case "schnorr":
+                    key = Schnorr.generateKey(group);
+                    break;
+                case "elgamal":
+                    key = ElGamal.generateKey(group);
+                    break;
+                default:
+                    RSA_PrivateKey rsa = RSA_PrivateKey.generateKey(bits);
+                    key = new BigInteger[]{rsa.n, rsa.e, rsa.d, rsa.p, rsa.q};
+            }
+            return new KeyPair(publicKey(scheme, key), privateKey(scheme, key));
+        }
+    }
+
+    /**
+     * Signature引擎的公共部分：密钥、摘要、签名的定长编码
+     */
+    private abstract static class Engine extends SignatureSpi {
+        final String scheme;
+        final MessageDigest digest;
+        /**
+         * 当前的密钥，签名时为私钥，验证时为公钥
+         */
+        BigInteger[] key;
+        /**
+         * 上一次为签名、验证预计算时的密钥
+         */
+        private BigInteger[] signKey, verifyKey;
+
+        Engine(String scheme) {
+            this.scheme = scheme;
+            try {
+                digest = MessageDigest.getInstance("SHA");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        protected void engineInitSign(PrivateKey privateKey) throws InvalidKeyException {
+            key = components(privateKey);
+            if (Arrays.equals(key, Encoding.publicKey(scheme, key)))
+                throw new InvalidKeyException("no private components");
+            if (!Arrays.equals(key, signKey)) {
+                prepareSign();
+                signKey = key;
+            }
+            reset(true);
+        }
+
+        @Override
+        protected void engineInitVerify(PublicKey publicKey) throws InvalidKeyException {
+            key = components(publicKey);
+            if (!Arrays.equals(key, verifyKey)) {
+                prepareVerify();
+                verifyKey = key;
+            }
+            reset(false);
+        }
+
+        private BigInteger[] components(Key k) throws InvalidKeyException {
+            if (!(k instanceof SchemeKey) || !((SchemeKey) k).scheme.equals(scheme))
+                throw new InvalidKeyException("not a " + algorithm(scheme) + " key from " + NAME);
+            return ((SchemeKey) k).key;
+        }
+
+        /**
+         * 新的签名私钥，可以预计算
+         */
+        void prepareSign() {
+        }
+
+        /**
+         * 新的验证公钥，可以预计算
+         */
+        void prepareVerify() {
+        }
+
+        /**
+         * init之后和每次sign/verify之后调用，准备下一条消息
+         *
+         * @param signing 是否用于签名
+         */
+        void reset(boolean signing) {
+            digest.reset();
+        }
+
+        @Override
+        protected void engineUpdate(byte b) {
+            engineUpdate(new byte[]{b}, 0, 1);
+        }
+
+        @Override
+        protected void engineUpdate(byte[] b, int off, int len) {
+            digest.update(b, off, len);
+        }
+
+        @Override
+        protected void engineUpdate(ByteBuffer input) {
+            digest.update(input);
+        }
+
+        @Override
+        protected byte[] engineSign() throws SignatureException {
+            if (key == null)
+                throw new SignatureException("not initialized");
+            try {
+                return sign();
+            } finally {
+                reset(true);
+            }
+        }
+
+        @Override
+        protected boolean engineVerify(byte[] signature) throws SignatureException {
+            if (key == null)
+                throw new SignatureException("not initialized");
+            try {
+                return verify(signature);
+            } catch (ArithmeticException e) {
+                // 签名分量不可逆等格式错误
+                return false;
+            } finally {
+                reset(false);
+            }
+        }
+
+        abstract byte[] sign() throws SignatureException;
+
+        abstract boolean verify(byte[] signature) throws SignatureException;
+
+        /**
+         * @return 定长编码的签名
+         */
+        byte[] encode(BigInteger[] signature) {
+            ByteBuffer buffer = ByteBuffer.allocate(Encoding.signatureLength(scheme, key));
+            Encoding.putSignature(buffer, scheme, key, signature);
+            return buffer.array();
+        }
+
+        /**
+         * @return 签名各分量，长度不对时为null
+         */
+        BigInteger[] decode(byte[] signature) {
+            if (signature.length != Encoding.signatureLength(scheme, key))
+                return null;
+            return Encoding.getSignature(ByteBuffer.wrap(signature), scheme, key);
+        }
+
+        @Override
+        @Deprecated
+        protected void engineSetParameter(String param, Object value) {
+            throw new InvalidParameterException("no parameters");
+        }
+
+        @Override
+        @Deprecated
+        protected Object engineGetParameter(String param) {
+            throw new InvalidParameterException("no parameters");
+        }
+    }
+
+    /**
+     * 密钥为p, q, g, x, y
+     */
+    private static final class DSAEngine extends Engine {
+        DSAEngine() {
+            super("dsa");
+        }
+
+        @Override
+        byte[] sign() {
+            BigInteger p = key[0], q = key[1], g = key[2], x = key[3];
+            byte[] h = digest.digest();
+            if (NonceSource.DETERMINISTIC)
+                return encode(DSA.signDeterministic(h, p, q, g, x));
+            return encode(DSA.signDigest(new BigInteger(1, h), q, x, DSA.nonce(p, q, g)));
+        }
+
+        @Override
+        boolean verify(byte[] signature) {
+            BigInteger[] s = decode(signature);
+            BigInteger q = key[1];
+            if (s == null || s[0].signum() <= 0 || s[0].compareTo(q) >= 0 || s[1].signum() <= 0
+                    || s[1].compareTo(q) >= 0)
+                return false;
+            return DSA.verifyDigest(new BigInteger(1, digest.digest()), s, key[0], q, key[2], key[4]);
+        }
+    }
+
+    /**
+     * 密钥为q, α, X, Y
+     */
+    private static final class ElGamalEngine extends Engine {
+        ElGamalEngine() {
+            super("elgamal");
+        }
+
+        @Override
+        byte[] sign() {
+            BigInteger q = key[0], a = key[1], x = key[2];
+            byte[] h = digest.digest();
+            if (NonceSource.DETERMINISTIC)
+                return encode(ElGamal.signDeterministic(h, q, a, x));
+            return encode(ElGamal.signDigest(new BigInteger(1, h), q, x, ElGamal.nonce(q, a)));
+        }
+
+        @Override
+        boolean verify(byte[] signature) {
+            BigInteger[] s = decode(signature);
+            BigInteger q = key[0];
+            if (s == null || s[0].signum() <= 0 || s[0].compareTo(q) >= 0)
+                return false;
+            return ElGamal.verifyDigest(new BigInteger(1, digest.digest()), s, q, key[1], key[3]);
+        }
+    }
+
+    /**
+     * 密钥为α, p, q, s, v
+     * <p>
+     * 随机模式的签名在reset时就取好下一个随机数X，update直接送入按X的位数拼接的摘要；
+     * 验证和确定性模式的签名缓存消息。
+     */
+    private static final class SchnorrEngine extends Engine {
+        private final Schnorr.Concat concat = new Schnorr.Concat(digest, 0);
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        /**
+         * 下一次签名的随机数，缓存消息时为null
+         */
+        private NoncePool.Nonce nonce;
+
+        SchnorrEngine() {
+            super("schnorr");
+        }
+
+        @Override
+        void reset(boolean signing) {
+            super.reset(signing);
+            buffer.reset();
+            nonce = null;
+            if (signing && !NonceSource.DETERMINISTIC) {
+                nonce = Schnorr.nonce(key[0], key[1], key[2]);
+                concat.reset(nonce.commitment.bitLength());
+            }
+        }
+
+        @Override
+        protected void engineUpdate(byte[] b, int off, int len) {
+            if (nonce != null)
+                concat.update(b, off, len);
+            else
+                buffer.write(b, off, len);
+        }
+
+        @Override
+        protected void engineUpdate(ByteBuffer input) {
+            if (nonce != null) {
+                concat.update(input);
+            } else {
+                byte[] b = new byte[input.remaining()];
+                input.get(b);
+                buffer.write(b, 0, b.length);
+            }
+        }
+
+        @Override
+        byte[] sign() {
+            BigInteger q = key[2], s = key[3];
+            if (nonce == null) {
+                try {
+                    return encode(Schnorr.signDeterministic(Message.of(buffer.toByteArray()), key[0], key[1], q, s));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            // e=H(m||x)，y=r+se % q
+            BigInteger e = concat.hash(nonce.commitment);
+            return encode(new BigInteger[]{e, nonce.k.add(s.multiply(e)).mod(q)});
+        }
+
+        @Override
+        boolean verify(byte[] signature) {
+            BigInteger[] s = decode(signature);
+            if (s == null)
+                return false;
+            try {
+                return Schnorr.verify(Message.of(buffer.toByteArray()), s, key[0], key[1], key[2], key[4]);
+            } catch (IOException e) {
+                // 内存中的消息不会抛出IOException
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * 密钥为n, e, d, p, q，有p, q时用CRT签名
+     */
+    private static final class RSAEngine extends Engine {
+        private final PSSCodec codec = new PSSCodec();
+        private RSA_PrivateKey crt;
+        private RSA_PSSBatch context;
+        private byte[] em;
+
+        RSAEngine() {
+            super("rsa");
+        }
+
+        @Override
+        void prepareSign() {
+            crt = key[3] != null && key[4] != null ? new RSA_PrivateKey(key[3], key[4], key[1]) : null;
+            em = new byte[PSSCodec.emLen(key[0].bitLength() - 1)];
+        }
+
+        @Override
+        void prepareVerify() {
+            context = new RSA_PSSBatch(key[1], key[0]);
+        }
+
+        @Override
+        byte[] sign() {
+            BigInteger n = key[0];
+            codec.encodeDigest(digest.digest(), n.bitLength() - 1, em, 0);
+            return crt != null ? RSA_PSS.sign(em, crt) : RSA_PSS.sign(em, key[2], n);
+        }
+
+        @Override
+        boolean verify(byte[] signature) {
+            return context.verifyDigest(digest.digest(), signature, codec);
+        }
+    }
+
+    /**
+     * 每个算法生成密钥、经KeyFactory还原、分多次update签名，用同一个引擎反复签名和验证，
+     * 并与各方案的静态方法互相验证
+     */
+    public static void main(String[] args) throws Exception {
+        Provider provider = new SignatureProvider();
+        byte[] message = "The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.US_ASCII);
+        for (String[] a : ALGORITHMS) {
+            KeyPair pair = KeyPairGenerator.getInstance(a[1], provider).generateKeyPair();
+            KeyFactory factory = KeyFactory.getInstance(a[1], provider);
+            PublicKey pub = factory.generatePublic(new RawKeySpec(pair.getPublic().getEncoded()));
+            PrivateKey priv = factory.generatePrivate(new RawKeySpec(pair.getPrivate().getEncoded()));
+            if (!pub.equals(pair.getPublic()) || !priv.equals(pair.getPrivate()))
+                throw new AssertionError(a[1] + " key round trip");
+
+            Signature signer = Signature.getInstance(a[1], provider);
+            Signature verifier = Signature.getInstance(a[1], provider);
+            signer.initSign(priv);
+            verifier.initVerify(pub);
+            int n = 20;
+            long t0 = System.nanoTime();
+            byte[] sig = null;
+            for (int i = 0; i < n; i++) {
+                signer.update(message, 0, 10);
+                signer.update(ByteBuffer.wrap(message, 10, message.length - 10));
+                sig = signer.sign();
+            }
+            long t1 = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                verifier.update(message);
+                if (!verifier.verify(sig))
+                    throw new AssertionError(a[1] + " verify");
+            }
+            long t2 = System.nanoTime();
+            verifier.update(message, 1, message.length - 1);
+            if (verifier.verify(sig))
+                throw new AssertionError(a[1] + " wrong message");
+            sig[sig.length - 1] ^= 1;
+            verifier.update(message);
+            if (verifier.verify(sig))
+                throw new AssertionError(a[1] + " tampered signature");
+            sig[sig.length - 1] ^= 1;
+
+            // 与静态方法互相验证
+            BigInteger[] key = ((SchemeKey) priv).key;
+            Message m = Message.of(message);
+            ByteBuffer b = ByteBuffer.wrap(sig);
+            BigInteger[] s = Encoding.getSignature(b, a[0], key);
+            boolean staticVerify;
+            byte[] staticSig;
+            switch (a[0]) {
+                case "dsa":
+                    staticVerify = DSA.verify(m, s, key[0], key[1], key[2], key[4]);
+                    staticSig = Encoding.der(DSA.sign(m, key[0], key[1], key[2], key[3]));
+                    break;
+                case "schnorr":
+                    staticVerify = Schnorr.verify(m, s, key[0], key[1], key[2], key[4]);
+                    staticSig = Encoding.der(Schnorr.sign(m, key[0], key[1], key[2], key[3]));
+                    break;
+                case "elgamal":
+                    staticVerify = ElGamal.verify(m, s, key[0], key[1], key[3]);
+                    staticSig = Encoding.der(ElGamal.sign(m, key[0], key[1], key[2]));
+                    break;
+                default:
+                    staticVerify = new RSA_PSSBatch(key[1], key[0]).verify(m, sig);
+                    staticSig = null;
+                    byte[] em = RSA_PSS.encode(m, key[0].bitLength() - 1);
+                    verifier.update(message);
+                    if (!verifier.verify(RSA_PSS.sign(em, key[2], key[0])))
+                        throw new AssertionError(a[1] + " static signature");
+            }
+            if (!staticVerify)
+                throw new AssertionError(a[1] + " static verify");
+            if (staticSig != null) {
+                verifier.update(message);
+                if (!verifier.verify(encodeStatic(a[0], key, Encoding.fromDer(staticSig))))
+                    throw new AssertionError(a[1] + " static signature");
+            }
+            System.out.printf("%-8s sign %8.1f us, verify %8.1f us%n", a[1], (t1 - t0) / 1e3 / n,
+                    (t2 - t1) / 1e3 / n);
+        }
+        System.out.println("pass");
+    }
+
+    private static byte[] encodeStatic(String scheme, BigInteger[] key, BigInteger[] signature) {
+        ByteBuffer buffer = ByteBuffer.allocate(Encoding.signatureLength(scheme, key));
+        Encoding.putSignature(buffer, scheme, key, signature);
+        return buffer.array();
+    }
+}
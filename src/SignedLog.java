@@ -0,0 +1,677 @@
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Signature;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * 只追加的签名日志，用于防篡改的审计记录
+ * <p>
+ * 记录依次写入目录下内存映射的段文件，每段{@link #SEGMENT_SIZE}字节，文件名为段中第一条记录的序号：
+ * <pre>
+ * 段      "SLOG" || 第一条记录的序号(8) || 记录...
+ * 记录    长度(4) || 内容 || h_i(32)
+ * h_i     SHA-256(h_(i-1) || 长度(4) || 内容)，h_(-1)为32个0
+ * </pre>
+ * 每追加{@link #CHECKPOINT}条记录，由后台线程用{@link SignatureProvider}的引擎对前count条记录签名，写入checkpoints文件：
+ * <pre>
+ * count(8) || h_(count-1)(32) || 签名长度(4) || 签名，签名的消息为"signed-log" || count(8) || h_(count-1)
+ * </pre>
+ * 追加只计算一次SHA-256并把内容直接写入映射，不经过中间缓冲区，也不等待签名。签名线程落后时只签最新的检查点，
+ * 签名前先把映射刷到磁盘，签过的记录一定已经落盘。
+ * <p>
+ * 验证[from, to)时取第一个count&gt;=to的检查点，逐条检查from到count-1的h_i与前一条保存的h_(i-1)、记录内容一致，
+ * 再检查h_(count-1)与检查点的签名。每条链接都可以独立检查，按{@link #CHUNK}条分组在ForkJoinPool上并行，
+ * 记录在映射上直接计算，不读入堆中。最后一个检查点之后的记录还没有签名，验证不通过。
+ * <p>
+ * 用只有公钥分量的密钥打开时只读，只能验证。
+ */
+public class SignedLog implements AutoCloseable {
+    /**
+     * 段文件大小，可以用系统属性log.segment修改
+     */
+    public static final int SEGMENT_SIZE = Math.min(Message.MAP_SIZE, Integer.getInteger("log.segment", 64 << 20));
+    /**
+     * 每隔多少条记录签一个检查点，可以用系统属性log.checkpoint修改
+     */
+    public static final int CHECKPOINT = Math.max(1, Integer.getInteger("log.checkpoint", 4096));
+    /**
+     * 验证时每个任务检查的记录数，可以用系统属性log.chunk修改
+     */
+    public static final int CHUNK = Math.max(1, Integer.getInteger("log.chunk", 4096));
+    private static final byte[] MAGIC = "SLOG".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PREFIX = "signed-log".getBytes(StandardCharsets.US_ASCII);
+    private static final int HEADER = MAGIC.length + 8;
+    private static final int HASH = 32;
+    private static final String CHECKPOINTS = "checkpoints";
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final Path dir;
+    private final String scheme;
+    private final BigInteger[] key;
+    private final boolean writable;
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private final List<Checkpoint> checkpoints = new CopyOnWriteArrayList<>();
+    /**
+     * 已写完的记录数，写入记录、偏移量之后才更新
+     */
+    private volatile long size;
+    /**
+     * h_(size-1)，只由追加线程使用
+     */
+    private final byte[] last = new byte[HASH];
+    private final byte[] length = new byte[4];
+    private final MessageDigest digest;
+    private FileChannel checkpointChannel;
+    private ExecutorService signer;
+    private Signature signature;
+    /**
+     * 等待签名的最新检查点
+     */
+    private final AtomicReference<Checkpoint> pending = new AtomicReference<>();
+    /**
+     * 已交给签名线程的最大count
+     */
+    private long scheduled;
+    /**
+     * 签名线程的错误，之后的append和close抛出
+     */
+    private volatile IOException failure;
+    private boolean closed;
+
+    /**
+     * 打开或创建日志
+     *
+     * @param dir    日志目录
+     * @param scheme dsa、schnorr、elgamal或rsa
+     * @param key    与各方案generateKey返回值顺序相同的密钥，只有公钥分量时只读
+     */
+    public SignedLog(Path dir, String scheme, BigInteger[] key) throws IOException {
+        this.dir = dir;
+        this.scheme = scheme;
+        this.key = key.clone();
+        this.writable = !Arrays.equals(key, Encoding.publicKey(scheme, key));
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        if (writable)
+            Files.createDirectories(dir);
+        List<Path> files;
+        try (Stream<Path> list = Files.list(dir)) {
+            files = list.filter(p -> p.getFileName().toString().matches("\\d{20}\\.log")).sorted().toList();
+        }
+        for (Path p : files) {
+            Segment s = Segment.open(p, size, writable);
+            segments.add(s);
+            size += s.count;
+        }
+        // 新建段之后还没写入记录就崩溃时最后一段是空的，h_(size-1)在前一段
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            Segment s = segments.get(i);
+            if (s.count > 0) {
+                s.buffer.get(s.offsets[s.count - 1] + 4 + s.length(s.count - 1), last);
+                break;
+            }
+        }
+        long valid = readCheckpoints();
+        if (writable) {
+            checkpointChannel = FileChannel.open(dir.resolve(CHECKPOINTS), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            // 截掉写到一半的检查点，否则之后追加的检查点都读不到
+            if (checkpointChannel.size() > valid)
+                checkpointChannel.truncate(valid);
+            signer = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "log-signer");
+                t.setDaemon(true);
+                return t;
+            });
+            try {
+                signature = Signature.getInstance(SignatureProvider.algorithm(scheme), new SignatureProvider());
+                signature.initSign(SignatureProvider.privateKey(scheme, key));
+            } catch (GeneralSecurityException e) {
+                throw new IllegalArgumentException(e);
+            }
+            scheduled = checkpoints.isEmpty() ? 0 : checkpoints.get(checkpoints.size() - 1).count;
+        }
+    }
+
+    /**
+     * @return 已写入的记录数
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return 最后一个检查点覆盖的记录数
+     */
+    public long signedSize() {
+        return checkpoints.isEmpty() ? 0 : checkpoints.get(checkpoints.size() - 1).count;
+    }
+
+    /**
+     * 追加一条记录，缓冲区的position到limit直接写入映射，不改变position
+     *
+     * @return 记录的序号
+     */
+    public synchronized long append(ByteBuffer record) throws IOException {
+        if (!writable || closed)
+            throw new IllegalStateException(closed ? "closed" : "read-only log");
+        if (failure != null)
+            throw failure;
+        int len = record.remaining();
+        if (len > SEGMENT_SIZE - HEADER - 4 - HASH)
+            throw new IllegalArgumentException("record larger than a segment");
+        Segment s = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (s == null || s.end + 4 + len + HASH > s.buffer.capacity())
+            segments.add(s = Segment.create(dir, size));
+        int off = s.end;
+        s.buffer.putInt(off, len);
+        s.buffer.put(off + 4, record, record.position(), len);
+        // h_i=SHA-256(h_(i-1)||长度||内容)，在映射上计算
+        ByteBuffer.wrap(length).putInt(0, len);
+        digest.update(last);
+        digest.update(length);
+        digest.update(s.buffer.slice(off + 4, len));
+        try {
+            digest.digest(last, 0, HASH);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+        s.buffer.put(off + 4 + len, last);
+        s.add(off);
+        s.end = off + 4 + len + HASH;
+        long index = size;
+        size = index + 1;
+        if (size - scheduled >= CHECKPOINT)
+            schedule();
+        return index;
+    }
+
+    /**
+     * 追加一条记录
+     *
+     * @return 记录的序号
+     */
+    public long append(byte[] record) throws IOException {
+        return append(ByteBuffer.wrap(record));
+    }
+
+    /**
+     * 读取一条记录
+     *
+     * @return 映射上的只读缓冲区，不复制
+     */
+    public ByteBuffer read(long index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException(index);
+        Segment s = segment(index);
+        int i = (int) (index - s.first);
+        return s.buffer.slice(s.offsets[i] + 4, s.length(i)).asReadOnlyBuffer();
+    }
+
+    /**
+     * 为已写入的全部记录签一个检查点，等待签名完成
+     */
+    public void checkpoint() throws IOException {
+        synchronized (this) {
+            if (!writable || closed)
+                throw new IllegalStateException(closed ? "closed" : "read-only log");
+            if (size > scheduled)
+                schedule();
+        }
+        try {
+            // 签名线程是单线程，空任务完成时前面的检查点都已写入
+            signer.submit(() -> {
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+    /**
+     * 交给签名线程，签名线程还没取走上一个时替换掉它
+     */
+    private void schedule() {
+        scheduled = size;
+        if (pending.getAndSet(new Checkpoint(size, last.clone(), null)) == null)
+            signer.execute(this::sign);
+    }
+
+    /**
+     * 签名线程：刷盘、签名、写入checkpoints
+     */
+    private void sign() {
+        Checkpoint c = pending.getAndSet(null);
+        if (c == null || failure != null)
+            return;
+        try {
+            for (Segment s : segments) {
+                if (s.first >= c.count)
+                    break;
+                if (!s.forced) {
+                    s.buffer.force();
+                    // 前面的段已经写满，不会再改变
+                    s.forced = s != segments.get(segments.size() - 1);
+                }
+            }
+            signature.update(c.message());
+            Checkpoint signed = new Checkpoint(c.count, c.hash, signature.sign());
+            ByteBuffer b = ByteBuffer.allocate(8 + HASH + 4 + signed.signature.length);
+            b.putLong(signed.count).put(signed.hash).putInt(signed.signature.length).put(signed.signature).flip();
+            while (b.hasRemaining())
+                checkpointChannel.write(b);
+            checkpointChannel.force(false);
+            checkpoints.add(signed);
+        } catch (IOException e) {
+            failure = e;
+        } catch (GeneralSecurityException e) {
+            failure = new IOException(e);
+        }
+    }
+
+    /**
+     * 读入checkpoints文件，遇到写到一半的检查点时停止
+     *
+     * @return 完整检查点的总字节数
+     */
+    private long readCheckpoints() throws IOException {
+        Path path = dir.resolve(CHECKPOINTS);
+        if (!Files.exists(path))
+            return 0;
+        ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(path));
+        int valid = 0;
+        while (b.remaining() >= 8 + HASH + 4) {
+            long count = b.getLong();
+            byte[] hash = new byte[HASH];
+            b.get(hash);
+            int len = b.getInt();
+            // 写到一半的检查点
+            if (len < 0 || len > b.remaining())
+                break;
+            byte[] sig = new byte[len];
+            b.get(sig);
+            checkpoints.add(new Checkpoint(count, hash, sig));
+            valid = b.position();
+        }
+        return valid;
+    }
+
+    /**
+     * 并行验证[from, to)的记录
+     *
+     * @return 记录没有被改动并且已经签名
+     */
+    public boolean verify(long from, long to) {
+        long n = size;
+        if (from < 0 || from > to || to > n)
+            throw new IndexOutOfBoundsException("range [" + from + ", " + to + ") of " + n);
+        if (from == to)
+            return true;
+        Checkpoint c = null;
+        for (Checkpoint checkpoint : checkpoints)
+            if (checkpoint.count >= to) {
+                c = checkpoint;
+                break;
+            }
+        if (c == null || c.count > n || !Arrays.equals(hash(c.count - 1), c.hash))
+            return false;
+        try {
+            Signature verifier = Signature.getInstance(SignatureProvider.algorithm(scheme),
+                    new SignatureProvider());
+            verifier.initVerify(SignatureProvider.publicKey(scheme, key));
+            verifier.update(c.message());
+            if (!verifier.verify(c.signature))
+                return false;
+        } catch (GeneralSecurityException e) {
+            return false;
+        }
+        return ForkJoinPool.commonPool().invoke(new Range(from, c.count));
+    }
+
+    /**
+     * 验证全部已签名的记录
+     */
+    public boolean verify() {
+        return verify(0, signedSize());
+    }
+
+    /**
+     * @return 第index条记录保存的h_index，index为-1时为32个0
+     */
+    private byte[] hash(long index) {
+        byte[] h = new byte[HASH];
+        if (index >= 0) {
+            Segment s = segment(index);
+            int i = (int) (index - s.first);
+            s.buffer.get(s.offsets[i] + 4 + s.length(i), h);
+        }
+        return h;
+    }
+
+    private Segment segment(long index) {
+        int lo = 0, hi = segments.size() - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (segments.get(mid).first <= index)
+                lo = mid;
+            else
+                hi = mid - 1;
+        }
+        return segments.get(lo);
+    }
+
+    /**
+     * 检查[from, to)中每条记录的h_i，多于{@link #CHUNK}条时分成两半
+     */
+    private class Range extends RecursiveTask<Boolean> {
+        private static final long serialVersionUID = 1L;
+        private final long from, to;
+
+        Range(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Boolean compute() {
+            if (to - from > CHUNK) {
+                long mid = (from + to) >>> 1;
+                Range right = new Range(mid, to);
+                right.fork();
+                return new Range(from, mid).compute() & right.join();
+            }
+            MessageDigest sha = SHA256.get();
+            byte[] prev = hash(from - 1);
+            byte[] h = new byte[HASH];
+            byte[] stored = new byte[HASH];
+            byte[] length = new byte[4];
+            for (long index = from; index < to; index++) {
+                Segment s = segment(index);
+                int i = (int) (index - s.first);
+                int off = s.offsets[i];
+                int len = s.length(i);
+                ByteBuffer.wrap(length).putInt(0, len);
+                sha.reset();
+                sha.update(prev);
+                sha.update(length);
+                sha.update(s.buffer.slice(off + 4, len));
+                try {
+                    sha.digest(h, 0, HASH);
+                } catch (GeneralSecurityException e) {
+                    throw new IllegalStateException(e);
+                }
+                s.buffer.get(off + 4 + len, stored);
+                if (!Arrays.equals(h, stored))
+                    return false;
+                byte[] t = prev;
+                prev = stored;
+                stored = t;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 签名剩余的记录，关闭文件
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed)
+                return;
+            closed = true;
+            if (!writable) {
+                for (Segment s : segments)
+                    s.channel.close();
+                return;
+            }
+            if (size > scheduled)
+                schedule();
+        }
+        signer.shutdown();
+        try {
+            signer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Segment s : segments) {
+            s.buffer.force();
+            s.channel.close();
+        }
+        checkpointChannel.close();
+        if (failure != null)
+            throw failure;
+    }
+
+    /**
+     * 签过或等待签名的检查点
+     */
+    private static final class Checkpoint {
+        final long count;
+        final byte[] hash;
+        final byte[] signature;
+
+        Checkpoint(long count, byte[] hash, byte[] signature) {
+            this.count = count;
+            this.hash = hash;
+            this.signature = signature;
+        }
+
+        /**
+         * "signed-log" || count || h_(count-1)
+         */
+        byte[] message() {
+            return ByteBuffer.allocate(PREFIX.length + 8 + HASH).put(PREFIX).putLong(count).put(hash).array();
+        }
+    }
+
+    /**
+     * 一个段文件和其中各记录的偏移量
+     */
+    private static final class Segment {
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        /**
+         * 第一条记录的序号
+         */
+        final long first;
+        /**
+         * 各记录的偏移量，前count项有效，由SignedLog的size发布
+         */
+        volatile int[] offsets = new int[1024];
+        int count;
+        /**
+         * 下一条记录的偏移量
+         */
+        int end = HEADER;
+        /**
+         * 写满的段已经刷盘
+         */
+        boolean forced;
+
+        private Segment(FileChannel channel, MappedByteBuffer buffer, long first) {
+            this.channel = channel;
+            this.buffer = buffer;
+            this.first = first;
+        }
+
+        static Segment create(Path dir, long first) throws IOException {
+            FileChannel channel = FileChannel.open(dir.resolve(String.format("%020d.log", first)),
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+            buffer.put(0, MAGIC).putLong(MAGIC.length, first);
+            return new Segment(channel, buffer, first);
+        }
+
+        /**
+         * 打开已有的段，记录的哈希为全0或超出文件时结束
+         *
+         * @param first 预期的第一条记录的序号
+         */
+        static Segment open(Path path, long first, boolean writable) throws IOException {
+            FileChannel channel = writable
+                    ? FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                    : FileChannel.open(path, StandardOpenOption.READ);
+            long fileSize = channel.size();
+            if (fileSize > Message.MAP_SIZE) {
+                channel.close();
+                throw new IOException(path + ": segment too large");
+            }
+            MappedByteBuffer buffer = channel.map(writable ? FileChannel.MapMode.READ_WRITE
+                    : FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            byte[] magic = new byte[MAGIC.length];
+            if (fileSize >= HEADER)
+                buffer.get(0, magic);
+            if (fileSize < HEADER || !Arrays.equals(magic, MAGIC)
+                    || buffer.getLong(MAGIC.length) != first) {
+                channel.close();
+                throw new IOException(path + ": not the segment starting at record " + first);
+            }
+            Segment s = new Segment(channel, buffer, first);
+            byte[] zero = new byte[HASH];
+            byte[] h = new byte[HASH];
+            int off = HEADER;
+            while (off + 4 + HASH <= fileSize) {
+                int len = buffer.getInt(off);
+                if (len < 0 || off + 4L + len + HASH > fileSize)
+                    break;
+                // 哈希最后写入，全0表示记录没有写完
+                buffer.get(off + 4 + len, h);
+                if (Arrays.equals(h, zero))
+                    break;
+                s.add(off);
+                off += 4 + len + HASH;
+            }
+            s.end = off;
+            // 只有最后一段会继续写入，这时它还不是写满的
+            s.forced = !writable;
+            return s;
+        }
+
+        void add(int offset) {
+            int[] o = offsets;
+            if (count == o.length)
+                offsets = o = Arrays.copyOf(o, o.length * 2);
+            o[count++] = offset;
+        }
+
+        int length(int i) {
+            return buffer.getInt(offsets[i]);
+        }
+    }
+
+    /**
+     * 追加记录并计时，篡改一个字节后分别验证包含和不包含它的范围，再以只读方式重新打开验证
+     */
+    public static void main(String[] args) throws IOException {
+        String scheme = args.length > 0 ? args[0] : "schnorr";
+        int n = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+        BigInteger[] key;
+        switch (scheme) {
+            case "dsa":
+                key = DSA.generateKey("dsa-2048-256");
+                break;
+            case "schnorr":
+                key = Schnorr.generateKey();
+                break;
+            case "elgamal":
+                key = ElGamal.generateKey("ffdhe2048");
+                break;
+            default:
+                RSA_PrivateKey rsa = RSA_PrivateKey.generateKey(2048);
+                key = new BigInteger[]{rsa.n, rsa.e, rsa.d, rsa.p, rsa.q};
+        }
+        Path dir = Files.createTempDirectory("signed-log");
+        long tamperIndex = n / 3;
+        try {
+            try (SignedLog log = new SignedLog(dir, scheme, key)) {
+                ByteBuffer record = ByteBuffer.allocate(200);
+                long t0 = System.nanoTime();
+                for (int i = 0; i < n; i++) {
+                    record.clear();
+                    record.put(("audit event " + i + " ").getBytes(StandardCharsets.US_ASCII));
+                    record.limit(100 + i % 100).position(0);
+                    if (log.append(record) != i)
+                        throw new AssertionError("record index");
+                }
+                long t1 = System.nanoTime();
+                log.checkpoint();
+                long t2 = System.nanoTime();
+                if (log.signedSize() != n)
+                    throw new AssertionError("signed size");
+                if (!log.verify())
+                    throw new AssertionError("verify all");
+                long t3 = System.nanoTime();
+                System.out.printf("%d records: append %.2f us per record, last checkpoint %.1f ms, "
+                                + "%d checkpoints, verify %.1f ms%n", n, (t1 - t0) / 1e3 / n, (t2 - t1) / 1e6,
+                        log.checkpoints.size(), (t3 - t2) / 1e6);
+                ByteBuffer r = log.read(tamperIndex);
+                if (!StandardCharsets.US_ASCII.decode(r).toString().startsWith("audit event " + tamperIndex + " "))
+                    throw new AssertionError("read record");
+                log.append("unsigned".getBytes(StandardCharsets.US_ASCII));
+                if (log.verify(n, n + 1))
+                    throw new AssertionError("unsigned record");
+            }
+            // 关闭时签过最后一条
+            try (SignedLog log = new SignedLog(dir, scheme, Encoding.publicKey(scheme, key))) {
+                if (log.size() != n + 1 || log.signedSize() != n + 1)
+                    throw new AssertionError("reopen size");
+                if (!log.verify(0, n + 1))
+                    throw new AssertionError("reopen verify");
+                Segment s = log.segment(tamperIndex);
+                long position = s.offsets[(int) (tamperIndex - s.first)] + 10;
+                try (FileChannel channel = FileChannel.open(dir.resolve(String.format("%020d.log", s.first)),
+                        StandardOpenOption.WRITE)) {
+                    channel.write(ByteBuffer.wrap(new byte[]{'#'}), position);
+                }
+                if (log.verify(tamperIndex, tamperIndex + 1))
+                    throw new AssertionError("tampered record");
+                if (log.verify(0, n + 1))
+                    throw new AssertionError("tampered range");
+                // 更早的检查点不经过被篡改的记录
+                if (log.verify(0, 1) != log.checkpoints.get(0).count <= tamperIndex)
+                    throw new AssertionError("range before tampered record");
+            }
+            System.out.println("pass");
+        } finally {
+            try (Stream<Path> list = Files.list(dir)) {
+                for (Path p : list.toList())
+                    Files.delete(p);
+            }
+            Files.delete(dir);
+        }
+    }
+}
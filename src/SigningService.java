@@ -0,0 +1,521 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 本地签名/验证服务
+ * <p>
+ * 在回环地址上提供HTTP接口，密钥、{@link FixedBase}表和{@link NoncePool}在启动时准备好并常驻内存：
+ * <pre>
+ * POST /sign/{scheme}             请求体为消息，返回签名，每行一个十进制整数
+ * POST /verify/{scheme}?s=a,b     请求体为消息，s为逗号分隔的十进制签名，返回true或false
+ * GET  /keys                      公钥
+ * GET  /stats                     队列和批次统计
+ * </pre>
+ * scheme为dsa、schnorr、elgamal或rsa。
+ * <p>
+ * 请求先进入有界队列，队列满时立即返回503，不在服务端无限堆积。分发线程把一个时间窗口内到达的请求合并成一批，
+ * 批中的请求分别交给空闲的工作线程，不在一个线程上排队；批中的RSA验证合成一次{@link RSA_PSSBatch}调用。
+ * 所有工作线程都忙时分发线程停下等待，压力传回到队列上。排队超过timeout的请求不再执行，直接返回503，使延迟有上界。
+ * <p>
+ * 验证请求的签名分量在入队前检查范围，超出范围的直接返回false，不会进入模幂。
+ * <p>
+ * 设置service.verifyCache为正数时，验证通过的结果记入{@link VerifyCache}，同一请求再次验证时直接返回。
+ */
+public class SigningService implements AutoCloseable {
+    /**
+     * 队列容量
+     */
+    public static final int DEFAULT_QUEUE = Integer.getInteger("service.queue", 1024);
+    /**
+     * 每批最多的请求数
+     */
+    public static final int DEFAULT_BATCH = Integer.getInteger("service.batch", 32);
+    /**
+     * 合并请求的时间窗口，微秒
+     */
+    public static final int DEFAULT_WINDOW = Integer.getInteger("service.window", 200);
+    /**
+     * 工作线程数
+     */
+    public static final int DEFAULT_WORKERS = Integer.getInteger("service.workers",
+            Runtime.getRuntime().availableProcessors());
+    /**
+     * 最长排队时间，毫秒
+     */
+    private static final int TIMEOUT = Integer.getInteger("service.timeout", 1000);
+    /**
+     * 消息的最大字节数
+     */
+    private static final int MAX_MESSAGE = Integer.getInteger("service.maxMessage", 1 << 20);
+    /**
+     * 每个随机数池的容量
+     */
+    private static final int NONCES = Integer.getInteger("service.nonces", 256);
+    /**
+     * 验证结果缓存的条目数，0为不缓存
+     */
+    private static final int VERIFY_CACHE = Integer.getInteger("service.verifyCache", 0);
+
+    /**
+     * 一个请求
+     */
+    private static class Job {
+        final HttpExchange exchange;
+        final boolean sign;
+        final String scheme;
+        final byte[] message;
+        final BigInteger[] signature;
+        final long enqueued = System.nanoTime();
+
+        Job(HttpExchange exchange, boolean sign, String scheme, byte[] message, BigInteger[] signature) {
+            this.exchange = exchange;
+            this.sign = sign;
+            this.scheme = scheme;
+            this.message = message;
+            this.signature = signature;
+        }
+    }
+
+    private final HttpServer server;
+    private final BlockingQueue<Job> queue;
+    private final int batchSize;
+    private final long window;
+    private final ExecutorService io;
+    private final ExecutorService workers;
+    /**
+     * 空闲的工作线程数
+     */
+    private final Semaphore idle;
+    private final Thread dispatcher;
+    private volatile boolean closed;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    /**
+     * DSA: p, q, g, x, y
+     */
+    private final BigInteger[] dsa;
+    /**
+     * Schnorr: α, p, q, s, v
+     */
+    private final BigInteger[] schnorr;
+    /**
+     * ElGamal: q, a, X, Y
+     */
+    private final BigInteger[] elGamal;
+    private final RSA_PrivateKey rsa;
+    private final RSA_PSSBatch rsaVerifier;
+    private final NoncePool dsaNonces;
+    private final NoncePool schnorrNonces;
+    private final NoncePool elGamalNonces;
+    /**
+     * 验证结果缓存，不缓存时为null
+     */
+    private final VerifyCache verifyCache;
+    /**
+     * 各方案公钥的指纹，顺序为dsa、schnorr、elgamal、rsa
+     */
+    private final byte[][] fingerprints;
+
+    /**
+     * 使用默认配置，在回环地址上启动
+     *
+     * @param port 端口，0为任意端口
+     */
+    public SigningService(int port) throws IOException {
+        this(new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+                DEFAULT_QUEUE, DEFAULT_BATCH, DEFAULT_WINDOW, DEFAULT_WORKERS);
+    }
+
+    /**
+     * 生成密钥并启动服务
+     *
+     * @param address   监听地址
+     * @param queue     队列容量，超出时返回503
+     * @param batchSize 每批最多的请求数
+     * @param window    合并请求的时间窗口，微秒
+     * @param workers   工作线程数
+     */
+    public SigningService(InetSocketAddress address, int queue, int batchSize, int window, int workers)
+            throws IOException {
+        if (queue < 1 || batchSize < 1 || window < 0 || workers < 1)
+            throw new IllegalArgumentException();
+        this.queue = new ArrayBlockingQueue<>(queue);
+        this.batchSize = batchSize;
+        this.window = TimeUnit.MICROSECONDS.toNanos(window);
+        this.idle = new Semaphore(workers);
+
+        dsa = DSA.generateKey(System.getProperty("service.dsa", "dsa-2048-256"));
+        schnorr = Schnorr.generateKey(System.getProperty("service.schnorr", "dsa-2048-256"));
+        elGamal = ElGamal.generateKey(System.getProperty("service.elgamal", "ffdhe2048"));
+        rsa = RSA_PrivateKey.generateKey(Integer.getInteger("service.rsa", 2048));
+        rsaVerifier = new RSA_PSSBatch(rsa.e, rsa.n);
+        dsaNonces = new NoncePool(() -> DSA.nonce(dsa[0], dsa[1], dsa[2]), NONCES);
+        schnorrNonces = new NoncePool(() -> Schnorr.nonce(schnorr[0], schnorr[1], schnorr[2]), NONCES);
+        elGamalNonces = new NoncePool(() -> ElGamal.nonce(elGamal[0], elGamal[1]), NONCES);
+        verifyCache = VERIFY_CACHE > 0 ? new VerifyCache(VERIFY_CACHE) : null;
+        fingerprints = new byte[][]{VerifyCache.fingerprint("dsa", dsa), VerifyCache.fingerprint("schnorr", schnorr),
+                VerifyCache.fingerprint("elgamal", elGamal),
+                VerifyCache.fingerprint("rsa", new BigInteger[]{rsa.n, rsa.e, null, null, null})};
+
+        io = Executors.newFixedThreadPool(workers, daemon("service-io"));
+        this.workers = Executors.newFixedThreadPool(workers, daemon("service-worker"));
+        dispatcher = daemon("service-dispatcher").newThread(this::dispatch);
+        dispatcher.start();
+
+        server = HttpServer.create(address, 0);
+        server.setExecutor(io);
+        server.createContext("/sign/", exchange -> submit(exchange, true));
+        server.createContext("/verify/", exchange -> submit(exchange, false));
+        server.createContext("/keys", exchange -> respond(exchange, 200, keys()));
+        server.createContext("/stats", exchange -> respond(exchange, 200, stats()));
+        server.start();
+    }
+
+    /**
+     * @return 实际监听的地址
+     */
+    public InetSocketAddress address() {
+        return server.getAddress();
+    }
+
+    /**
+     * 读入请求并放入队列
+     */
+    private void submit(HttpExchange exchange, boolean sign) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, "POST only\n");
+            return;
+        }
+        String path = exchange.getRequestURI().getPath();
+        String scheme = path.substring(path.lastIndexOf('/') + 1);
+        if (!scheme.equals("dsa") && !scheme.equals("schnorr") && !scheme.equals("elgamal") && !scheme.equals("rsa")) {
+            respond(exchange, 404, "unknown scheme: " + scheme + "\n");
+            return;
+        }
+        BigInteger[] signature = null;
+        if (!sign) {
+            signature = parseSignature(exchange.getRequestURI().getRawQuery());
+            if (signature == null || signature.length != (scheme.equals("rsa") ? 1 : 2)) {
+                respond(exchange, 400, "bad signature\n");
+                return;
+            }
+        }
+        byte[] message = readMessage(exchange.getRequestBody());
+        if (message == null) {
+            respond(exchange, 413, "message too large\n");
+            return;
+        }
+        if (!sign && !inRange(scheme, signature)) {
+            respond(exchange, 200, "false\n");
+            return;
+        }
+        if (closed || !queue.offer(new Job(exchange, sign, scheme, message, signature))) {
+            rejected.increment();
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            respond(exchange, 503, "busy\n");
+            return;
+        }
+        accepted.increment();
+    }
+
+    /**
+     * 分发线程：合并一个窗口内的请求，逐个交给空闲的工作线程，RSA验证合成一个任务
+     */
+    private void dispatch() {
+        try {
+            while (!closed) {
+                List<Job> batch = new ArrayList<>(batchSize);
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + window;
+                while (batch.size() < batchSize) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0)
+                        continue;
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0)
+                        break;
+                    Job job = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (job == null)
+                        break;
+                    batch.add(job);
+                }
+                batches.increment();
+                // 有验证缓存时逐个查缓存
+                List<Job> rsaVerify = new ArrayList<>();
+                for (Job job : batch) {
+                    if (!job.sign && job.scheme.equals("rsa") && verifyCache == null)
+                        rsaVerify.add(job);
+                    else
+                        execute(() -> run(job));
+                }
+                if (rsaVerify.size() == 1)
+                    execute(() -> run(rsaVerify.get(0)));
+                else if (!rsaVerify.isEmpty())
+                    execute(() -> verifyRsa(rsaVerify));
+            }
+        } catch (InterruptedException e) {
+            // close
+        }
+    }
+
+    /**
+     * 等到有空闲的工作线程后交给它执行
+     */
+    private void execute(Runnable task) throws InterruptedException {
+        idle.acquire();
+        workers.execute(() -> {
+            try {
+                task.run();
+            } finally {
+                idle.release();
+            }
+        });
+    }
+
+    /**
+     * 在工作线程上执行一个请求
+     */
+    private void run(Job job) {
+        try {
+            if (expire(job))
+                return;
+            String body;
+            try {
+                body = job.sign ? join(sign(job.scheme, Message.of(job.message)))
+                        : verify(job.scheme, Message.of(job.message), job.signature) + "\n";
+            } catch (RuntimeException e) {
+                respond(job.exchange, 500, "internal error\n");
+                return;
+            }
+            respond(job.exchange, 200, body);
+        } catch (IOException e) {
+            // 客户端已断开
+            job.exchange.close();
+        }
+    }
+
+    /**
+     * 在工作线程上用{@link RSA_PSSBatch}并行验证一批RSA签名
+     */
+    private void verifyRsa(List<Job> jobs) {
+        List<Job> live = new ArrayList<>(jobs.size());
+        List<Message> messages = new ArrayList<>(jobs.size());
+        List<byte[]> signatures = new ArrayList<>(jobs.size());
+        for (Job job : jobs) {
+            try {
+                if (expire(job))
+                    continue;
+            } catch (IOException e) {
+                job.exchange.close();
+                continue;
+            }
+            live.add(job);
+            messages.add(Message.of(job.message));
+            signatures.add(Encoding.toBytes(job.signature[0]));
+        }
+        boolean[] result = null;
+        try {
+            result = rsaVerifier.verify(messages, signatures);
+        } catch (IOException | RuntimeException e) {
+            // 内存中的消息不会抛出IOException，下面返回500
+        }
+        for (int i = 0; i < live.size(); i++) {
+            Job job = live.get(i);
+            try {
+                if (result == null)
+                    respond(job.exchange, 500, "internal error\n");
+                else
+                    respond(job.exchange, 200, result[i] + "\n");
+            } catch (IOException e) {
+                job.exchange.close();
+            }
+        }
+    }
+
+    /**
+     * 排队超过timeout的请求返回503
+     *
+     * @return 是否已经超时
+     */
+    private boolean expire(Job job) throws IOException {
+        if (System.nanoTime() - job.enqueued <= TimeUnit.MILLISECONDS.toNanos(TIMEOUT))
+            return false;
+        expired.increment();
+        job.exchange.getResponseHeaders().set("Retry-After", "1");
+        respond(job.exchange, 503, "timeout\n");
+        return true;
+    }
+
+    private BigInteger[] sign(String scheme, Message m) throws IOException {
+        switch (scheme) {
+            case "dsa":
+                return DSA.sign(m, dsa[1], dsa[3], dsaNonces);
+            case "schnorr":
+                return Schnorr.sign(m, schnorr[2], schnorr[3], schnorrNonces);
+            case "elgamal":
+                return ElGamal.sign(m, elGamal[0], elGamal[2], elGamalNonces);
+            default:
+                byte[] em = RSA_PSS.encode(m, rsa.n.bitLength() - 1);
+                return new BigInteger[]{new BigInteger(1, RSA_PSS.sign(em, rsa))};
+        }
+    }
+
+    private boolean verify(String scheme, Message m, BigInteger[] s) throws IOException {
+        if (verifyCache == null)
+            return verifyUncached(scheme, m, s);
+        byte[] fingerprint = fingerprints[List.of("dsa", "schnorr", "elgamal", "rsa").indexOf(scheme)];
+        return verifyCache.verify(fingerprint, m, s, message -> verifyUncached(scheme, message, s));
+    }
+
+    private boolean verifyUncached(String scheme, Message m, BigInteger[] s) throws IOException {
+        switch (scheme) {
+            case "dsa":
+                return DSA.verify(m, s, dsa[0], dsa[1], dsa[2], dsa[4]);
+            case "schnorr":
+                return Schnorr.verify(m, s, schnorr[0], schnorr[1], schnorr[2], schnorr[4]);
+            case "elgamal":
+                return ElGamal.verify(m, s, elGamal[0], elGamal[1], elGamal[3]);
+            default:
+                return rsaVerifier.verify(m, Encoding.toBytes(s[0]));
+        }
+    }
+
+    /**
+     * 签名分量是否在各方案的范围内，范围外的签名一定不合法
+     */
+    private boolean inRange(String scheme, BigInteger[] s) {
+        switch (scheme) {
+            case "dsa":
+                return DSA.inRange(s, dsa[1]);
+            case "schnorr":
+                return Schnorr.inRange(s, schnorr[2]);
+            case "elgamal":
+                return ElGamal.inRange(s, elGamal[0]);
+            default:
+                return s[0].signum() >= 0 && s[0].compareTo(rsa.n) < 0;
+        }
+    }
+
+    private String keys() {
+        return "dsa.p: " + dsa[0] + "\ndsa.q: " + dsa[1] + "\ndsa.g: " + dsa[2] + "\ndsa.y: " + dsa[4]
+                + "\nschnorr.α: " + schnorr[0] + "\nschnorr.p: " + schnorr[1] + "\nschnorr.q: " + schnorr[2]
+                + "\nschnorr.v: " + schnorr[4]
+                + "\nelgamal.q: " + elGamal[0] + "\nelgamal.α: " + elGamal[1] + "\nelgamal.Y: " + elGamal[3]
+                + "\nrsa.n: " + rsa.n + "\nrsa.e: " + rsa.e + "\n";
+    }
+
+    private String stats() {
+        long b = batches.sum();
+        return "queued: " + queue.size() + "\naccepted: " + accepted.sum() + "\nrejected: " + rejected.sum()
+                + "\nexpired: " + expired.sum() + "\nbatches: " + b
+                + "\nmean batch: " + (b == 0 ? 0 : (double) accepted.sum() / b)
+                + "\nnonce hits: " + (dsaNonces.hits() + schnorrNonces.hits() + elGamalNonces.hits())
+                + "\nnonce misses: " + (dsaNonces.misses() + schnorrNonces.misses() + elGamalNonces.misses())
+                + "\nkey table hits: " + PublicKeyCache.hits() + "\nkey table builds: " + PublicKeyCache.builds()
+                + (verifyCache == null ? "" : "\nverify cache: " + verifyCache) + "\n"
+                + (Metrics.isEnabled() ? Metrics.report() : "");
+    }
+
+    /**
+     * 解析s=a,b，格式错误时返回null
+     */
+    private static BigInteger[] parseSignature(String query) {
+        if (query == null || !query.startsWith("s="))
+            return null;
+        String[] parts = query.substring(2).split(",");
+        BigInteger[] s = new BigInteger[parts.length];
+        try {
+            for (int i = 0; i < parts.length; i++) {
+                s[i] = new BigInteger(parts[i]);
+                if (s[i].signum() < 0)
+                    return null;
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return s;
+    }
+
+    /**
+     * 读入请求体，超过MAX_MESSAGE时返回null
+     */
+    private static byte[] readMessage(InputStream in) throws IOException {
+        byte[] b = in.readNBytes(MAX_MESSAGE + 1);
+        in.close();
+        return b.length > MAX_MESSAGE ? null : b;
+    }
+
+    private static String join(BigInteger[] values) {
+        StringBuilder sb = new StringBuilder();
+        for (BigInteger v : values)
+            sb.append(v).append('\n');
+        return sb.toString();
+    }
+
+    private static void respond(HttpExchange exchange, int code, String body) throws IOException {
+        byte[] b = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(code, b.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(b);
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * 停止接收请求，队列中的请求返回503
+     */
+    @Override
+    public void close() {
+        closed = true;
+        server.stop(0);
+        dispatcher.interrupt();
+        workers.shutdown();
+        io.shutdown();
+        for (Job job; (job = queue.poll()) != null; ) {
+            try {
+                respond(job.exchange, 503, "closed\n");
+            } catch (IOException e) {
+                job.exchange.close();
+            }
+        }
+        dsaNonces.close();
+        schnorrNonces.close();
+        elGamalNonces.close();
+    }
+
+    public static void main(String[] args) throws IOException {
+        SigningService service = new SigningService(Integer.getInteger("service.port", 8080));
+        Runtime.getRuntime().addShutdownHook(new Thread(service::close));
+        System.out.println("listening on http://" + service.address().getHostString() + ":"
+                + service.address().getPort());
+    }
+}
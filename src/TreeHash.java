@@ -0,0 +1,196 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 大消息的并行树哈希
+ * <p>
+ * 把消息按chunkSize字节分块，在ForkJoinPool上分别计算每块的SHA-256，再按RFC 6962的Merkle树合并：
+ * <pre>
+ * MTH({})       = SHA-256()
+ * MTH({d0})     = SHA-256(0x00 || d0)
+ * MTH(D[0:n])   = SHA-256(0x01 || MTH(D[0:k]) || MTH(D[k:n]))，k为小于n的最大的2的幂
+ * </pre>
+ * 树的形状只由块数决定，与线程数无关。文件按不超过{@link Message#MAP_SIZE}的段内存映射，每段内的子树在映射上直接计算。
+ * <p>
+ * {@link #of}返回的{@link Message}把"tree-sha256"、块大小和树根送入各方案的摘要，签名的就是这串字节，
+ * 块大小不同时摘要不同，验证一定失败而不会得到错误的结果。块大小要与签名一起保存，见{@link #header}。
+ */
+public class TreeHash {
+    /**
+     * 默认块大小，可以用系统属性treehash.chunk修改
+     */
+    public static final int DEFAULT_CHUNK = Integer.getInteger("treehash.chunk", 1 << 20);
+    /**
+     * 最小块大小
+     */
+    public static final int MIN_CHUNK = 1 << 10;
+    /**
+     * 签名文件中树哈希参数的标记
+     */
+    static final byte[] MAGIC = "TREE".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PREFIX = "tree-sha256".getBytes(StandardCharsets.US_ASCII);
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private TreeHash() {
+    }
+
+    /**
+     * 文件的树哈希消息
+     *
+     * @param path      文件
+     * @param chunkSize 块大小，{@link #MIN_CHUNK}到{@link Message#MAP_SIZE}
+     */
+    public static Message of(Path path, int chunkSize) {
+        check(chunkSize);
+        return messageDigest -> bind(messageDigest, chunkSize, root(path, chunkSize));
+    }
+
+    /**
+     * 缓冲区中position到limit的字节的树哈希消息，不改变缓冲区的position
+     */
+    public static Message of(ByteBuffer buffer, int chunkSize) {
+        check(chunkSize);
+        return messageDigest -> bind(messageDigest, chunkSize, root(buffer, chunkSize));
+    }
+
+    /**
+     * 与签名一起保存的参数：{@link #MAGIC}和4字节大端块大小
+     */
+    public static byte[] header(int chunkSize) {
+        return ByteBuffer.allocate(MAGIC.length + 4).put(MAGIC).putInt(chunkSize).array();
+    }
+
+    /**
+     * 读出{@link #header}中的块大小
+     *
+     * @return 块大小，不是树哈希参数时为-1
+     */
+    public static int chunkSize(byte[] header) {
+        if (header.length != MAGIC.length + 4)
+            return -1;
+        ByteBuffer buffer = ByteBuffer.wrap(header);
+        for (byte b : MAGIC)
+            if (buffer.get() != b)
+                return -1;
+        int chunkSize = buffer.getInt();
+        return chunkSize >= MIN_CHUNK && chunkSize <= Message.MAP_SIZE ? chunkSize : -1;
+    }
+
+    /**
+     * 文件的Merkle树根
+     */
+    public static byte[] root(Path path, int chunkSize) throws IOException {
+        check(chunkSize);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long chunks = (size + chunkSize - 1) / chunkSize;
+            if (chunks == 0)
+                return SHA256.get().digest();
+            return ForkJoinPool.commonPool().invoke(new Node(channel, null, 0, size, chunkSize, 0, chunks));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 缓冲区中position到limit的字节的Merkle树根
+     */
+    public static byte[] root(ByteBuffer buffer, int chunkSize) {
+        check(chunkSize);
+        ByteBuffer b = buffer.slice();
+        long chunks = (b.remaining() + (long) chunkSize - 1) / chunkSize;
+        if (chunks == 0)
+            return SHA256.get().digest();
+        return ForkJoinPool.commonPool().invoke(new Node(null, b, 0, b.remaining(), chunkSize, 0, chunks));
+    }
+
+    private static void bind(MessageDigest messageDigest, int chunkSize, byte[] root) {
+        messageDigest.update(PREFIX);
+        messageDigest.update(ByteBuffer.allocate(4).putInt(chunkSize).array());
+        messageDigest.update(root);
+    }
+
+    private static void check(int chunkSize) {
+        if (chunkSize < MIN_CHUNK || chunkSize > Message.MAP_SIZE)
+            throw new IllegalArgumentException("chunk size must be between " + MIN_CHUNK + " and " + Message.MAP_SIZE);
+    }
+
+    /**
+     * 第lo到hi-1块组成的子树
+     */
+    private static class Node extends RecursiveTask<byte[]> {
+        private static final long serialVersionUID = 1L;
+        private final FileChannel channel;
+        /**
+         * 已映射的段，还没有映射时为null
+         */
+        private final ByteBuffer buffer;
+        /**
+         * buffer在消息中的起始位置
+         */
+        private final long base;
+        private final long size;
+        private final int chunkSize;
+        private final long lo, hi;
+
+        Node(FileChannel channel, ByteBuffer buffer, long base, long size, int chunkSize, long lo, long hi) {
+            this.channel = channel;
+            this.buffer = buffer;
+            this.base = base;
+            this.size = size;
+            this.chunkSize = chunkSize;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected byte[] compute() {
+            long from = lo * chunkSize;
+            long to = Math.min(hi * chunkSize, size);
+            ByteBuffer b = buffer;
+            long offset = base;
+            if (b == null && to - from <= Message.MAP_SIZE) {
+                try {
+                    b = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                offset = from;
+            }
+            if (hi - lo == 1) {
+                MessageDigest sha = SHA256.get();
+                sha.reset();
+                sha.update((byte) 0);
+                sha.update(b.duplicate().position((int) (from - offset)).limit((int) (to - offset)));
+                return sha.digest();
+            }
+            long k = Long.highestOneBit(hi - lo - 1);
+            Node left = new Node(channel, b, offset, size, chunkSize, lo, lo + k);
+            Node right = new Node(channel, b, offset, size, chunkSize, lo + k, hi);
+            right.fork();
+            byte[] l = left.compute();
+            byte[] r = right.join();
+            MessageDigest sha = SHA256.get();
+            sha.reset();
+            sha.update((byte) 1);
+            sha.update(l);
+            sha.update(r);
+            return sha.digest();
+        }
+    }
+}
@@ -0,0 +1,257 @@
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 验证结果缓存
+ * <p>
+ * 同一个(公钥, 消息, 签名)多次验证时，第二次起直接返回true，不再做模幂。缓存的键为
+ * SHA-256(公钥指纹 || SHA-256(消息) || 签名)，只记录验证通过的结果：失败的验证不缓存，
+ * 伪造的签名不能挤占缓存，也不会因为缓存而被误判。
+ * <p>
+ * 容量按条目数限定，按哈希分成若干段，每段是一个按访问顺序排列的LinkedHashMap，满了淘汰最久未用的条目，
+ * 各段分别加锁。公钥吊销后调用{@link #invalidate(byte[])}删除它的全部条目。
+ * <p>
+ * 查缓存需要先读一遍消息计算摘要，未命中时验证再读一遍，所以消息必须能重复读取，不能是流或通道。
+ */
+public class VerifyCache {
+    /**
+     * 验证一条消息，返回签名是否合法
+     */
+    @FunctionalInterface
+    public interface Verifier {
+        boolean verify(Message m) throws IOException;
+    }
+
+    /**
+     * 一个SHA-256值，用作键
+     */
+    private static final class Digest {
+        final byte[] value;
+        final int hash;
+
+        Digest(byte[] value) {
+            this.value = value;
+            this.hash = ByteBuffer.wrap(value).getInt();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Digest && Arrays.equals(value, ((Digest) o).value);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * 一段缓存，值为公钥指纹，用于按公钥删除
+     */
+    private final class Segment extends LinkedHashMap<Digest, Digest> {
+        private static final long serialVersionUID = 1L;
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Digest, Digest> eldest) {
+            if (size() <= capacity)
+                return false;
+            evictions.increment();
+            return true;
+        }
+    }
+
+    private final Segment[] segments;
+    /**
+     * 每次invalidate加1，验证期间发生过invalidate时结果不写入缓存
+     */
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param capacity 最多缓存的条目数
+     */
+    public VerifyCache(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException();
+        int n = Math.min(Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) * 2, 64);
+        while (n > 1 && capacity / n < 16)
+            n >>>= 1;
+        segments = new Segment[n];
+        for (int i = 0; i < n; i++)
+            segments[i] = new Segment((capacity + n - 1 - i) / n);
+    }
+
+    /**
+     * 公钥指纹，即公钥{@link Encoding}编码的SHA-256，私钥分量不参与
+     *
+     * @param scheme dsa、schnorr、elgamal或rsa
+     * @param key    按{@link Encoding}顺序排列的密钥
+     */
+    public static byte[] fingerprint(String scheme, BigInteger[] key) {
+        BigInteger[] pub = Encoding.publicKey(scheme, key);
+        ByteBuffer buffer = ByteBuffer.allocate(Encoding.keyLength(scheme, pub));
+        Encoding.putKey(buffer, scheme, pub);
+        return sha256().digest(buffer.array());
+    }
+
+    /**
+     * 查缓存，未命中时验证，验证通过则写入缓存
+     *
+     * @param fingerprint 公钥指纹，见{@link #fingerprint(String, BigInteger[])}
+     * @param m           消息，必须能重复读取
+     * @param signature   签名
+     * @param verifier    未命中时的验证
+     * @return 签名是否合法
+     */
+    public boolean verify(byte[] fingerprint, Message m, BigInteger[] signature, Verifier verifier)
+            throws IOException {
+        Digest key = key(fingerprint, m, signature);
+        Segment segment = segment(key);
+        synchronized (segment) {
+            if (segment.get(key) != null) {
+                hits.increment();
+                return true;
+            }
+        }
+        misses.increment();
+        long g = generation.get();
+        if (!verifier.verify(m))
+            return false;
+        Digest owner = new Digest(fingerprint.clone());
+        synchronized (segment) {
+            if (generation.get() == g)
+                segment.put(key, owner);
+        }
+        return true;
+    }
+
+    /**
+     * 删除一个公钥的全部条目，公钥吊销时调用
+     *
+     * @return 删除的条目数
+     */
+    public int invalidate(byte[] fingerprint) {
+        generation.incrementAndGet();
+        Digest owner = new Digest(fingerprint);
+        int removed = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                for (Iterator<Digest> it = segment.values().iterator(); it.hasNext(); ) {
+                    if (it.next().equals(owner)) {
+                        it.remove();
+                        removed++;
+                    }
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void clear() {
+        generation.incrementAndGet();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * @return 当前的条目数
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return 命中次数
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return 未命中次数，包括验证失败的
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return 因容量不足淘汰的条目数
+     */
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return 命中率，没有查询时为0
+     */
+    public double hitRate() {
+        long h = hits(), total = h + misses();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("size %d, hits %d, misses %d, evictions %d, hit rate %.3f",
+                size(), hits(), misses(), evictions(), hitRate());
+    }
+
+    /**
+     * SHA-256(fingerprint || SHA-256(m) || 签名)，签名的每个分量前有4字节长度
+     */
+    private static Digest key(byte[] fingerprint, Message m, BigInteger[] signature) throws IOException {
+        MessageDigest md = sha256();
+        m.update(md);
+        byte[] hash = md.digest();
+        md.update(fingerprint);
+        md.update(hash);
+        for (BigInteger s : signature) {
+            byte[] b = s.toByteArray();
+            md.update(ByteBuffer.allocate(4).putInt(b.length).array());
+            md.update(b);
+        }
+        return new Digest(md.digest());
+    }
+
+    private Segment segment(Digest key) {
+        // 低位已由SHA-256打散
+        return segments[key.hash & (segments.length - 1)];
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // 每个Java平台都必须支持SHA-256
+            throw new AssertionError(e);
+        }
+    }
+}